@@ -0,0 +1,366 @@
+package org.processmining.plugins.converters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.DirectedGraphEdge;
+import org.processmining.models.graphbased.directed.DirectedGraphNode;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.elements.Arc;
+import org.processmining.models.graphbased.directed.petrinet.elements.ExpandableSubNet;
+import org.processmining.models.graphbased.directed.petrinet.elements.InhibitorArc;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.ResetArc;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.graphbased.directed.petrinet.impl.ResetInhibitorNetImpl;
+
+/**
+ * Copy-on-write view of a Petri net: the places, transitions and arcs of the
+ * base net which are not removed, and the places, transitions and arcs which
+ * are added to the view. The base net is not changed, and its nodes and arcs
+ * are the nodes and arcs of the view, so no maps between the nodes of the
+ * base net and the view are needed.
+ *
+ * Places, transitions, arcs, reset arcs and inhibitor arcs can be added,
+ * removed and queried; all queries are answered from the base net and the
+ * delta, none from the state inherited from {@link ResetInhibitorNetImpl}.
+ * Elements added to the view are not put into groups, the parent group given
+ * when adding them is ignored, and adding groups throws an
+ * {@link UnsupportedOperationException}. The base net should not be changed
+ * while the view is used.
+ *
+ */
+public class PetriNetOverlay extends ResetInhibitorNetImpl {
+
+	private final PetrinetGraph base;
+
+	// Delta to the base net
+	private final Set<PetrinetNode> removedNodes = new HashSet<PetrinetNode>();
+	private final Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> removedEdges = new HashSet<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>();
+	private final Set<Place> addedPlaces = new LinkedHashSet<Place>();
+	private final Set<Transition> addedTransitions = new LinkedHashSet<Transition>();
+	private final Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> addedEdges = new LinkedHashSet<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>();
+	private final Map<PetrinetNode, Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>> addedInEdges = new HashMap<PetrinetNode, Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>>();
+	private final Map<PetrinetNode, Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>> addedOutEdges = new HashMap<PetrinetNode, Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>>();
+
+	public PetriNetOverlay(PetrinetGraph base) {
+		super(base.getLabel());
+		this.base = base;
+	}
+
+	public PetrinetGraph getBase() {
+		return base;
+	}
+
+	public Place addPlace(String label) {
+		Place place = new Place(label, this);
+		addedPlaces.add(place);
+		return place;
+	}
+
+	public Transition addTransition(String label) {
+		Transition transition = new Transition(label, this);
+		addedTransitions.add(transition);
+		return transition;
+	}
+
+	public Place addPlace(String label, ExpandableSubNet parent) {
+		return addPlace(label);
+	}
+
+	public Transition addTransition(String label, ExpandableSubNet parent) {
+		return addTransition(label);
+	}
+
+	public ExpandableSubNet addGroup(String label) {
+		throw new UnsupportedOperationException("Groups cannot be added to " + getLabel());
+	}
+
+	public ExpandableSubNet addGroup(String label, ExpandableSubNet parent) {
+		return addGroup(label);
+	}
+
+	public Place removePlace(Place place) {
+		removeNode(place);
+		return place;
+	}
+
+	public Transition removeTransition(Transition transition) {
+		removeNode(transition);
+		return transition;
+	}
+
+	public void removeNode(DirectedGraphNode node) {
+		PetrinetNode petrinetNode = (PetrinetNode) node;
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : getInEdges(petrinetNode)) {
+			removeEdge(edge);
+		}
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : getOutEdges(petrinetNode)) {
+			removeEdge(edge);
+		}
+		if (!addedPlaces.remove(petrinetNode) && !addedTransitions.remove(petrinetNode)) {
+			removedNodes.add(petrinetNode);
+		}
+	}
+
+	public Collection<Place> getPlaces() {
+		List<Place> places = new ArrayList<Place>();
+		for (Place place : base.getPlaces()) {
+			if (!removedNodes.contains(place)) {
+				places.add(place);
+			}
+		}
+		places.addAll(addedPlaces);
+		return places;
+	}
+
+	public Collection<Transition> getTransitions() {
+		List<Transition> transitions = new ArrayList<Transition>();
+		for (Transition transition : base.getTransitions()) {
+			if (!removedNodes.contains(transition)) {
+				transitions.add(transition);
+			}
+		}
+		transitions.addAll(addedTransitions);
+		return transitions;
+	}
+
+	public Set<PetrinetNode> getNodes() {
+		Set<PetrinetNode> nodes = new LinkedHashSet<PetrinetNode>();
+		for (PetrinetNode node : base.getNodes()) {
+			if (!removedNodes.contains(node)) {
+				nodes.add(node);
+			}
+		}
+		nodes.addAll(addedPlaces);
+		nodes.addAll(addedTransitions);
+		return nodes;
+	}
+
+	public Arc addArc(Place place, Transition transition) {
+		return addArc(place, transition, 1);
+	}
+
+	public Arc addArc(Transition transition, Place place) {
+		return addArc(transition, place, 1);
+	}
+
+	public Arc addArc(Place place, Transition transition, int weight) {
+		return addArcPrivate(place, transition, weight);
+	}
+
+	public Arc addArc(Transition transition, Place place, int weight) {
+		return addArcPrivate(transition, place, weight);
+	}
+
+	public Arc addArc(Place place, Transition transition, ExpandableSubNet parent) {
+		return addArc(place, transition, 1);
+	}
+
+	public Arc addArc(Transition transition, Place place, ExpandableSubNet parent) {
+		return addArc(transition, place, 1);
+	}
+
+	public Arc addArc(Place place, Transition transition, int weight, ExpandableSubNet parent) {
+		return addArc(place, transition, weight);
+	}
+
+	public Arc addArc(Transition transition, Place place, int weight, ExpandableSubNet parent) {
+		return addArc(transition, place, weight);
+	}
+
+	/**
+	 * Add an arc, or increase the weight of an existing arc; an arc of the
+	 * base net is replaced by an arc of the view rather than changed
+	 */
+	private Arc addArcPrivate(PetrinetNode source, PetrinetNode target, int weight) {
+		checkNode(source);
+		checkNode(target);
+		Arc arc = getArc(source, target);
+		if (arc != null) {
+			if (addedEdges.contains(arc)) {
+				arc.setWeight(arc.getWeight() + weight);
+				return arc;
+			}
+			removeEdge(arc);
+			weight += arc.getWeight();
+		}
+		return addEdge(new Arc(source, target, weight));
+	}
+
+	public ResetArc addResetArc(Place place, Transition transition) {
+		return addResetArc(place, transition, "");
+	}
+
+	/**
+	 * Add a reset arc, unless the place and the transition are connected by
+	 * one already
+	 */
+	public ResetArc addResetArc(Place place, Transition transition, String label) {
+		checkNode(place);
+		checkNode(transition);
+		ResetArc arc = getResetArc(place, transition);
+		return (arc != null) ? arc : addEdge(new ResetArc(place, transition, label));
+	}
+
+	public ResetArc addResetArc(Place place, Transition transition, ExpandableSubNet parent) {
+		return addResetArc(place, transition, "");
+	}
+
+	public ResetArc addResetArc(Place place, Transition transition, String label, ExpandableSubNet parent) {
+		return addResetArc(place, transition, label);
+	}
+
+	public InhibitorArc addInhibitorArc(Place place, Transition transition) {
+		return addInhibitorArc(place, transition, "");
+	}
+
+	/**
+	 * Add an inhibitor arc, unless the place and the transition are connected
+	 * by one already
+	 */
+	public InhibitorArc addInhibitorArc(Place place, Transition transition, String label) {
+		checkNode(place);
+		checkNode(transition);
+		InhibitorArc arc = getInhibitorArc(place, transition);
+		return (arc != null) ? arc : addEdge(new InhibitorArc(place, transition, label));
+	}
+
+	public InhibitorArc addInhibitorArc(Place place, Transition transition, ExpandableSubNet parent) {
+		return addInhibitorArc(place, transition, "");
+	}
+
+	public InhibitorArc addInhibitorArc(Place place, Transition transition, String label, ExpandableSubNet parent) {
+		return addInhibitorArc(place, transition, label);
+	}
+
+	public Arc getArc(PetrinetNode source, PetrinetNode target) {
+		return getEdge(source, target, Arc.class);
+	}
+
+	public ResetArc getResetArc(Place place, Transition transition) {
+		return getEdge(place, transition, ResetArc.class);
+	}
+
+	public InhibitorArc getInhibitorArc(Place place, Transition transition) {
+		return getEdge(place, transition, InhibitorArc.class);
+	}
+
+	public Arc removeArc(PetrinetNode source, PetrinetNode target) {
+		Arc arc = getArc(source, target);
+		if (arc != null) {
+			removeEdge(arc);
+		}
+		return arc;
+	}
+
+	public ResetArc removeResetArc(Place place, Transition transition) {
+		ResetArc arc = getResetArc(place, transition);
+		if (arc != null) {
+			removeEdge(arc);
+		}
+		return arc;
+	}
+
+	public InhibitorArc removeInhibitorArc(Place place, Transition transition) {
+		InhibitorArc arc = getInhibitorArc(place, transition);
+		if (arc != null) {
+			removeEdge(arc);
+		}
+		return arc;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void removeEdge(DirectedGraphEdge edge) {
+		PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> petrinetEdge = (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>) edge;
+		if (addedEdges.remove(petrinetEdge)) {
+			addedInEdges.get(petrinetEdge.getTarget()).remove(petrinetEdge);
+			addedOutEdges.get(petrinetEdge.getSource()).remove(petrinetEdge);
+		} else {
+			removedEdges.add(petrinetEdge);
+		}
+	}
+
+	public Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> getEdges() {
+		Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> edges = new LinkedHashSet<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>();
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : base.getEdges()) {
+			if (!removedEdges.contains(edge)) {
+				edges.add(edge);
+			}
+		}
+		edges.addAll(addedEdges);
+		return edges;
+	}
+
+	public Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> getInEdges(DirectedGraphNode node) {
+		return getEdges(node, base.getInEdges(node), addedInEdges);
+	}
+
+	public Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> getOutEdges(DirectedGraphNode node) {
+		return getEdges(node, base.getOutEdges(node), addedOutEdges);
+	}
+
+	private Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> getEdges(DirectedGraphNode node,
+			Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> baseEdges,
+			Map<PetrinetNode, Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>> addedEdgesMap) {
+		List<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> edges = new ArrayList<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>();
+		if (baseEdges != null && !removedNodes.contains(node)) {
+			for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : baseEdges) {
+				if (!removedEdges.contains(edge)) {
+					edges.add(edge);
+				}
+			}
+		}
+		Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> added = addedEdgesMap.get(node);
+		if (added != null) {
+			edges.addAll(added);
+		}
+		return edges;
+	}
+
+	private <E extends PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> E addEdge(E edge) {
+		addedEdges.add(edge);
+		getEdgeSet(addedInEdges, edge.getTarget()).add(edge);
+		getEdgeSet(addedOutEdges, edge.getSource()).add(edge);
+		return edge;
+	}
+
+	/**
+	 * The edge of the given type from source to target, in the base net or
+	 * the delta
+	 */
+	private <E extends PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> E getEdge(PetrinetNode source,
+			PetrinetNode target, Class<E> type) {
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : getOutEdges(source)) {
+			if (type.isInstance(edge) && edge.getTarget().equals(target)) {
+				return type.cast(edge);
+			}
+		}
+		return null;
+	}
+
+	private Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> getEdgeSet(
+			Map<PetrinetNode, Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>> edgesMap,
+			PetrinetNode node) {
+		Set<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> edges = edgesMap.get(node);
+		if (edges == null) {
+			edges = new LinkedHashSet<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>>();
+			edgesMap.put(node, edges);
+		}
+		return edges;
+	}
+
+	private void checkNode(PetrinetNode node) {
+		if (removedNodes.contains(node)) {
+			throw new IllegalArgumentException("Node " + node.getLabel() + " was removed from " + getLabel());
+		}
+	}
+}
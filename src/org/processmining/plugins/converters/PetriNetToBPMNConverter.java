@@ -1,8 +1,10 @@
 package org.processmining.plugins.converters;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,6 +38,11 @@ public class PetriNetToBPMNConverter {
     private Map<String, Activity> transitionConversionMap;
     private Map<Place, Flow> placeConversionMap;
 
+    // out-transitions of each place, and places having each transition as out-transition,
+    // in the order of the places of the net
+    private Map<Place, Set<Transition>> outTransitionsIndex;
+    private Map<Transition, List<Place>> inPlacesIndex;
+
     private final Place initialPlace;
     private final Marking finalMarking;
 
@@ -55,6 +62,7 @@ public class PetriNetToBPMNConverter {
         placeConversionMap = new HashMap<Place, Flow>();
         Set<Place> convertedPlaces = new HashSet<Place>();
 
+        indexOutTransitions();
         convertTransitionsToActivities();
         convertPlacesToRoutingElements(convertedPlaces);
         addFinalMarking();
@@ -132,11 +140,27 @@ public class PetriNetToBPMNConverter {
         convertedPlaces.add(place);
     }
 
+    /**
+     * Collect the places whose out transitions include all out transitions of
+     * the given place. These places are all in the intersection of the in
+     * places of the out transitions, so only the in places of one out
+     * transition have to be checked.
+     */
     private Set<Place> collectEquivalentPlaces(Place place) {
         Set<Place> equivalentPlaces = new HashSet<Place>();
 
         Set<Transition> outTransitions = collectOutTransitions(place);
-        for (Place anyPlace : petriNet.getPlaces()) {
+
+        // the fewest candidates are the in places of the out transition with the fewest in places
+        Collection<Place> candidates = petriNet.getPlaces();
+        for (Transition outTransition : outTransitions) {
+            List<Place> inPlaces = inPlacesIndex.get(outTransition);
+            if (inPlaces.size() < candidates.size()) {
+                candidates = inPlaces;
+            }
+        }
+
+        for (Place anyPlace : candidates) {
             if (!place.equals(anyPlace)) {
                 Set<Transition> outTransitionsForAnyPlace = collectOutTransitions(anyPlace);
                 if (outTransitionsForAnyPlace.containsAll(outTransitions)) {
@@ -149,15 +173,36 @@ public class PetriNetToBPMNConverter {
     }
 
     private Set<Transition> collectOutTransitions(Place place) {
-        Set<Transition> outTransitions = new HashSet<Transition>();
-        Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> outEdges = petriNet
-                .getOutEdges(place);
-        for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> outEdge : outEdges) {
-            if (!(outEdge instanceof ResetArc)) {
-                outTransitions.add((Transition) outEdge.getTarget());
+        return outTransitionsIndex.get(place);
+    }
+
+    /**
+     * Index the out transitions of all places (ignoring reset arcs), and the
+     * in places of all transitions in the order of the places of the net.
+     */
+    private void indexOutTransitions() {
+        outTransitionsIndex = new HashMap<Place, Set<Transition>>();
+        inPlacesIndex = new HashMap<Transition, List<Place>>();
+        for (Place place : petriNet.getPlaces()) {
+            Set<Transition> outTransitions = new HashSet<Transition>();
+            Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> outEdges = petriNet
+                    .getOutEdges(place);
+            for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> outEdge : outEdges) {
+                if (!(outEdge instanceof ResetArc)) {
+                    outTransitions.add((Transition) outEdge.getTarget());
+                }
+            }
+            outTransitionsIndex.put(place, outTransitions);
+
+            for (Transition outTransition : outTransitions) {
+                List<Place> inPlaces = inPlacesIndex.get(outTransition);
+                if (inPlaces == null) {
+                    inPlaces = new ArrayList<Place>();
+                    inPlacesIndex.put(outTransition, inPlaces);
+                }
+                inPlaces.add(place);
             }
         }
-        return outTransitions;
     }
 
     private void connectToOutTransitions(BPMNNode startNode, Place place, Set<Place> convertedPlaces) {
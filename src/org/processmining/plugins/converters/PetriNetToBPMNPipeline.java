@@ -0,0 +1,358 @@
+package org.processmining.plugins.converters;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event.EventTrigger;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event.EventType;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event.EventUse;
+import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.ResetArc;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.semantics.petrinet.Marking;
+import org.processmining.plugins.graphalgorithms.DFS;
+
+/**
+ * Conversion of a Petri net to BPMN model without a plugin context, e.g., to
+ * run conversions in a thread pool. The stages are run by {@link #convert()}
+ * and can also be called one by one, in the order in which they are declared.
+ * The given Petri net is not changed. A pipeline converts one Petri net and
+ * should not be shared between threads.
+ *
+ */
+public class PetriNetToBPMNPipeline {
+
+	private final PetrinetGraph petrinetGraph;
+	private final Marking initialMarking;
+	private final Marking finalMarking;
+
+	// View of the Petri net which is transformed and converted
+	private PetrinetGraph overlay;
+	private boolean isFreeChoice;
+
+	private Place initialPlace;
+	private Transition initialTransition;
+
+	// Elements removed by removeDeadPlaces()
+	private int removedPlaces;
+	private int removedTransitions;
+
+	private BPMNDiagram bpmnDiagram;
+	private Map<String, Activity> transitionConversionMap;
+	private Map<Place, Flow> placeConversionMap;
+
+	/**
+	 * @param petrinetGraph
+	 * @param initialMarking
+	 *            marking of the places of petrinetGraph
+	 * @param finalMarking
+	 *            marking of the places of petrinetGraph, may be null
+	 */
+	public PetriNetToBPMNPipeline(PetrinetGraph petrinetGraph, Marking initialMarking, Marking finalMarking) {
+		if (petrinetGraph == null) throw new IllegalArgumentException("'petrinetGraph' is null");
+
+		this.petrinetGraph = petrinetGraph;
+		this.initialMarking = initialMarking;
+		this.finalMarking = finalMarking;
+	}
+
+	/**
+	 * Run all stages of the conversion
+	 *
+	 * @return BPMN diagram
+	 */
+	public BPMNDiagram convert() {
+		if (bpmnDiagram != null) return bpmnDiagram;
+
+		createOverlay();
+		repairFreeChoice();
+		addSingleSourcePlace();
+		removeDeadPlaces();
+		convertToBPMN();
+		simplifyBPMN();
+		rebuildConversionMaps();
+
+		return bpmnDiagram;
+	}
+
+	/**
+	 * Create a copy-on-write view of the Petri net, which is transformed and
+	 * converted instead of the Petri net
+	 */
+	public void createOverlay() {
+		overlay = new PetriNetOverlay(petrinetGraph);
+	}
+
+	/**
+	 * Convert to resembling free-choice net if the Petri net without reset
+	 * arcs is not a free-choice net
+	 */
+	public void repairFreeChoice() {
+		isFreeChoice = PetriNetUtils.isFreeChoice(overlay);
+		if (!isFreeChoice) {
+			PetriNetUtils.convertToResemblingFreeChoice(overlay);
+		}
+	}
+
+	/**
+	 * Convert to a Petri net with a single source place, which also precedes
+	 * the transitions without incoming sequence flows
+	 */
+	public void addSingleSourcePlace() {
+		initialPlace = overlay.addPlace("");
+		initialTransition = overlay.addTransition("");
+		initialTransition.setInvisible(true);
+		overlay.addArc(initialPlace, initialTransition);
+		if (initialMarking != null) {
+			for (Place place : initialMarking.toList()) {
+				overlay.addArc(initialTransition, place);
+			}
+		}
+
+		// Handle transitions without incoming edges
+		for (Transition transition : overlay.getTransitions()) {
+			if ((overlay.getInEdges(transition) == null) || (overlay.getInEdges(transition).size() == 0)) {
+				Place newPlace = overlay.addPlace("");
+				overlay.addArc(initialTransition, newPlace);
+				overlay.addArc(newPlace, transition);
+				overlay.addArc(transition, newPlace);
+			}
+		}
+	}
+
+	/**
+	 * Remove places without incoming sequence flows and corresponding output
+	 * transitions. Only the out places of removed transitions can become dead,
+	 * so only these places are checked again; a place is added to the worklist
+	 * once, when its last in edge is removed.
+	 */
+	public void removeDeadPlaces() {
+		Deque<Place> deadPlaces = new ArrayDeque<Place>();
+		for (Place place : overlay.getPlaces()) {
+			if (isDeadPlace(place)) {
+				deadPlaces.add(place);
+			}
+		}
+		while (!deadPlaces.isEmpty()) {
+			Place place = deadPlaces.poll();
+			for (Transition transition : collectOutTransitions(place)) {
+				Set<Place> outPlaces = new HashSet<Place>();
+				for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> outEdge : overlay
+						.getOutEdges(transition)) {
+					outPlaces.add((Place) outEdge.getTarget());
+				}
+				overlay.removeTransition(transition);
+				removedTransitions++;
+				for (Place outPlace : outPlaces) {
+					if (isDeadPlace(outPlace)) {
+						deadPlaces.add(outPlace);
+					}
+				}
+			}
+			overlay.removePlace(place);
+			removedPlaces++;
+		}
+	}
+
+	/**
+	 * Convert the transformed Petri net to a BPMN diagram
+	 */
+	public void convertToBPMN() {
+		PetriNetToBPMNConverter converter = new PetriNetToBPMNConverter(overlay, initialPlace,
+				finalMarking);
+		bpmnDiagram = converter.convert();
+		transitionConversionMap = converter.getTransitionConversionMap();
+		placeConversionMap = converter.getPlaceConversionMap();
+	}
+
+	/**
+	 * Simplify BPMN diagram and connect activities without outgoing sequence
+	 * flows to the end event, if there is a final marking
+	 */
+	public void simplifyBPMN() {
+		BPMNUtils.simplifyBPMNDiagram(transitionConversionMap, bpmnDiagram);
+
+		if ((finalMarking != null) && (finalMarking.size() > 0)) {
+			handleActivitiesWithoutOutgoingFlows();
+		}
+	}
+
+	/**
+	 * Rebuild conversion maps to restore connections with the initial Petri
+	 * net, the places and transitions of the view are the places and
+	 * transitions of the Petri net, so only the added ones are left out
+	 */
+	public void rebuildConversionMaps() {
+		Map<String, Activity> newTransitionConversionMap = new HashMap<String, Activity>();
+		for (Transition transition : petrinetGraph.getTransitions()) {
+			String id = transition.getId().toString();
+			newTransitionConversionMap.put(id, transitionConversionMap.get(id));
+		}
+		transitionConversionMap = newTransitionConversionMap;
+
+		Map<Place, Flow> newPlaceConversionMap = new HashMap<Place, Flow>();
+		for (Place place : petrinetGraph.getPlaces()) {
+			newPlaceConversionMap.put(place, placeConversionMap.get(place));
+		}
+		placeConversionMap = newPlaceConversionMap;
+	}
+
+	/**
+	 * @return whether the Petri net without reset arcs is a free-choice net,
+	 *         otherwise it was converted to resembling free-choice net
+	 */
+	public boolean isFreeChoice() {
+		return isFreeChoice;
+	}
+
+	/**
+	 * @return number of dead places removed before the conversion
+	 */
+	public int getRemovedPlaces() {
+		return removedPlaces;
+	}
+
+	/**
+	 * @return number of transitions removed with the dead places before the
+	 *         conversion
+	 */
+	public int getRemovedTransitions() {
+		return removedTransitions;
+	}
+
+	public BPMNDiagram getBPMNDiagram() {
+		return bpmnDiagram;
+	}
+
+	/**
+	 * @return map from the ids of the transitions of the Petri net to
+	 *         activities, after {@link #rebuildConversionMaps()}
+	 */
+	public Map<String, Activity> getTransitionConversionMap() {
+		return transitionConversionMap;
+	}
+
+	/**
+	 * @return map from the places of the Petri net to sequence flows, after
+	 *         {@link #rebuildConversionMaps()}
+	 */
+	public Map<Place, Flow> getPlaceConversionMap() {
+		return placeConversionMap;
+	}
+
+	/**
+	 * Handle activities without paths to the end event
+	 */
+	private void handleActivitiesWithoutOutgoingFlows() {
+		Event startEvent = retrieveStartEvent();
+		Event endEvent = retrieveEndEvent();
+		DFS dfs = new DFS(bpmnDiagram, startEvent);
+
+		Set<Activity> acivitiesWithoutPathToEndEvent = findActivitiesWithoutPathToEndEvent(dfs);
+		Set<Activity> currentActivities = new HashSet<Activity>();
+		currentActivities.addAll(acivitiesWithoutPathToEndEvent);
+
+		for (Activity activity1 : acivitiesWithoutPathToEndEvent) {
+			for (Activity activity2 : acivitiesWithoutPathToEndEvent) {
+				if (dfs.isDescendant(activity2, activity1) && !activity1.equals(activity2)) {
+					if (currentActivities.contains(activity1)) {
+						currentActivities.remove(activity2);
+					}
+				}
+			}
+		}
+
+		for (Activity activity : currentActivities) {
+			bpmnDiagram.addFlow(activity, endEvent, "");
+		}
+	}
+
+	/**
+	 * Find activities without a path to end event
+	 *
+	 * @param dfs
+	 * @return
+	 */
+	private Set<Activity> findActivitiesWithoutPathToEndEvent(DFS dfs) {
+		Set<Activity> resultSet = new HashSet<Activity>();
+		Event endEvent = retrieveEndEvent();
+		// Find activities without paths to end event
+		for (Activity activity : bpmnDiagram.getActivities()) {
+			boolean hasPathToEndEvent = dfs.isDescendant(activity, endEvent);
+			if (!hasPathToEndEvent) {
+				resultSet.add(activity);
+			}
+		}
+		return resultSet;
+	}
+
+	/**
+	 * Retrieve end event for the BPMN Diagram, add one if there is none
+	 *
+	 * @return
+	 */
+	private Event retrieveEndEvent() {
+		Event endEvent = null;
+		for (Event event : bpmnDiagram.getEvents()) {
+			if (event.getEventType().equals(EventType.END)) {
+				endEvent = event;
+			}
+		}
+
+		if (endEvent == null) {
+			endEvent = bpmnDiagram.addEvent("", EventType.END, EventTrigger.NONE, EventUse.THROW, true, null);
+		}
+		return endEvent;
+	}
+
+	/**
+	 * Retrieve start event for the BPMN Diagram
+	 *
+	 * @return
+	 */
+	private Event retrieveStartEvent() {
+		Event startEvent = null;
+		for (Event event : bpmnDiagram.getEvents()) {
+			if (event.getEventType().equals(EventType.START)) {
+				startEvent = event;
+			}
+		}
+
+		return startEvent;
+	}
+
+	private boolean isDeadPlace(Place place) {
+		return (place != initialPlace)
+				&& ((overlay.getInEdges(place) == null) || (overlay.getInEdges(place).size() == 0));
+	}
+
+	/**
+	 * Collect out transitions for a place in the Petri net
+	 *
+	 * @param place
+	 * @return
+	 */
+	private Set<Transition> collectOutTransitions(Place place) {
+		Set<Transition> outTransitions = new HashSet<Transition>();
+		Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> outEdges = overlay
+				.getOutEdges(place);
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> outEdge : outEdges) {
+			if (!(outEdge instanceof ResetArc)) {
+				outTransitions.add((Transition) outEdge.getTarget());
+			}
+		}
+		return outTransitions;
+	}
+}
@@ -1,6 +1,5 @@
 package org.processmining.plugins.converters;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -31,6 +30,8 @@ import org.processmining.models.graphbased.directed.bpmn.elements.Gateway.Gatewa
 import org.processmining.models.graphbased.directed.bpmn.elements.SubProcess;
 import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
 import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.plugins.graphalgorithms.DominatorTree;
+import org.processmining.plugins.graphalgorithms.SESERegionTree;
 import org.processmining.plugins.graphalgorithms.SubprocessDiscovery;
 
 /**
@@ -95,39 +96,34 @@ public class PetriNetToBPMNWithSubProcConverterPlugin {
 		BPMNNode endNode = retrieveEndNode(bpmnDiagram);
 
 		SubprocessDiscovery subDisc = new SubprocessDiscovery(bpmnDiagram, startNode, endNode);
-		Map<AbstractDirectedGraphNode, AbstractDirectedGraphNode> subProcBorders = subDisc.getSubProcessBorders();
+		SESERegionTree<AbstractDirectedGraphNode> regionTree = subDisc.getRegionTree();
+		DominatorTree<AbstractDirectedGraphNode> dominatorTree = subDisc.getDominatorTree();
 
-		boolean dominatorsToConsider = true;
-		while (dominatorsToConsider) {
-			dominatorsToConsider = false;
-			Set<AbstractDirectedGraphNode> dominatorsToRemove = new HashSet<AbstractDirectedGraphNode>();
-			for (AbstractDirectedGraphNode dominator : subProcBorders.keySet()) {
-				if ((dominator instanceof Activity) || 
-					(dominator instanceof Gateway) && ((Gateway)dominator).getGatewayType().equals(GatewayType.DATABASED)
-					|| bpmnDiagram.getInEdges(dominator).size() <= 1) {
-					AbstractDirectedGraphNode postDominator = subProcBorders.get(dominator);
-					if ((postDominator instanceof Activity) || 
-							(postDominator instanceof Gateway) && ((Gateway)postDominator).getGatewayType().equals(GatewayType.PARALLEL)
-							|| bpmnDiagram.getOutEdges(postDominator).size() <= 1)  {
-						Set<AbstractDirectedGraphNode> parentDominators = subDisc.getDominators().get(dominator);
-						parentDominators.remove(dominator);
-						if (!Collections.disjoint(parentDominators, subProcBorders.keySet())) {
-							dominatorsToConsider = true;
-							continue;
-						}
-						AbstractDirectedGraphNode immediateDominator = subDisc.determineMinimalDominator(dominator, subprocesses.keySet(), false);
-						SubProcess parentSubProc = subprocesses.get(immediateDominator);
-						if (!dominator.equals(postDominator)) {
-							SubProcess subProc = constructSubProcess(bpmnDiagram, dominator, postDominator, subDisc.getTreeOfDominators()
-									.get(dominator), parentSubProc);
-							subprocesses.put(dominator, subProc);
+		// Enclosing regions come first, so their subprocesses already exist
+		for (AbstractDirectedGraphNode dominator : regionTree.getEntries()) {
+			if ((dominator instanceof Activity) || 
+				(dominator instanceof Gateway) && ((Gateway)dominator).getGatewayType().equals(GatewayType.DATABASED)
+				|| bpmnDiagram.getInEdges(dominator).size() <= 1) {
+				AbstractDirectedGraphNode postDominator = regionTree.getExit(dominator);
+				if ((postDominator instanceof Activity) || 
+						(postDominator instanceof Gateway) && ((Gateway)postDominator).getGatewayType().equals(GatewayType.PARALLEL)
+						|| bpmnDiagram.getOutEdges(postDominator).size() <= 1)  {
+					SubProcess parentSubProc = null;
+					AbstractDirectedGraphNode enclosingDominator = regionTree.getEnclosingEntry(dominator);
+					while (parentSubProc == null && enclosingDominator != null) {
+						parentSubProc = subprocesses.get(enclosingDominator);
+						enclosingDominator = regionTree.getEnclosingEntry(enclosingDominator);
+					}
+					if (!dominator.equals(postDominator)) {
+						Set<AbstractDirectedGraphNode> childNodes = new HashSet<AbstractDirectedGraphNode>();
+						for (AbstractDirectedGraphNode child : dominatorTree.getDescendants(dominator)) {
+							childNodes.add(child);
 						}
+						SubProcess subProc = constructSubProcess(bpmnDiagram, dominator, postDominator, childNodes,
+								parentSubProc);
+						subprocesses.put(dominator, subProc);
 					}
 				}
-				dominatorsToRemove.add(dominator);
-			}
-			for(AbstractDirectedGraphNode donimatorToRemove : dominatorsToRemove) {
-				subProcBorders.remove(donimatorToRemove);
 			}
 		}
 		return bpmnDiagram;
@@ -0,0 +1,154 @@
+package org.processmining.plugins.converters;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.ResetArc;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+
+/**
+ * Standard Petri net transformations used before the conversion to BPMN
+ *
+ */
+public class PetriNetUtils {
+
+	/**
+	 * Check whether Petri net without reset arcs is a free-choice net, without
+	 * changing the net
+	 *
+	 * @param petrinetGraph
+	 * @return
+	 */
+	public static boolean isFreeChoice(PetrinetGraph petrinetGraph) {
+		return collectFreeChoiceViolations(petrinetGraph).isEmpty();
+	}
+
+	/**
+	 * Collect the places violating the free-choice property, i.e., places
+	 * whose out transitions do not all have the same in places. Reset arcs
+	 * are ignored, the net is not changed.
+	 *
+	 * @param petrinetGraph
+	 * @return
+	 */
+	public static Set<Place> collectFreeChoiceViolations(PetrinetGraph petrinetGraph) {
+		Set<Place> violations = new HashSet<Place>();
+		Map<Transition, Set<Place>> inPlacesMap = new HashMap<Transition, Set<Place>>();
+		for (Place place : petrinetGraph.getPlaces()) {
+			Set<Place> firstInPlaces = null;
+			for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> outEdge : petrinetGraph
+					.getOutEdges(place)) {
+				if (outEdge instanceof ResetArc) {
+					continue;
+				}
+				Transition outTransition = (Transition) outEdge.getTarget();
+				Set<Place> inPlaces = inPlacesMap.get(outTransition);
+				if (inPlaces == null) {
+					inPlaces = collectInPlacesWithoutResetArcs(outTransition, petrinetGraph);
+					inPlacesMap.put(outTransition, inPlaces);
+				}
+				if (firstInPlaces == null) {
+					firstInPlaces = inPlaces;
+				} else if (!firstInPlaces.equals(inPlaces)) {
+					violations.add(place);
+					break;
+				}
+			}
+		}
+		return violations;
+	}
+
+	/**
+	 * Convert to resembling free-choice net, by splitting the non-free places
+	 *
+	 * @param petrinetGraph
+	 */
+	public static void convertToResemblingFreeChoice(PetrinetGraph petrinetGraph) {
+		splitNonFreePlaces(petrinetGraph, collectNonFreePlaces(petrinetGraph));
+	}
+
+	/**
+	 * Collect the places which should be split to obtain a free-choice net:
+	 * the in places of all transitions with more than one in place. Two
+	 * transitions sharing an in place, one of which has another in place,
+	 * are therefore always detected, in a single pass over the in edges of
+	 * the transitions.
+	 *
+	 * @param petrinetGraph
+	 * @return
+	 */
+	public static Set<Place> collectNonFreePlaces(PetrinetGraph petrinetGraph) {
+		Set<Place> nonFreePlaces = new HashSet<Place>();
+		for (Transition transition : petrinetGraph.getTransitions()) {
+			Set<Place> inPlaces = collectInPlaces(transition, petrinetGraph);
+			if (inPlaces.size() > 1) {
+				nonFreePlaces.addAll(inPlaces);
+			}
+		}
+		return nonFreePlaces;
+	}
+
+	/**
+	 * Split non-free places
+	 *
+	 * @param petrinetGraph
+	 * @param nonFreePlaces
+	 */
+	private static void splitNonFreePlaces(PetrinetGraph petrinetGraph, Set<Place> nonFreePlaces) {
+		for (Place place : nonFreePlaces) {
+			for (PetrinetEdge<?, ?> outArc : petrinetGraph.getOutEdges(place)) {
+				Transition outTransition = (Transition) outArc.getTarget();
+				petrinetGraph.removeEdge(outArc);
+				Place newPlace = petrinetGraph.addPlace("");
+				Transition newTransition = petrinetGraph.addTransition("");
+				newTransition.setInvisible(true);
+				petrinetGraph.addArc(newPlace, outTransition);
+				petrinetGraph.addArc(newTransition, newPlace);
+				petrinetGraph.addArc(place, newTransition);
+			}
+		}
+	}
+
+	/**
+	 * Collect in places for a transition in the Petri net
+	 *
+	 * @param transition
+	 * @param petrinetGraph
+	 * @return
+	 */
+	private static Set<Place> collectInPlaces(Transition transition, PetrinetGraph petrinetGraph) {
+		Set<Place> inPlaces = new HashSet<Place>();
+		Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> inEdges = petrinetGraph
+				.getInEdges(transition);
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> inEdge : inEdges) {
+			inPlaces.add((Place) inEdge.getSource());
+		}
+		return inPlaces;
+	}
+
+	/**
+	 * Collect in places for a transition in the Petri net, ignoring reset arcs
+	 *
+	 * @param transition
+	 * @param petrinetGraph
+	 * @return
+	 */
+	private static Set<Place> collectInPlacesWithoutResetArcs(Transition transition, PetrinetGraph petrinetGraph) {
+		Set<Place> inPlaces = new HashSet<Place>();
+		Collection<PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode>> inEdges = petrinetGraph
+				.getInEdges(transition);
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> inEdge : inEdges) {
+			if (!(inEdge instanceof ResetArc)) {
+				inPlaces.add((Place) inEdge.getSource());
+			}
+		}
+		return inPlaces;
+	}
+}
@@ -1,22 +1,36 @@
 package org.processmining.plugins.converters.bpmn2pn;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.processmining.datapetrinets.DataPetriNet;
 import org.processmining.datapetrinets.exception.NonExistingVariableException;
+import org.processmining.datapetrinets.expression.syntax.ParseException;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
 import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
 import org.processmining.models.graphbased.directed.bpmn.elements.DataAssociation;
 import org.processmining.models.graphbased.directed.bpmn.elements.DataObject;
 import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
+import org.processmining.models.graphbased.directed.bpmn.elements.SubProcess;
+import org.processmining.models.graphbased.directed.petrinet.Petrinet;
 import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
 import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
 import org.processmining.models.graphbased.directed.petrinet.elements.Place;
 import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
 import org.processmining.models.graphbased.directed.petrinetwithdata.newImpl.DataElement;
 import org.processmining.models.graphbased.directed.petrinetwithdata.newImpl.PetriNetWithData;
+import org.processmining.plugins.converters.ConverterException;
 
 /**
  * Conversion of BPMN to Petri net with data
@@ -35,21 +49,85 @@ public class BPMN2DataPetriNetConverter extends BPMN2PetriNetConverter {
 	// Data Petri net
 	private DataPetriNet dataPetriNet;
 	
+	// Map from plain to data Petri net transitions, null if the data Petri net is built directly
+	private Map<Transition, Transition> clonedTransitions;
+	
+	// Parsed guards, may be shared with other conversions
+	private GuardCache guardCache = new GuardCache();
+	
+	// Guards that could not be attached
+	private List<GuardError> guardErrors = new ArrayList<GuardError>();
+	
+	/**
+	 * A guard of a sequence flow that could not be parsed or attached to the
+	 * transition of the flow's target
+	 */
+	public static class GuardError {
+		
+		private final String flowId;
+		private final String guard;
+		private final String message;
+		
+		GuardError(String flowId, String guard, String message) {
+			this.flowId = flowId;
+			this.guard = guard;
+			this.message = message;
+		}
+		
+		public String getFlowId() {
+			return flowId;
+		}
+		
+		public String getGuard() {
+			return guard;
+		}
+		
+		public String getMessage() {
+			return message;
+		}
+		
+		public String toString() {
+			return "Guard '" + guard + "' of flow " + flowId + ": " + message;
+		}
+	}
+	
+	/**
+	 * Creates a Petri net with data, so that the control-flow conversion is
+	 * built directly in the data Petri net, see
+	 * {@link BPMN2PetriNetWithDataConverter_Configuration#buildDataPetriNetDirectly}
+	 */
+	public static final NetFactory DATA_PETRINET_FACTORY = new NetFactory() {
+		public PetrinetGraph createNet(String label) {
+			return new PetriNetWithData(label);
+		}
+	};
+	
 	public BPMN2DataPetriNetConverter(BPMNDiagram bpmn, BPMN2PetriNetWithDataConverter_Configuration config) {
 		super(bpmn, config);
+		if (config.buildDataPetriNetDirectly) {
+			setNetFactory(DATA_PETRINET_FACTORY);
+		}
 	}
 	
 	public BPMN2DataPetriNetConverter(BPMNDiagram bpmn) {
-		super(bpmn, new BPMN2PetriNetWithDataConverter_Configuration());
+		this(bpmn, new BPMN2PetriNetWithDataConverter_Configuration());
 	}
 
 	public boolean convertWithData() {
 	   
+		guardErrors.clear();
+		
 		// Call control-flow conversion
 		super.convert();
-
-		// Clone Petri net to Data Petri net
-		clonePetriNetToDataPetriNet();
+		
+		if (getNet() instanceof DataPetriNet) {
+			// The net is created as Data Petri net
+			dataPetriNet = (DataPetriNet) getNet();
+			clonedTransitions = null;
+		} else {
+			// Clone Petri net to Data Petri net
+			clonePetriNetToDataPetriNet();
+		}
 		
 		// Construct activities map
 		constructActivitiesMap();
@@ -70,21 +148,56 @@ public class BPMN2DataPetriNetConverter extends BPMN2PetriNetConverter {
 		return dataPetriNet;
 	}
 	
+	/**
+	 * @return guards of the last conversion that could not be parsed or
+	 *         attached, each is also reported in {@link #getErrors()}
+	 */
+	public List<GuardError> getGuardErrors() {
+		return Collections.unmodifiableList(guardErrors);
+	}
+	
+	/**
+	 * Set the cache of parsed guards, e.g., to share parsed guards between
+	 * the conversions of a batch of models.
+	 * 
+	 * @param guardCache
+	 */
+	public void setGuardCache(GuardCache guardCache) {
+		this.guardCache = guardCache;
+	}
+	
 	/**
 	 * 
-	 * Construct a map from activities to transitions
+	 * Construct a map from activities to the transitions they are translated to
 	 */
 	private void constructActivitiesMap() {
+		activitiesMap.clear();
 		for(Activity activity : bpmn.getActivities()) {
-			for(Transition transition : dataPetriNet.getTransitions()) {
-				if ((transition.getLabel() != null) 
-					&& (transition.getLabel().contains(activity.getLabel()))) {
-					activitiesMap.put(activity, transition);
-				}
+			Transition transition = getDataTransition(activity);
+			if (transition != null) {
+				activitiesMap.put(activity, transition);
+			}
+		}
+		for(SubProcess subProcess : bpmn.getSubProcesses()) {
+			Transition transition = getDataTransition(subProcess);
+			if (transition != null) {
+				activitiesMap.put(subProcess, transition);
 			}
 		}
 	}
 	
+	/**
+	 * 
+	 * Transition of the data Petri net an activity is translated to
+	 */
+	private Transition getDataTransition(Activity activity) {
+		Transition transition = getActivityTransition(activity);
+		if ((transition != null) && (clonedTransitions != null)) {
+			return clonedTransitions.get(transition);
+		}
+		return transition;
+	}
+	
 	/**
 	 * 
 	 * Convert data objects
@@ -116,26 +229,84 @@ public class BPMN2DataPetriNetConverter extends BPMN2PetriNetConverter {
 	
 	/**
 	 * 
-	 * Convert guards
+	 * Convert guards: parse each distinct guard once, in parallel if
+	 * configured, and attach it to the transitions of the guarded activities
 	 */
 	private void convertGuards() {
+		List<Flow> guardedFlows = new ArrayList<Flow>();
+		Set<String> guards = new LinkedHashSet<String>();
 		for (Flow sequenceFlow : bpmn.getFlows()) {
 			String guard = sequenceFlow.getLabel();
-			if ((guard != null) && (!guard.equals(""))) {
-				if (sequenceFlow.getTarget() instanceof Activity) {
-					Activity activity = (Activity) (sequenceFlow.getTarget());
-					Transition transition = activitiesMap.get(activity);
+			if ((guard != null) && (!guard.equals("")) && (sequenceFlow.getTarget() instanceof Activity)) {
+				guardedFlows.add(sequenceFlow);
+				guards.add(guard);
+			}
+		}
+		
+		if (config.translateInParallel && guards.size() > 1) {
+			parseGuardsInParallel(guards);
+		}
+		
+		for (Flow sequenceFlow : guardedFlows) {
+			String guard = sequenceFlow.getLabel();
+			Transition transition = activitiesMap.get(sequenceFlow.getTarget());
+			if (transition == null) {
+				addGuardError(sequenceFlow, guard, "Target " + sequenceFlow.getTarget().getLabel() + " has no transition");
+				continue;
+			}
+			try {
+				dataPetriNet.setGuard(transition, guardCache.parse(guard));
+			} catch (ParseException e) {
+				addGuardError(sequenceFlow, guard, "Parse guard exception " + e.getMessage());
+			} catch (NonExistingVariableException e) {
+				addGuardError(sequenceFlow, guard, "Non-existing variable " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * Parse the given guards concurrently into {@link #guardCache}, parse
+	 * failures are reported when the guards are attached
+	 */
+	private void parseGuardsInParallel(Set<String> guards) {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(guards.size());
+		for (final String guard : guards) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
 					try {
-						dataPetriNet.setGuardFromString(transition, guard);
-					} catch (org.processmining.datapetrinets.expression.syntax.ParseException e) {
-						e.printStackTrace();
-						errors.add("Parse guard exception " + guard);
-					} catch (NonExistingVariableException e) {
-						e.printStackTrace();
-						errors.add("Parse guard exception " + guard);
+						guardCache.parse(guard);
+					} catch (ParseException e) {
+						// cached, reported for each flow with this guard
 					}
+					return null;
 				}
+			});
+		}
+		
+		// the pool shared by a batch of conversions, if any
+		ForkJoinPool pool = getForkJoinPool();
+		if (pool == null) {
+			int parallelism = config.parallelism > 0 ? config.parallelism : Runtime.getRuntime().availableProcessors();
+			pool = new ForkJoinPool(parallelism);
+		}
+		List<Future<Void>> results = new ArrayList<Future<Void>>(tasks.size());
+		try {
+			for (Callable<Void> task : tasks) {
+				results.add(pool.submit(task));
 			}
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			for (Future<Void> result : results) result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ConverterException("Parsing the guards of " + bpmn.getLabel() + " was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new ConverterException("Parsing the guards of " + bpmn.getLabel() + " failed", e.getCause());
+		} finally {
+			if (pool != getForkJoinPool()) pool.shutdown();
 		}
 	}
 	
@@ -143,14 +314,15 @@ public class BPMN2DataPetriNetConverter extends BPMN2PetriNetConverter {
 	 * 
 	 * Clone Petri net to data Petri net
 	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	private void clonePetriNetToDataPetriNet() {
 		
-		// Map for plain and data Petri nets places		
-		Map<Place, Place> placesMap = new HashMap();
+		Petrinet net = getPetriNet();
+		
+		// Map for plain and data Petri nets places
+		Map<Place, Place> placesMap = new HashMap<Place, Place>();
 		
 		// Map for plain and data Petri nets transitions
-		Map<Transition, Transition> transitionsMap = new HashMap();
+		clonedTransitions = new HashMap<Transition, Transition>();
 		
 		dataPetriNet = new PetriNetWithData(net.getLabel());
 		for(Place place : net.getPlaces()) {
@@ -159,15 +331,22 @@ public class BPMN2DataPetriNetConverter extends BPMN2PetriNetConverter {
 		}
 		for(Transition transition : net.getTransitions()) {
 			Transition newTransition = dataPetriNet.addTransition(transition.getLabel());
-			transitionsMap.put(transition, newTransition);
+			newTransition.setInvisible(transition.isInvisible());
+			clonedTransitions.put(transition, newTransition);
 		}
 		for(PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : net.getEdges()) {
 			if ((edge.getSource() instanceof Transition) && (edge.getTarget() instanceof Place)) {
-				dataPetriNet.addArc(transitionsMap.get(edge.getSource()), placesMap.get(edge.getTarget()));
+				dataPetriNet.addArc(clonedTransitions.get(edge.getSource()), placesMap.get(edge.getTarget()));
 			}
 			if ((edge.getSource() instanceof Place) && (edge.getTarget() instanceof Transition)) {
-				dataPetriNet.addArc(placesMap.get(edge.getSource()), transitionsMap.get(edge.getTarget()));
+				dataPetriNet.addArc(placesMap.get(edge.getSource()), clonedTransitions.get(edge.getTarget()));
 			}
 		}
 	}
+	
+	private void addGuardError(Flow sequenceFlow, String guard, String message) {
+		GuardError error = new GuardError(sequenceFlow.getEdgeID().toString(), guard, message);
+		guardErrors.add(error);
+		errors.add(error.toString());
+	}
 }
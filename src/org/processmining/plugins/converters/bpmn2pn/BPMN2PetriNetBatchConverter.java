@@ -0,0 +1,335 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.petrinet.Petrinet;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.semantics.petrinet.Marking;
+import org.processmining.plugins.converters.ConverterException;
+
+/**
+ * Converts many BPMN models to Petri nets concurrently, without a plugin
+ * context. Each model is converted by its own {@link BPMN2PetriNetConverter}
+ * on a bounded pool of worker threads; a model that fails or exceeds the
+ * timeout is reported in its {@link Result} and does not affect the
+ * conversion of the other models. The nets of one batch share their node
+ * labels through a common {@link LabelTable} and, if the elements of each
+ * model are translated in parallel, one {@link ForkJoinPool}.
+ */
+public class BPMN2PetriNetBatchConverter {
+
+	public static enum Status {
+		/** the model was converted without errors */
+		CONVERTED,
+		/** the conversion reported errors or threw an exception */
+		FAILED,
+		/** the conversion did not finish within the timeout */
+		TIMED_OUT
+	}
+
+	/**
+	 * Outcome of the conversion of a single BPMN model.
+	 */
+	public static class Result {
+
+		private final BPMNDiagram diagram;
+		private final Status status;
+		private final Petrinet net;
+		private final Marking initialMarking;
+		private final Marking finalMarking;
+		private final List<String> warnings;
+		private final List<String> errors;
+		private final Throwable exception;
+		private final long durationMillis;
+
+		private Result(BPMNDiagram diagram, Status status, Petrinet net, Marking initialMarking,
+				Marking finalMarking, List<String> warnings, List<String> errors, Throwable exception,
+				long durationMillis) {
+			this.diagram = diagram;
+			this.status = status;
+			this.net = net;
+			this.initialMarking = initialMarking;
+			this.finalMarking = finalMarking;
+			this.warnings = Collections.unmodifiableList(warnings);
+			this.errors = Collections.unmodifiableList(errors);
+			this.exception = exception;
+			this.durationMillis = durationMillis;
+		}
+
+		public BPMNDiagram getDiagram() {
+			return diagram;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * @return resulting Petri net, null unless the model was converted
+		 */
+		public Petrinet getPetriNet() {
+			return net;
+		}
+
+		public Marking getInitialMarking() {
+			return initialMarking;
+		}
+
+		/**
+		 * @return final marking, null if the net has more than one final place
+		 */
+		public Marking getFinalMarking() {
+			return finalMarking;
+		}
+
+		public List<String> getWarnings() {
+			return warnings;
+		}
+
+		public List<String> getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return exception thrown by the conversion, or null
+		 */
+		public Throwable getException() {
+			return exception;
+		}
+
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+	}
+
+	/**
+	 * default maximal time for converting a single model
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private final BPMN2PetriNetConverter_Configuration config;
+	private final ExecutorService executor;
+	private final int threads;
+	private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+	/**
+	 * Convert on a pool of the given number of threads, which is created for
+	 * each call of {@link #convert(Collection)}.
+	 *
+	 * @param config
+	 *            configuration used for all models
+	 * @param threads
+	 */
+	public BPMN2PetriNetBatchConverter(BPMN2PetriNetConverter_Configuration config, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is required, got " + threads);
+		this.config = config;
+		this.executor = null;
+		this.threads = threads;
+	}
+
+	/**
+	 * Convert on an executor shared with other work. The executor is not
+	 * shut down by this converter.
+	 *
+	 * @param config
+	 *            configuration used for all models
+	 * @param executor
+	 */
+	public BPMN2PetriNetBatchConverter(BPMN2PetriNetConverter_Configuration config, ExecutorService executor) {
+		this.config = config;
+		this.executor = executor;
+		this.threads = 0;
+	}
+
+	/**
+	 * Set the maximal time for converting a single model, measured from the
+	 * start of its conversion. A conversion exceeding the timeout is
+	 * interrupted and reported as {@link Status#TIMED_OUT}. A model which
+	 * does not start within the time the models submitted before it may take
+	 * is reported as {@link Status#TIMED_OUT} without being converted, so a
+	 * conversion which ignores the interrupt cannot stall the batch. The
+	 * default is {@link #DEFAULT_TIMEOUT_MILLIS}, 0 disables the timeout.
+	 *
+	 * @param timeout
+	 * @param unit
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		this.timeoutMillis = unit.toMillis(timeout);
+	}
+
+	/**
+	 * Convert all given models.
+	 *
+	 * @param diagrams
+	 * @return one result per model, in the order of the models
+	 */
+	public List<Result> convert(Collection<BPMNDiagram> diagrams) {
+
+		ExecutorService pool = (executor != null) ? executor : Executors.newFixedThreadPool(threads);
+		final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "BPMN2PetriNet batch watchdog");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		// one pool for the parallel translation of all models, instead of one per model
+		ForkJoinPool translationPool = null;
+		if (config.translateInParallel) {
+			int parallelism = config.parallelism > 0 ? config.parallelism : Runtime.getRuntime().availableProcessors();
+			translationPool = new ForkJoinPool(parallelism);
+		}
+
+		try {
+			List<BPMNDiagram> models = new ArrayList<BPMNDiagram>(diagrams);
+			LabelTable labelTable = new LabelTable();
+			List<FutureTask<Result>> tasks = new ArrayList<FutureTask<Result>>(models.size());
+			for (BPMNDiagram diagram : models) {
+				ConversionTask conversion = new ConversionTask(diagram, labelTable, translationPool, watchdog);
+				FutureTask<Result> task = new FutureTask<Result>(conversion);
+				conversion.future = task;
+				// the models before it take at most one timeout per round of the threads,
+				// a shared executor is assumed to run one model at a time
+				conversion.armTimeout(timeoutMillis * (1 + tasks.size() / Math.max(threads, 1)));
+				tasks.add(task);
+				pool.execute(task);
+			}
+
+			List<Result> results = new ArrayList<Result>(models.size());
+			for (int i = 0; i < tasks.size(); i++) {
+				results.add(getResult(models.get(i), tasks.get(i), tasks));
+			}
+			return results;
+		} finally {
+			watchdog.shutdownNow();
+			if (translationPool != null) translationPool.shutdownNow();
+			if (executor == null) pool.shutdownNow();
+		}
+	}
+
+	private Result getResult(BPMNDiagram diagram, FutureTask<Result> task, List<FutureTask<Result>> tasks) {
+		try {
+			return task.get();
+		} catch (CancellationException e) {
+			return new Result(diagram, Status.TIMED_OUT, null, null, null, new ArrayList<String>(),
+					Collections.singletonList("Conversion did not finish within " + timeoutMillis + " ms"), null,
+					timeoutMillis);
+		} catch (ExecutionException e) {
+			// conversion errors are caught by the task itself
+			return new Result(diagram, Status.FAILED, null, null, null, new ArrayList<String>(),
+					Collections.singletonList(String.valueOf(e.getCause())), e.getCause(), 0);
+		} catch (InterruptedException e) {
+			for (FutureTask<Result> t : tasks)
+				t.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ConverterException("Batch conversion was interrupted", e);
+		}
+	}
+
+	/**
+	 * Converts a single model and cancels itself if it does not start in time
+	 * or exceeds the timeout.
+	 */
+	private class ConversionTask implements Callable<Result> {
+
+		private final BPMNDiagram diagram;
+		private final LabelTable labelTable;
+		private final ForkJoinPool translationPool;
+		private final ScheduledExecutorService watchdog;
+		private FutureTask<Result> future;
+		private volatile ScheduledFuture<?> timeout;
+
+		public ConversionTask(BPMNDiagram diagram, LabelTable labelTable, ForkJoinPool translationPool,
+				ScheduledExecutorService watchdog) {
+			this.diagram = diagram;
+			this.labelTable = labelTable;
+			this.translationPool = translationPool;
+			this.watchdog = watchdog;
+		}
+
+		/**
+		 * Cancel the task after the given time, replacing the previous
+		 * timeout
+		 *
+		 * @param millis
+		 *            time from now, 0 for no timeout
+		 */
+		private void armTimeout(long millis) {
+			if (timeout != null) timeout.cancel(false);
+			if (millis > 0) {
+				timeout = watchdog.schedule(new Runnable() {
+					public void run() {
+						future.cancel(true);
+					}
+				}, millis, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		public Result call() {
+			armTimeout(timeoutMillis);
+			try {
+				return convert(diagram, labelTable, translationPool);
+			} finally {
+				if (timeout != null) timeout.cancel(false);
+			}
+		}
+	}
+
+	private Result convert(BPMNDiagram diagram, LabelTable labelTable, ForkJoinPool translationPool) {
+		long start = System.nanoTime();
+		BPMN2PetriNetConverter conv = new BPMN2PetriNetConverter(diagram, config);
+		conv.setLabelTable(labelTable);
+		conv.setForkJoinPool(translationPool);
+		try {
+			if (!conv.convert()) {
+				return new Result(diagram, Status.FAILED, null, null, null, conv.getWarnings(), conv.getErrors(), null,
+						elapsedMillis(start));
+			}
+
+			Petrinet net = conv.getPetriNet();
+			Marking m = conv.getMarking();
+			Marking mf = null;
+			List<Place> finalPlaces = conv.getFinalPlaces();
+			if (finalPlaces.size() == 1) {
+				mf = new Marking(finalPlaces);
+			} else {
+				conv.getWarnings().add("More than 1 final place, could not construct generic final marking.");
+			}
+			return new Result(diagram, Status.CONVERTED, net, m, mf, conv.getWarnings(), conv.getErrors(), null,
+					elapsedMillis(start));
+
+		} catch (RuntimeException e) {
+			return failed(diagram, conv, e, start);
+		} catch (StackOverflowError e) {
+			return failed(diagram, conv, e, start);
+		}
+	}
+
+	private Result failed(BPMNDiagram diagram, BPMN2PetriNetConverter conv, Throwable e, long start) {
+		List<String> errors = new ArrayList<String>(conv.getErrors());
+		errors.add("Conversion of " + diagram.getLabel() + " failed: " + e);
+		return new Result(diagram, Status.FAILED, null, null, null, conv.getWarnings(), errors, e,
+				elapsedMillis(start));
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+}
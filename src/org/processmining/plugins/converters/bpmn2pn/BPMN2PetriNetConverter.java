@@ -2,12 +2,21 @@ package org.processmining.plugins.converters.bpmn2pn;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import org.processmining.models.graphbased.directed.ContainableDirectedGraphElement;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
@@ -21,11 +30,15 @@ import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
 import org.processmining.models.graphbased.directed.bpmn.elements.Gateway;
 import org.processmining.models.graphbased.directed.bpmn.elements.SubProcess;
 import org.processmining.models.graphbased.directed.petrinet.Petrinet;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
 import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
 import org.processmining.models.graphbased.directed.petrinet.elements.Place;
 import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
 import org.processmining.models.graphbased.directed.petrinet.impl.PetrinetFactory;
 import org.processmining.models.semantics.petrinet.Marking;
+import org.processmining.plugins.converters.ConverterException;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.LabelValue;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.ORGatewayEncoding;
 
 /**
  * Convert a BPMN model to a Petri net , only considering the control-flow of the model
@@ -34,20 +47,118 @@ import org.processmining.models.semantics.petrinet.Marking;
  * Jul 18, 2013
  */
 public class BPMN2PetriNetConverter {
-	
+
 //	private static final String EXCLUSIVE_GATEWAY = "Exclusive gateway";
 //	private static final String PARALLEL_GATEWAY = "Parallel gateway";
 //	private static final String EMPTY = "Empty";
-	
+
+	/**
+	 * subsets of an inclusive gateway's branches are enumerated as bitmasks of
+	 * an int, so larger gateways can never be translated by subsets
+	 */
+	static final int MAX_OR_SUBSET_BRANCHES = 30;
+
+	/**
+	 * in parallel translation, the elements of a phase are split into this
+	 * many chunks per worker thread to balance uneven translation costs
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	// names of the translation phases in ConversionMetrics
+	public static final String PHASE_INDEX_BOUNDARY_EVENTS = "indexBoundaryEvents";
+	public static final String PHASE_EDGES = "translateEdges";
+	public static final String PHASE_EVENTS = "translateEvents";
+	public static final String PHASE_ACTIVITIES = "translateActivities";
+	public static final String PHASE_SUBPROCESSES = "translateSubProcesses";
+	public static final String PHASE_GATEWAYS = "translateGateways";
+	public static final String PHASE_HIERARCHICAL = "translateHierarchically";
+	public static final String PHASE_LINK_TO_UNIQUE_PLACES = "linkToUniquePlaces";
+	public static final String PHASE_REMOVE_TRANSLATION = "removeTranslation";
+
 	protected BPMNDiagram bpmn;
-	protected Petrinet net;
-	protected Marking m;
-	
-	protected List<Place> finalPlace = new ArrayList<Place>();
-	
+
+	/**
+	 * the net built by the translation, {@link #net}, {@link #m},
+	 * {@link #finalPlace}, {@link #flowMap} and {@link #nodeMap} are only
+	 * created from it by {@link #materialize()}
+	 */
+	private CompactPetriNet compactNet;
+	/**
+	 * maps each BPMN control-flow edge to a place of {@link #compactNet}
+	 */
+	private Map<BPMNEdge<BPMNNode, BPMNNode>, Integer> compactFlowMap = new HashMap<BPMNEdge<BPMNNode, BPMNNode>, Integer>();
+	/**
+	 * maps each BPMN node to the nodes of {@link #compactNet} (transitions and places)
+	 */
+	private Map<BPMNNode, IntList> compactNodeMap = new HashMap<BPMNNode, IntList>();
+	/**
+	 * maps each start and end event to the transitions linking it to the
+	 * unique initial and final place, if subprocesses are not linked to their
+	 * activities
+	 */
+	private Map<BPMNNode, IntList> compactEventLinks = new HashMap<BPMNNode, IntList>();
+	private int compactStartPlace = -1;
+	private int compactEndPlace = -1;
+	/**
+	 * interning table for the labels of the resulting net, may be shared
+	 * with other conversions
+	 */
+	private LabelTable labelTable;
+
+	/**
+	 * Creates the empty net in which the resulting net is built, see
+	 * {@link BPMN2PetriNetConverter#setNetFactory(NetFactory)}.
+	 */
+	public static interface NetFactory {
+		PetrinetGraph createNet(String label);
+	}
+
+	/**
+	 * default factory, creates a plain {@link Petrinet}
+	 */
+	public static final NetFactory PETRINET_FACTORY = new NetFactory() {
+		public PetrinetGraph createNet(String label) {
+			return PetrinetFactory.newPetrinet(label);
+		}
+	};
+
+	private NetFactory netFactory = PETRINET_FACTORY;
+
+	/**
+	 * pool for {@link BPMN2PetriNetConverter_Configuration#translateInParallel}
+	 * shared with other conversions, null to create a pool per conversion
+	 */
+	private ForkJoinPool sharedPool;
+
+	/**
+	 * set when the converting thread is interrupted, so that the workers
+	 * translating in parallel stop as well
+	 */
+	private volatile boolean interrupted;
+
+	/**
+	 * resulting net and markings, only created on demand by
+	 * {@link #materialize()}; subclasses use the getters
+	 */
+	private PetrinetGraph net;
+	private Marking m;
+	/**
+	 * nodes of {@link #net}, indexed like the nodes of {@link #compactNet}
+	 */
+	private PetrinetNode[] netNodes;
+
+	private List<Place> finalPlace = new ArrayList<Place>();
+
+	/**
+	 * BPMN nodes and control-flow edges whose mapping is changed by the
+	 * running update, null unless {@link #net} is patched by the update
+	 */
+	private Set<BPMNNode> touchedNodes;
+	private Set<BPMNEdge<BPMNNode, BPMNNode>> touchedFlows;
+
 	protected List<String> warnings = new ArrayList<String>();
 	protected List<String> errors = new ArrayList<String>();
-	
+
 	/**
 	 * maps each BPMN control-flow edge to a place
 	 */
@@ -56,381 +167,1165 @@ public class BPMN2PetriNetConverter {
 	 * maps each BPMN node to a set of Petri net nodes (transitions and places)
 	 */
 	private Map<BPMNNode, Set<PetrinetNode>> nodeMap = new HashMap<BPMNNode, Set<PetrinetNode>>();
-	
+	/**
+	 * maps each activity to the events attached to its boundary, built once per
+	 * conversion by {@link #indexBoundaryEvents()}
+	 */
+	private Map<Activity, List<Event>> boundaryEventMap = new HashMap<Activity, List<Event>>();
+
+	/**
+	 * the nodes of the diagram (key null) and of each subprocess, only during
+	 * a hierarchical translation
+	 */
+	private Map<SubProcess, Scope> scopes;
+	/**
+	 * translation of the first scope of each structure, only during a
+	 * hierarchical translation
+	 */
+	private ConcurrentMap<Integer, ScopeTranslation> scopeCache;
+
+	/**
+	 * measurements of the last conversion or update
+	 */
+	private ConversionMetrics metrics = new ConversionMetrics();
+	private List<ConversionListener> listeners = new ArrayList<ConversionListener>();
+
 	protected BPMN2PetriNetConverter_Configuration config; // visible to subclasses using this conversion
 
-	
+	/**
+	 * Translates a single BPMN element of a translation phase into a
+	 * {@link NetFragment}.
+	 */
+	private static interface ElementTranslator<E> {
+		void translate(NetFragment f, E element);
+	}
+
+	private final ElementTranslator<BPMNNode> edgeTranslator = new ElementTranslator<BPMNNode>() {
+		public void translate(NetFragment f, BPMNNode n) {
+			translateInEdges(f, n);
+		}
+	};
+
+	private final ElementTranslator<Event> eventTranslator = new ElementTranslator<Event>() {
+		public void translate(NetFragment f, Event e) {
+			translateEvent(f, e);
+		}
+	};
+
+	private final ElementTranslator<Activity> activityTranslator = new ElementTranslator<Activity>() {
+		public void translate(NetFragment f, Activity a) {
+			translateActivity(f, a, false);
+		}
+	};
+
+	private final ElementTranslator<SubProcess> subProcessTranslator = new ElementTranslator<SubProcess>() {
+		public void translate(NetFragment f, SubProcess s) {
+			translateSubProcess(f, s);
+		}
+	};
+
+	private final ElementTranslator<Gateway> gatewayTranslator = new ElementTranslator<Gateway>() {
+		public void translate(NetFragment f, Gateway g) {
+			translateGateway(f, g);
+		}
+	};
+
+	private final ElementTranslator<Event> linkTranslator = new ElementTranslator<Event>() {
+		public void translate(NetFragment f, Event e) {
+			linkToUniquePlaces(f, e);
+		}
+	};
+
+	/**
+	 * The nodes directly contained in the diagram or in one subprocess, which
+	 * are translated together by a hierarchical translation.
+	 */
+	private static class Scope {
+		final List<BPMNNode> nodes = new ArrayList<BPMNNode>();
+		final List<SubProcess> children = new ArrayList<SubProcess>();
+		/**
+		 * the control-flow edges between the nodes, in the order of their
+		 * targets
+		 */
+		final List<Flow> flows = new ArrayList<Flow>();
+		/**
+		 * scopes with equal structure are translated to the same fragment up
+		 * to the BPMN elements it is mapped to
+		 */
+		int structure = -1;
+	}
+
+	/**
+	 * Translation of a scope, forks the translations of its subprocesses.
+	 */
+	private class ScopeTranslation extends RecursiveTask<NetFragment> {
+		private static final long serialVersionUID = 1L;
+
+		final Scope scope;
+		final boolean parallel;
+
+		ScopeTranslation(Scope scope, boolean parallel) {
+			this.scope = scope;
+			this.parallel = parallel;
+		}
+
+		protected NetFragment compute() {
+			return translateScope(scope, parallel);
+		}
+	}
+
 	public BPMN2PetriNetConverter(BPMNDiagram bpmn, BPMN2PetriNetConverter_Configuration config) {
 		this.bpmn = bpmn;
 		this.config = config;
 	}
-	
+
 	public BPMN2PetriNetConverter(BPMNDiagram bpmn) {
 		this(bpmn, new BPMN2PetriNetConverter_Configuration());
 	}
 
-	
+
 	public boolean convert() {
-		
-		net = PetrinetFactory.newPetrinet("Petri net from "+bpmn.getLabel());
-		m = new Marking();
 
-		translateEdges();
-		translateEvents();
-		translateActivities();
-		translateSubProcesses();
-		translateGateways();
-		
+		compactNet = new CompactPetriNet("Petri net from "+bpmn.getLabel(), labelTable);
+		compactFlowMap.clear();
+		compactNodeMap.clear();
+		compactEventLinks.clear();
+		net = null;
+		metrics = new ConversionMetrics();
+		interrupted = false;
+
+		long start = System.nanoTime();
+		indexBoundaryEvents();
+		finishPhase(PHASE_INDEX_BOUNDARY_EVENTS, start);
+
+		ForkJoinPool pool = null;
+		if (config.translateInParallel) {
+			int parallelism = config.parallelism > 0 ? config.parallelism : Runtime.getRuntime().availableProcessors();
+			pool = (sharedPool != null) ? sharedPool : new ForkJoinPool(parallelism);
+		}
+		try {
+			if (config.translateSubProcessesHierarchically && !bpmn.getSubProcesses().isEmpty() && buildScopes()) {
+				translateHierarchically(pool);
+			} else {
+				translateEdges(pool);
+				translateEvents(pool);
+				translateActivities(pool);
+				translateSubProcesses(pool);
+				translateGateways(pool);
+			}
+		} finally {
+			if (pool != null && pool != sharedPool) pool.shutdown();
+			scopes = null;
+			scopeCache = null;
+		}
+
 		if (!config.linkSubProcessToActivity) {
-			
+
 			// make each subprocess executable as an alternative path:
 			// add new initial/final place
-			Place p_uniqueStart = net.addPlace("i");
-			Place p_uniqueEnd = net.addPlace("o");
-			
+			start = System.nanoTime();
+			compactStartPlace = compactNet.addPlace("i");
+			compactEndPlace = compactNet.addPlace("o");
+
+			NetFragment f = new NetFragment();
 			for (Event e : bpmn.getEvents()) {
-				switch (e.getEventType()) {
-					// for each start event, create new start transition to mark initial event
-					case START:
-						Set<PetrinetNode> startNodes = nodeMap.get(e);
-						for (PetrinetNode n : startNodes) {
-							if (n instanceof Place) {
-								Place p = (Place)n;
-								m.remove(p); // initial place of start node is no longer initially marked
-								Transition t_eventStart = net.addTransition("t_start_"+e.getLabel());
-								t_eventStart.setInvisible(true);
-								net.addArc(p_uniqueStart, t_eventStart);
-								net.addArc(t_eventStart, p);
-							}
-						}
-						break;
-					// for each end event, create new end transition to clear final event
-					case END:
-						Set<PetrinetNode> endNodes = nodeMap.get(e);
-						for (PetrinetNode n : endNodes) {
-							if (n instanceof Place) {
-								Place p = (Place)n;
-								finalPlace.remove(p); // final place no longer part of final marking
-								Transition t_eventEnd = net.addTransition("t_end_"+e.getLabel());
-								t_eventEnd.setInvisible(true);
-								net.addArc(p, t_eventEnd);
-								net.addArc(t_eventEnd, p_uniqueEnd);
-							}
-						}
-						break;
-					default:
-						break;
-				}
+				translateElement(f, e, linkTranslator);
 			}
-			m.add(p_uniqueStart);
-			finalPlace.add(p_uniqueEnd);
+			f.markInitial(NetFragment.ref(compactStartPlace));
+			f.markFinal(NetFragment.ref(compactEndPlace));
+
+			mergeLinks(f);
+			finishPhase(PHASE_LINK_TO_UNIQUE_PLACES, start);
 		}
 
+		finishConversion();
 		return errors.size() == 0;
 	}
-	
 
-	private void translateEdges() {
+	/**
+	 * Link a start event to the unique initial place and an end event to the
+	 * unique final place of the net, through a new invisible transition per
+	 * place of the event; updates {@link #compactEventLinks} when merged.
+	 */
+	private void linkToUniquePlaces(NetFragment f, Event e) {
+		switch (e.getEventType()) {
+			// for each start event, create new start transition to mark initial event
+			case START:
+				IntList startNodes = compactNodeMap.get(e);
+				for (int i = 0; i < startNodes.size(); i++) {
+					if (compactNet.isPlace(startNodes.get(i))) {
+						int p = NetFragment.ref(startNodes.get(i));
+						f.unmarkInitial(p); // initial place of start node is no longer initially marked
+						int t_eventStart = f.addTransition(new NodeLabel(LabelValue.ORIGINAL_LABEL, null, null, false, "t_start", e.getLabel()), true);
+						f.addArc(NetFragment.ref(compactStartPlace), t_eventStart);
+						f.addArc(t_eventStart, p);
+						f.addToNode(e, t_eventStart);
+					}
+				}
+				break;
+			// for each end event, create new end transition to clear final event
+			case END:
+				IntList endNodes = compactNodeMap.get(e);
+				for (int i = 0; i < endNodes.size(); i++) {
+					if (compactNet.isPlace(endNodes.get(i))) {
+						int p = NetFragment.ref(endNodes.get(i));
+						f.unmarkFinal(p); // final place no longer part of final marking
+						int t_eventEnd = f.addTransition(new NodeLabel(LabelValue.ORIGINAL_LABEL, null, null, false, "t_end", e.getLabel()), true);
+						f.addArc(p, t_eventEnd);
+						f.addArc(t_eventEnd, NetFragment.ref(compactEndPlace));
+						f.addToNode(e, t_eventEnd);
+					}
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Patch the net of the last conversion after the BPMN diagram has been
+	 * edited as described by change. Only the places, transitions and arcs of
+	 * the edited nodes, of the nodes connected to edited flows, and of the
+	 * nodes depending on their translation (activities with attached events,
+	 * subprocesses linked to their start and end events) are removed and
+	 * translated anew; the resulting net is the same as for a full
+	 * conversion of the edited diagram, up to the order of its nodes.
+	 *
+	 * The configuration must not change between the conversion and the
+	 * update. If the Petri net has been created already, the update patches
+	 * it in place: the Petri net nodes of unchanged elements are kept and the
+	 * update takes time proportional to the edit and the number of arcs of
+	 * the translations removed, not to the size of the net. Warnings and
+	 * errors of the update are added to {@link #getWarnings()} and
+	 * {@link #getErrors()}.
+	 *
+	 * @param change
+	 * @return true iff the translation of the edited elements reported no
+	 *         errors
+	 */
+	public boolean update(BPMNDiagramChange change) {
+		if (compactNet == null) return convert();
+
+		int errorCount = errors.size();
+		metrics = new ConversionMetrics();
+		long start = System.nanoTime();
+		Set<BPMNNode> removed = change.getRemovedNodes();
+		if (net != null) {
+			compactNet.startRecording();
+			touchedNodes = new HashSet<BPMNNode>(removed);
+			touchedFlows = new HashSet<BPMNEdge<BPMNNode, BPMNNode>>(change.getRemovedFlows());
+		}
+		boolean patched = false;
+		try {
+			updateTranslation(change, removed, start);
+			if (net != null) {
+				materializeChanges();
+				patched = true;
+			}
+		} finally {
+			touchedNodes = null;
+			touchedFlows = null;
+			if (!patched) net = null;
+		}
+
+		finishConversion();
+		return errors.size() == errorCount;
+	}
+
+	/**
+	 * Remove the translation of the elements affected by change from
+	 * {@link #compactNet} and translate them anew.
+	 */
+	private void updateTranslation(BPMNDiagramChange change, Set<BPMNNode> removed, long start) {
+		// nodes whose incoming flows are translated anew
+		Set<BPMNNode> inFlowsChanged = new LinkedHashSet<BPMNNode>();
+		inFlowsChanged.addAll(change.getAddedNodes());
+		inFlowsChanged.addAll(change.getChangedNodes());
+		for (Flow f : change.getAddedFlows()) inFlowsChanged.add(f.getTarget());
+		for (Flow f : change.getRemovedFlows()) inFlowsChanged.add(f.getTarget());
+		inFlowsChanged.removeAll(removed);
+
+		// nodes that are translated anew: the places of incoming flows are
+		// connected to the translations of the targets and the sources
+		Set<BPMNNode> changed = new LinkedHashSet<BPMNNode>(inFlowsChanged);
+		for (BPMNNode n : inFlowsChanged) {
+			for (BPMNEdge<?, ?> e : bpmn.getInEdges(n)) {
+				if (e instanceof Flow) changed.add(((Flow)e).getSource());
+			}
+		}
+		for (Flow f : change.getRemovedFlows()) changed.add(f.getSource());
+
+		updateBoundaryEvents(change);
+
+		// add all nodes whose translation refers to the translation of a changed node
+		LinkedList<BPMNNode> worklist = new LinkedList<BPMNNode>(changed);
+		worklist.addAll(removed);
+		while (!worklist.isEmpty()) {
+			for (BPMNNode d : getDependentNodes(worklist.removeFirst())) {
+				if (changed.add(d)) worklist.add(d);
+			}
+		}
+		if (touchedNodes != null) touchedNodes.addAll(changed);
+		changed.removeAll(removed);
+
+		// remove the old translation
+		IntList obsolete = new IntList();
+		for (BPMNNode n : removed) collectTranslation(n, obsolete);
+		for (BPMNNode n : changed) collectTranslation(n, obsolete);
+		for (Flow f : change.getRemovedFlows()) {
+			Integer p = compactFlowMap.remove(f);
+			if (p != null) obsolete.add(p);
+		}
+		for (BPMNNode n : inFlowsChanged) {
+			for (BPMNEdge<?, ?> e : bpmn.getInEdges(n)) {
+				Integer p = compactFlowMap.remove(e);
+				if (p == null) continue;
+				obsolete.add(p);
+				if (touchedFlows != null) touchedFlows.add((Flow)e);
+			}
+		}
+		compactNet.removeNodes(obsolete.toArray());
+		finishPhase(PHASE_REMOVE_TRANSLATION, start);
+
+		// translate anew, in the order of the phases of a full conversion
+		List<Event> events = new ArrayList<Event>();
+		List<Activity> activities = new ArrayList<Activity>();
+		List<SubProcess> subProcesses = new ArrayList<SubProcess>();
+		List<Gateway> gateways = new ArrayList<Gateway>();
+		for (BPMNNode n : changed) {
+			if (n instanceof Event) events.add((Event)n);
+			else if (n instanceof SubProcess) subProcesses.add((SubProcess)n);
+			else if (n instanceof Activity) activities.add((Activity)n);
+			else if (n instanceof Gateway) gateways.add((Gateway)n);
+		}
+		translatePhase(null, PHASE_EDGES, new ArrayList<BPMNNode>(inFlowsChanged), edgeTranslator);
+		translatePhase(null, PHASE_EVENTS, events, eventTranslator);
+		translatePhase(null, PHASE_ACTIVITIES, activities, activityTranslator);
+		translatePhase(null, PHASE_SUBPROCESSES, subProcesses, subProcessTranslator);
+		translatePhase(null, PHASE_GATEWAYS, gateways, gatewayTranslator);
+
+		if (!config.linkSubProcessToActivity) {
+			start = System.nanoTime();
+			NetFragment f = new NetFragment();
+			for (Event e : events) translateElement(f, e, linkTranslator);
+			mergeLinks(f);
+			finishPhase(PHASE_LINK_TO_UNIQUE_PLACES, start);
+		}
+	}
+
+	/**
+	 * Apply the changes recorded in {@link #compactNet} during an update to
+	 * {@link #net}, and update the markings and the node and flow maps for
+	 * the touched elements.
+	 */
+	private void materializeChanges() {
+		netNodes = compactNet.materializeChanges(net, netNodes);
+		createMarkings();
+		for (BPMNNode n : touchedNodes) {
+			IntList compactNodes = compactNodeMap.get(n);
+			if (compactNodes == null) nodeMap.remove(n);
+			else nodeMap.put(n, getNetNodes(compactNodes));
+		}
+		for (BPMNEdge<BPMNNode, BPMNNode> f : touchedFlows) {
+			Integer p = compactFlowMap.get(f);
+			if (p == null) flowMap.remove(f);
+			else flowMap.put(f, (Place)netNodes[p]);
+		}
+	}
+
+	/**
+	 * Remove the mapping of n to the nodes of {@link #compactNet} and collect
+	 * these nodes.
+	 */
+	private void collectTranslation(BPMNNode n, IntList nodes) {
+		IntList translation = compactNodeMap.remove(n);
+		if (translation != null) nodes.addAll(translation);
+		IntList links = compactEventLinks.remove(n);
+		if (links != null) nodes.addAll(links);
+	}
+
+	/**
+	 * @param n
+	 * @return all nodes whose translation refers to the translation of n
+	 */
+	private List<BPMNNode> getDependentNodes(BPMNNode n) {
+		List<BPMNNode> dependent = new ArrayList<BPMNNode>();
+		if (n instanceof Event) {
+			Event e = (Event)n;
+			// the activity connects to the transition of its attached event
+			if (e.getBoundingNode() != null) dependent.add(e.getBoundingNode());
+			// a linked subprocess connects to the places of its start and end events
+			if (config.linkSubProcessToActivity && e.getParentSubProcess() != null
+					&& (e.getEventType() == EventType.START || e.getEventType() == EventType.END)) {
+				dependent.add(e.getParentSubProcess());
+			}
+		}
+		// and removes the start and end places from the markings
+		if (n instanceof SubProcess && config.linkSubProcessToActivity) {
+			for (ContainableDirectedGraphElement c : ((SubProcess)n).getChildren()) {
+				if (c instanceof Event && (((Event)c).getEventType() == EventType.START
+						|| ((Event)c).getEventType() == EventType.END)) {
+					dependent.add((Event)c);
+				}
+			}
+		}
+		return dependent;
+	}
+
+	/**
+	 * Update {@link #boundaryEventMap} for added and removed nodes.
+	 */
+	private void updateBoundaryEvents(BPMNDiagramChange change) {
+		for (BPMNNode n : change.getRemovedNodes()) {
+			boundaryEventMap.remove(n);
+			if (n instanceof Event && ((Event)n).getBoundingNode() != null) {
+				List<Event> boundaryEvents = boundaryEventMap.get(((Event)n).getBoundingNode());
+				if (boundaryEvents != null) boundaryEvents.remove(n);
+			}
+		}
+		for (BPMNNode n : change.getAddedNodes()) {
+			if (n instanceof Event && ((Event)n).getBoundingNode() != null) {
+				Activity a = ((Event)n).getBoundingNode();
+				List<Event> boundaryEvents = boundaryEventMap.get(a);
+				if (boundaryEvents == null) {
+					boundaryEvents = new ArrayList<Event>();
+					boundaryEventMap.put(a, boundaryEvents);
+				}
+				boundaryEvents.add((Event)n);
+			}
+		}
+	}
+
+	/**
+	 * Translate all elements of one translation phase and merge the resulting
+	 * fragments into {@link #compactNet} in the order of the elements. If a
+	 * pool is given, the elements are split into chunks that are translated
+	 * concurrently; translations only read {@link #compactFlowMap} and
+	 * {@link #compactNodeMap} as produced by earlier phases, so the resulting net is
+	 * the same as for a sequential translation.
+	 *
+	 * @param pool
+	 *            pool to translate the elements in, or null to translate
+	 *            sequentially
+	 * @param phase
+	 *            name of the phase in {@link #getMetrics()}
+	 * @param elements
+	 * @param translator
+	 */
+	private <E> void translatePhase(ForkJoinPool pool, String phase, List<E> elements, final ElementTranslator<E> translator) {
+
+		checkInterrupted();
+
+		long start = System.nanoTime();
+		int chunks = (pool == null) ? 1 : Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, elements.size());
+		if (chunks <= 1) {
+			NetFragment f = new NetFragment();
+			for (E e : elements) translateElement(f, e, translator);
+			merge(f);
+			finishPhase(phase, start);
+			return;
+		}
+
+		List<ForkJoinTask<NetFragment>> tasks = new ArrayList<ForkJoinTask<NetFragment>>(chunks);
+		for (int c = 0; c < chunks; c++) {
+			final List<E> chunk = elements.subList(c * elements.size() / chunks, (c+1) * elements.size() / chunks);
+			tasks.add(pool.submit(new Callable<NetFragment>() {
+				public NetFragment call() {
+					NetFragment f = new NetFragment();
+					for (E e : chunk) translateElement(f, e, translator);
+					return f;
+				}
+			}));
+		}
+		mergeAll(tasks);
+		finishPhase(phase, start);
+	}
+
+	/**
+	 * Merge the fragments of tasks submitted to a pool in their order. Unlike
+	 * {@link ForkJoinPool#invokeAll(Collection)}, waiting responds to an
+	 * interrupt of the converting thread, which stops the tasks.
+	 */
+	private void mergeAll(List<ForkJoinTask<NetFragment>> tasks) {
+		try {
+			for (ForkJoinTask<NetFragment> task : tasks) {
+				merge(task.get());
+			}
+		} catch (InterruptedException e) {
+			interrupted = true;
+			for (ForkJoinTask<NetFragment> task : tasks) task.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ConverterException("Translation of "+bpmn.getLabel()+" was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			if (e.getCause() instanceof Error) throw (Error)e.getCause();
+			throw new ConverterException("Translation of "+bpmn.getLabel()+" failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Abort the translation if the converting thread was interrupted, checked
+	 * before each element and in long loops; workers of a pool see the
+	 * interrupt through {@link #interrupted}.
+	 */
+	private void checkInterrupted() {
+		if (Thread.currentThread().isInterrupted()) interrupted = true;
+		if (interrupted) throw new ConverterException("Translation of "+bpmn.getLabel()+" was interrupted");
+	}
+
+	/**
+	 * Translate element into f and count the places, transitions and arcs
+	 * created for it in f.
+	 */
+	private <E> void translateElement(NetFragment f, E element, ElementTranslator<E> translator) {
+		checkInterrupted();
+
+		int nodes = f.getNodeCount();
+		int places = f.getPlaceCount();
+		int arcs = f.getArcCount();
+		int flows = f.getFlowCount();
+
+		translator.translate(f, element);
+
+		int newPlaces = f.getPlaceCount() - places;
+		int newTransitions = f.getNodeCount() - nodes - newPlaces;
+		int newArcs = f.getArcCount() - arcs;
+		if (translator == edgeTranslator) {
+			if (f.getFlowCount() > flows) f.countElements("Flow", f.getFlowCount() - flows, newPlaces, newTransitions, newArcs);
+		} else if (translator == linkTranslator) {
+			if (newTransitions > 0) f.countElements("Event link", 1, newPlaces, newTransitions, newArcs);
+		} else {
+			f.countElements(getElementType(element), 1, newPlaces, newTransitions, newArcs);
+		}
+	}
+
+	/**
+	 * @param element
+	 * @return type of the BPMN element in {@link ConversionMetrics}
+	 */
+	private static String getElementType(Object element) {
+		if (element instanceof Event) return "Event("+((Event)element).getEventType()+")";
+		if (element instanceof Gateway) return "Gateway("+((Gateway)element).getGatewayType()+")";
+		return element.getClass().getSimpleName();
+	}
+
+	private void finishPhase(String phase, long start) {
+		long nanos = System.nanoTime() - start;
+		metrics.addPhaseTime(phase, nanos);
+		for (ConversionListener listener : listeners) listener.phaseFinished(phase, nanos);
+	}
+
+	private void finishConversion() {
+		for (ConversionListener listener : listeners) listener.conversionFinished(metrics);
+	}
+
+	/**
+	 * Group the nodes of the diagram by the subprocess containing them,
+	 * updates {@link #scopes}. Boundary events belong to the scope of their
+	 * activity.
+	 *
+	 * @return false if the diagram cannot be translated hierarchically,
+	 *         because a flow crosses the boundary of a subprocess or a
+	 *         subprocess is not part of the diagram
+	 */
+	private boolean buildScopes() {
+		scopes = new HashMap<SubProcess, Scope>();
+		scopes.put(null, new Scope());
+		for (SubProcess s : bpmn.getSubProcesses()) scopes.put(s, new Scope());
+
 		for (BPMNNode n : bpmn.getNodes()) {
-			// select only the sequence flow edges, message flows etc are ignored
-			List<Flow> inFlows = new ArrayList<Flow>();
-			for (BPMNEdge<? extends BPMNNode, ? extends BPMNNode> e : bpmn.getInEdges(n)) {
-				if (e instanceof Flow) inFlows.add((Flow)e);
-			}
-
-			// gateways are translated with one place per flow
-			if (n instanceof Gateway)
-				translateEdges(inFlows, false);
-			
-			// activities are translated with one place for all flows
-			else if (n instanceof Activity)
-				translateEdges(inFlows, true);
-			
-			// events are translated with one place for all flows, unless
-			// configuration asks for multiple places
-			else if (n instanceof Event) {
-				if ( ((Event)n).getEventType() == EventType.END ) {
-					translateEdges(inFlows, (config.endEventJoin == BPMN2PetriNetConverter_Configuration.EndEventJoin.XOR));
+			Scope scope = scopes.get(getParentScope(n));
+			if (scope == null) {
+				warnings.add("Subprocess containing "+n.getLabel()+" is not part of the diagram, subprocesses are not translated separately.");
+				return false;
+			}
+			scope.nodes.add(n);
+			if (n instanceof SubProcess) scope.children.add((SubProcess)n);
+
+			for (BPMNEdge<?, ?> e : bpmn.getInEdges(n)) {
+				if (!(e instanceof Flow)) continue;
+				if (getParentScope(e.getSource()) != getParentScope(n)) {
+					warnings.add("Flow from "+e.getSource().getLabel()+" to "+n.getLabel()+" crosses the boundary of a subprocess, subprocesses are not translated separately.");
+					return false;
+				}
+				scope.flows.add((Flow)e);
+			}
+		}
+		return true;
+	}
+
+	private static SubProcess getParentScope(BPMNNode n) {
+		if (n instanceof Event && ((Event)n).getBoundingNode() != null)
+			return ((Event)n).getBoundingNode().getParentSubProcess();
+		return n.getParentSubProcess();
+	}
+
+	/**
+	 * Translate the diagram scope by scope, see
+	 * {@link BPMN2PetriNetConverter_Configuration#translateSubProcessesHierarchically}.
+	 *
+	 * @param pool
+	 *            pool to translate the subprocesses in, or null to translate
+	 *            sequentially
+	 */
+	private void translateHierarchically(ForkJoinPool pool) {
+		Map<String, Integer> structures = new HashMap<String, Integer>();
+		for (Scope scope : scopes.values()) computeStructure(scope, structures);
+
+		long start = System.nanoTime();
+		scopeCache = new ConcurrentHashMap<Integer, ScopeTranslation>();
+		Scope root = scopes.get(null);
+		if (pool != null)
+			mergeAll(Collections.<ForkJoinTask<NetFragment>>singletonList(pool.submit(new ScopeTranslation(root, true))));
+		else
+			merge(translateScope(root, false));
+		finishPhase(PHASE_HIERARCHICAL, start);
+	}
+
+	/**
+	 * Number the structure of the scope and of all scopes nested in it, such
+	 * that scopes get the same number iff their translations are equal up to
+	 * the BPMN elements they are mapped to. Nodes and flows of scopes with the
+	 * same structure correspond to each other in the order of
+	 * {@link #collectElements(Scope, List, List)}.
+	 *
+	 * @param scope
+	 * @param structures
+	 *            number of each structure seen so far
+	 */
+	private void computeStructure(Scope scope, Map<String, Integer> structures) {
+		if (scope.structure >= 0) return;
+
+		Map<BPMNNode, Integer> nodeIndex = new HashMap<BPMNNode, Integer>();
+		for (BPMNNode n : scope.nodes) nodeIndex.put(n, nodeIndex.size());
+		Map<Flow, Integer> flowIndex = new HashMap<Flow, Integer>();
+		for (Flow f : scope.flows) flowIndex.put(f, flowIndex.size());
+
+		StringBuilder key = new StringBuilder();
+		for (BPMNNode n : scope.nodes) {
+			key.append('(').append(n.getClass().getName());
+			appendLabel(key, n.getLabel());
+			if (n instanceof Event) {
+				Event e = (Event)n;
+				key.append(',').append(e.getEventType()).append(',').append(e.getEventTrigger());
+				key.append(',').append(e.getBoundingNode() != null ? nodeIndex.get(e.getBoundingNode()) : -1);
+			} else if (n instanceof Gateway) {
+				key.append(',').append(((Gateway)n).getGatewayType());
+			} else if (n instanceof Activity) {
+				key.append(',').append(((Activity)n).isBLooped());
+				if (n instanceof SubProcess) {
+					SubProcess s = (SubProcess)n;
+					Scope inner = scopes.get(s);
+					computeStructure(inner, structures);
+					key.append(',').append(s.getGraph() instanceof BPMNDiagram).append(',').append(inner.structure);
+				}
+			}
+			// the edges in the order in which they are translated, other edges
+			// are only counted
+			key.append(",in");
+			for (BPMNEdge<?, ?> e : bpmn.getInEdges(n)) {
+				if (e instanceof Flow) {
+					key.append(',').append(flowIndex.get(e)).append(':').append(nodeIndex.get(e.getSource()));
+					appendLabel(key, e.getLabel());
 				} else {
-					translateEdges(inFlows, true);					
+					key.append(",-");
 				}
 			}
+			key.append(",out");
+			for (BPMNEdge<?, ?> e : bpmn.getOutEdges(n)) {
+				key.append(',').append((e instanceof Flow) ? flowIndex.get(e).toString() : "-");
+			}
+			key.append(')');
 		}
+
+		String structure = key.toString();
+		Integer number = structures.get(structure);
+		if (number == null) {
+			number = structures.size();
+			structures.put(structure, number);
+		}
+		scope.structure = number;
 	}
-	
+
+	private static void appendLabel(StringBuilder key, String label) {
+		if (label == null) {
+			key.append(",null");
+		} else {
+			key.append(',').append(label.length()).append(':').append(label);
+		}
+	}
+
+	/**
+	 * Collect the nodes and flows of scope and of all scopes nested in it.
+	 */
+	private void collectElements(Scope scope, List<BPMNNode> nodes, List<Flow> flows) {
+		nodes.addAll(scope.nodes);
+		flows.addAll(scope.flows);
+		for (SubProcess s : scope.children) collectElements(scopes.get(s), nodes, flows);
+	}
+
+	/**
+	 * Translate the nodes of scope in the order of the translation phases,
+	 * after the scopes of its subprocesses have been translated (concurrently
+	 * if parallel) and appended; the translation of a scope with the same
+	 * structure as a scope translated before is reused, reads
+	 * {@link #scopeCache}.
+	 *
+	 * @param scope
+	 * @param parallel
+	 *            if 'true', called in a pool
+	 * @return fragment translating the scope, only referring to its own nodes
+	 */
+	private NetFragment translateScope(Scope scope, boolean parallel) {
+
+		checkInterrupted();
+
+		List<ScopeTranslation> bodies = new ArrayList<ScopeTranslation>(scope.children.size());
+		for (SubProcess s : scope.children) {
+			ScopeTranslation body = new ScopeTranslation(scopes.get(s), parallel);
+			ScopeTranslation first = scopeCache.putIfAbsent(body.scope.structure, body);
+			if (first != null)
+				body = first;
+			else if (parallel)
+				body.fork();
+			bodies.add(body);
+		}
+
+		NetFragment f = new NetFragment(true);
+		for (int i = 0; i < bodies.size(); i++) {
+			ScopeTranslation body = bodies.get(i);
+			NetFragment bodyFragment = parallel ? body.join() : body.invoke();
+			Scope inner = scopes.get(scope.children.get(i));
+
+			if (body.scope == inner) {
+				f.append(bodyFragment, null, null);
+			} else if (bodyFragment.warnings.isEmpty() && bodyFragment.errors.isEmpty()) {
+				f.append(bodyFragment, correspondingNodes(body.scope, inner), correspondingFlows(body.scope, inner));
+			} else {
+				// messages refer to the ids of the translated elements
+				f.append(translateScope(inner, parallel), null, null);
+			}
+		}
+
+		for (BPMNNode n : scope.nodes) translateElement(f, n, edgeTranslator);
+		for (BPMNNode n : scope.nodes) {
+			if (n instanceof Event) translateElement(f, (Event)n, eventTranslator);
+		}
+		for (BPMNNode n : scope.nodes) {
+			if (n instanceof Activity && !(n instanceof SubProcess)) translateElement(f, (Activity)n, activityTranslator);
+		}
+		for (SubProcess s : scope.children) translateElement(f, s, subProcessTranslator);
+		for (BPMNNode n : scope.nodes) {
+			if (n instanceof Gateway) translateElement(f, (Gateway)n, gatewayTranslator);
+		}
+		return f;
+	}
+
+	private Map<BPMNNode, BPMNNode> correspondingNodes(Scope from, Scope to) {
+		List<BPMNNode> fromNodes = new ArrayList<BPMNNode>();
+		List<BPMNNode> toNodes = new ArrayList<BPMNNode>();
+		collectElements(from, fromNodes, new ArrayList<Flow>());
+		collectElements(to, toNodes, new ArrayList<Flow>());
+
+		Map<BPMNNode, BPMNNode> copies = new HashMap<BPMNNode, BPMNNode>();
+		for (int i = 0; i < fromNodes.size(); i++) copies.put(fromNodes.get(i), toNodes.get(i));
+		return copies;
+	}
+
+	private Map<BPMNEdge<BPMNNode, BPMNNode>, BPMNEdge<BPMNNode, BPMNNode>> correspondingFlows(Scope from, Scope to) {
+		List<Flow> fromFlows = new ArrayList<Flow>();
+		List<Flow> toFlows = new ArrayList<Flow>();
+		collectElements(from, new ArrayList<BPMNNode>(), fromFlows);
+		collectElements(to, new ArrayList<BPMNNode>(), toFlows);
+
+		Map<BPMNEdge<BPMNNode, BPMNNode>, BPMNEdge<BPMNNode, BPMNNode>> copies = new HashMap<BPMNEdge<BPMNNode, BPMNNode>, BPMNEdge<BPMNNode, BPMNNode>>();
+		for (int i = 0; i < fromFlows.size(); i++) copies.put(fromFlows.get(i), toFlows.get(i));
+		return copies;
+	}
+
+	private void merge(NetFragment f) {
+		f.mergeInto(compactNet, compactNodeMap, compactFlowMap, warnings, errors);
+		if (touchedNodes != null) {
+			touchedNodes.addAll(f.getMappedNodes());
+			touchedFlows.addAll(f.getMappedFlows());
+		}
+		f.addCountsTo(metrics);
+		metrics.updatePeakMapSizes(compactNodeMap.size(), compactFlowMap.size());
+	}
+
+	/**
+	 * Merge a fragment linking events to the unique initial and final place.
+	 */
+	private void mergeLinks(NetFragment f) {
+		f.mergeInto(compactNet, compactEventLinks, compactFlowMap, warnings, errors);
+		f.addCountsTo(metrics);
+	}
+
+	/**
+	 * @param fragment
+	 * @param f
+	 *            a BPMN control-flow edge translated in fragment or in an
+	 *            earlier phase
+	 * @return handle of the place representing f, reads {@link #compactFlowMap}
+	 */
+	private int flowPlace(NetFragment fragment, BPMNEdge<?, ?> f) {
+		Integer p = fragment.getFlowPlace(f);
+		if (p != null) return p;
+		return NetFragment.ref(compactFlowMap.get(f));
+	}
+
+	/**
+	 * @param f
+	 * @param n
+	 *            a BPMN node translated in f or in an earlier phase
+	 * @return handles of the nodes representing n, reads {@link #compactNodeMap}
+	 */
+	private int[] getNodeHandles(NetFragment f, BPMNNode n) {
+		IntList local = f.getNodeHandles(n);
+		if (local != null) return local.toArray();
+
+		IntList nodes = compactNodeMap.get(n);
+		int[] handles = new int[nodes.size()];
+		for (int i = 0; i < handles.length; i++)
+			handles[i] = NetFragment.ref(nodes.get(i));
+		return handles;
+	}
+
+	private boolean isPlace(NetFragment f, int handle) {
+		return (handle >= 0) ? f.isPlace(handle) : compactNet.isPlace(-handle - 1);
+	}
+
+	/**
+	 * Create the ProM Petri net by the net factory, markings and node maps
+	 * from {@link #compactNet}, unless this has been done already.
+	 */
+	protected void materialize() {
+		if (net != null || compactNet == null) return;
+
+		net = netFactory.createNet(compactNet.getLabel());
+		netNodes = compactNet.materialize(net);
+		createMarkings();
+
+		nodeMap.clear();
+		for (Map.Entry<BPMNNode, IntList> entry : compactNodeMap.entrySet())
+			nodeMap.put(entry.getKey(), getNetNodes(entry.getValue()));
+		flowMap.clear();
+		for (Map.Entry<BPMNEdge<BPMNNode, BPMNNode>, Integer> entry : compactFlowMap.entrySet())
+			flowMap.put(entry.getKey(), (Place)netNodes[entry.getValue()]);
+	}
+
+	private void createMarkings() {
+		m = new Marking();
+		for (int p : compactNet.getInitialMarking())
+			m.add((Place)netNodes[p]);
+		finalPlace.clear();
+		for (int p : compactNet.getFinalPlaces())
+			finalPlace.add((Place)netNodes[p]);
+	}
+
+	private Set<PetrinetNode> getNetNodes(IntList compactNodes) {
+		Set<PetrinetNode> nodeSet = new HashSet<PetrinetNode>();
+		for (int i = 0; i < compactNodes.size(); i++)
+			nodeSet.add(netNodes[compactNodes.get(i)]);
+		return nodeSet;
+	}
+
+	private void translateEdges(ForkJoinPool pool) {
+		translatePhase(pool, PHASE_EDGES, new ArrayList<BPMNNode>(bpmn.getNodes()), edgeTranslator);
+	}
+
+	private void translateInEdges(NetFragment fragment, BPMNNode n) {
+		// select only the sequence flow edges, message flows etc are ignored
+		List<Flow> inFlows = new ArrayList<Flow>();
+		for (BPMNEdge<? extends BPMNNode, ? extends BPMNNode> e : bpmn.getInEdges(n)) {
+			if (e instanceof Flow) inFlows.add((Flow)e);
+		}
+
+		// gateways are translated with one place per flow
+		if (n instanceof Gateway)
+			translateEdges(fragment, inFlows, false);
+
+		// activities are translated with one place for all flows
+		else if (n instanceof Activity)
+			translateEdges(fragment, inFlows, true);
+
+		// events are translated with one place for all flows, unless
+		// configuration asks for multiple places
+		else if (n instanceof Event) {
+			if ( ((Event)n).getEventType() == EventType.END ) {
+				translateEdges(fragment, inFlows, (config.endEventJoin == BPMN2PetriNetConverter_Configuration.EndEventJoin.XOR));
+			} else {
+				translateEdges(fragment, inFlows, true);
+			}
+		}
+	}
+
 	/**
 	 * Translate edges of the BPMN diagram to places, updates {@link #flowMap}.
-	 * 
+	 *
 	 * @param mergeToSinglePlace
 	 *            if 'true', all flows are translated to the same place,
 	 *            otherwise each flow is translated to its own separate place.
 	 *            Use 'true' for example to translate implicit XOR-merge at an
 	 *            activity.
 	 */
-	private void translateEdges(Collection<Flow> flows, boolean mergeToSinglePlace) {
+	private void translateEdges(NetFragment fragment, Collection<Flow> flows, boolean mergeToSinglePlace) {
 		if (flows.isEmpty()) return;
-		
+
 		if (mergeToSinglePlace) {
 			// assume all flows go to the same target node, create one place, all flows map to this place
 			BPMNNode target = flows.iterator().next().getTarget();
-			String p_label;
+			CharSequence p_label;
 			if (config.labelFlowPlaces && target.getLabel() != null && !target.getLabel().isEmpty())
-				p_label = getLabel(target.getLabel(), "flow_merge", "p", false);
+				p_label = getLabel("flow_merge", "p", false, target.getLabel());
 			else
 				p_label = "";
-			
-			Place p = net.addPlace(p_label);
-			
+
+			int p = fragment.addPlace(p_label);
+
 			for (Flow f : flows)
-				flowMap.put(f, p);
-			
+				fragment.mapFlow(f, p);
+
 		} else {
 			// create one place for each flow
 			for (Flow f : flows) {
-				String p_label;
+				CharSequence p_label;
 				if (f.getLabel() != null && !f.getLabel().isEmpty())
-					p_label = getLabel(f.getLabel(), "flow", "p", false);
+					p_label = getLabel("flow", "p", false, f.getLabel());
 				else if (config.labelFlowPlaces)
-					p_label = getLabel(f.getSource().getLabel()+"_"+f.getTarget().getLabel(), "flow", "p", false);
+					p_label = getLabel("flow", "p", false, f.getSource().getLabel(), f.getTarget().getLabel());
 				else
 					p_label = "";
-				
-				Place p = net.addPlace(p_label);
-				flowMap.put(f, p);
+
+				int p = fragment.addPlace(p_label);
+				fragment.mapFlow(f, p);
 			}
 		}
 	}
-	
+
 	/**
 	 * Connect transition t to all places representing the incoming flows of
 	 * node n. For tasks, the incoming flows are translated to a single input
-	 * place through {@link #translateEdges()}.
-	 * 
+	 * place through {@link #translateEdges(ForkJoinPool)}.
+	 *
+	 * @param f
 	 * @param n
 	 * @param t
 	 */
-	private void connectToAllInFlows(BPMNNode n, Transition t) {
-		
+	private void connectToAllInFlows(NetFragment f, BPMNNode n, int t) {
+
 		// gather all places representing the inflows
-		Set<Place> places = new HashSet<Place>();
+		Set<Integer> places = new LinkedHashSet<Integer>();
 		// connect transition to place of incoming edge
-		for (BPMNEdge<?, ?> f : bpmn.getInEdges(n)) {
-			if (f instanceof Flow) {
-				places.add(flowMap.get(f));
+		for (BPMNEdge<?, ?> e : bpmn.getInEdges(n)) {
+			if (e instanceof Flow) {
+				places.add(flowPlace(f, e));
 			}
 		}
 
 		// add edges from inflow places to transition
-		for (Place p : places) {
-			net.addArc(p, t);			
+		for (int p : places) {
+			f.addArc(p, t);
 		}
 	}
-	
+
 	/**
 	 * Connect transition t to all places representing the outgoing flows of
 	 * node n.
-	 * 
+	 *
+	 * @param f
 	 * @param n
 	 * @param t
 	 */
-	private void connectToAllOutFlows(BPMNNode n, Transition t) {
+	private void connectToAllOutFlows(NetFragment f, BPMNNode n, int t) {
 
 		// gather all places representing the outflows
-		Set<Place> places = new HashSet<Place>();
+		Set<Integer> places = new LinkedHashSet<Integer>();
 		// connect transition to place of incoming edge
-		for (BPMNEdge<?, ?> f : bpmn.getOutEdges(n)) {
-			if (f instanceof Flow) {
-				places.add(flowMap.get(f));
+		for (BPMNEdge<?, ?> e : bpmn.getOutEdges(n)) {
+			if (e instanceof Flow) {
+				places.add(flowPlace(f, e));
 			}
 		}
 
 		// add edges from transition to outflow places
-		for (Place p : places) {
-			net.addArc(t, p);			
+		for (int p : places) {
+			f.addArc(t, p);
 		}
 	}
 
-	
+
 	/**
 	 * Translate events to Petri net patterns, updates {@link #nodeMap} and reads {@link #flowMap}.
 	 */
-	private void translateEvents() {
-		for (Event e : bpmn.getEvents()) {
-			switch (e.getEventType()) {
-				case START:
-					translateStartEvent(e);
-					break;
-				case END:
-					translateEndEvent(e);
-					break;
-				case INTERMEDIATE:
-					translateIntermediateEvent(e);
-					break;
-				default:
-					warnings.add("Unknown event type "+e.getEventType()+" for "+e.getId()+" ("+e.getLabel()+")");
-					break;
-			}
-		}
-	}
-	
-	private void translateStartEvent(Event e) {
-		
-		Transition t = net.addTransition(getLabel(e.getLabel(), "start_event", "t", false));
-		t.setInvisible(!config.makeStartEndEventsVisible);
-		
+	private void translateEvents(ForkJoinPool pool) {
+		translatePhase(pool, PHASE_EVENTS, new ArrayList<Event>(bpmn.getEvents()), eventTranslator);
+	}
+
+	private void translateEvent(NetFragment f, Event e) {
+		switch (e.getEventType()) {
+			case START:
+				translateStartEvent(f, e);
+				break;
+			case END:
+				translateEndEvent(f, e);
+				break;
+			case INTERMEDIATE:
+				translateIntermediateEvent(f, e);
+				break;
+			default:
+				f.warnings.add("Unknown event type "+e.getEventType()+" for "+e.getId()+" ("+e.getLabel()+")");
+				break;
+		}
+	}
+
+	private void translateStartEvent(NetFragment f, Event e) {
+
+		int t = f.addTransition(getLabel("start_event", "t", false, e.getLabel()), !config.makeStartEndEventsVisible);
+
 		// input from new initial place
-		Place p = net.addPlace(getLabel(e.getLabel()+"_initial", "start_event", "p", false));
-		m.add(p);
-		net.addArc(p, t);
-		connectToAllOutFlows(e, t);
-		
-		setNodeMapFor(nodeMap, e, p, t);
-	}
-	
-	private void translateEndEvent(Event e) {
-
-		Transition t = net.addTransition(getLabel(e.getLabel(), "end_event", "t", false));
-		t.setInvisible(!config.makeStartEndEventsVisible);
-		connectToAllInFlows(e, t);
+		int p = f.addPlace(getLabel("start_event", "p", false, e.getLabel(), "initial"));
+		f.markInitial(p);
+		f.addArc(p, t);
+		connectToAllOutFlows(f, e, t);
+
+		f.mapNode(e, p, t);
+	}
+
+	private void translateEndEvent(NetFragment f, Event e) {
+
+		int t = f.addTransition(getLabel("end_event", "t", false, e.getLabel()), !config.makeStartEndEventsVisible);
+		connectToAllInFlows(f, e, t);
 		// output to new final place
-		Place p = net.addPlace(getLabel(e.getLabel()+"_ended", "end_event", "p", false));
-		net.addArc(t, p);
-	
-		setNodeMapFor(nodeMap, e, p, t);
-		finalPlace.add(p);
-	}
-	
-	private void translateIntermediateEvent(Event e) {
-		
+		int p = f.addPlace(getLabel("end_event", "p", false, e.getLabel(), "ended"));
+		f.addArc(t, p);
+
+		f.mapNode(e, p, t);
+		f.markFinal(p);
+	}
+
+	private void translateIntermediateEvent(NetFragment f, Event e) {
+
 		if (e.getEventTrigger() == EventTrigger.COMPENSATION) {
-			warnings.add("This translation does not support compensation events and does not preserve compensation semantics.\n The resulting Petri net should not be used for soundness chedcking.");
+			f.warnings.add("This translation does not support compensation events and does not preserve compensation semantics.\n The resulting Petri net should not be used for soundness chedcking.");
 		}
-		
-		String attachedActivity = (e.getBoundingNode() != null ? "_"+e.getBoundingNode().getLabel() : "");
+
 		String triggerName = (e.getEventTrigger() != null) ? e.getEventTrigger().name() : "";
-		String label = triggerName+"_"+e.getLabel()+attachedActivity;
-		
-		Transition t = net.addTransition(getLabel(label, "event", "t", false));
-		t.setInvisible(!config.makeIntermediateEventsVisible);
-		connectToAllInFlows(e, t);
-		connectToAllOutFlows(e, t);
+		CharSequence label;
+		if (e.getBoundingNode() != null)
+			label = getLabel("event", "t", false, triggerName, e.getLabel(), e.getBoundingNode().getLabel());
+		else
+			label = getLabel("event", "t", false, triggerName, e.getLabel());
+
+		int t = f.addTransition(label, !config.makeIntermediateEventsVisible);
+		connectToAllInFlows(f, e, t);
+		connectToAllOutFlows(f, e, t);
 
-		setNodeMapFor(nodeMap, e, t);
+		f.mapNode(e, t);
 	}
-	
+
 	/**
 	 * Translate activities to Petri net patterns. Depending on the attributes
 	 * of the activity, it is translated as atomic (single transition), or with
 	 * activity life-cycle (in case of multi-instance loop behavior or attached
 	 * events)
-	 * 
+	 *
 	 * updates {@link #nodeMap} and reads {@link #flowMap}
 	 */
-	private void translateActivities() {
-		for (Activity a : bpmn.getActivities()) {
-			translateActivity(a, false);
-		}
+	private void translateActivities(ForkJoinPool pool) {
+		translatePhase(pool, PHASE_ACTIVITIES, new ArrayList<Activity>(bpmn.getActivities()), activityTranslator);
 	}
-	
+
 	/**
 	 * Translate activity. If the activity is a subprocess with defined inner
 	 * behavior, then start and complete of the activity are linked to start event and
 	 * end event of the subprocess
-	 * 
+	 *
+	 * @param f
 	 * @param a
 	 * @param linkToSubprocess
 	 */
-	private void translateActivity(Activity a, boolean linkToSubprocess) {
-		Set<PetrinetNode> nodeSet = new HashSet<PetrinetNode>();
-		nodeMap.put(a, nodeSet);
-
-		Transition t_act = net.addTransition(getLabel(a.getLabel(), "task", "t", true));
-		Transition t_start = null;
-		Transition t_end = null;
-		Place p_ready = null;
-		Place p_finished = null;
+	private void translateActivity(NetFragment f, Activity a, boolean linkToSubprocess) {
+		f.mapNode(a);
 
 		// create atomic or structured activity
 		boolean model_structured = !translateActivityAtomic(a);
+
+		// if life-cycle transitions are visible, hide the activity (so only the life-cycle transitions are visible)
+		int t_act = f.addTransition(getLabel("task", "t", true, a.getLabel()), model_structured && config.translateWithLifeCycleVisible);
+		int t_start;
+		int t_end;
+		int p_ready = 0;
+		int p_finished = 0;
+
 		if (model_structured) {
-			t_start = net.addTransition(getLabel(a.getLabel()+"_start", "task", "t", true));
-			t_end = net.addTransition(getLabel(a.getLabel()+"_complete", "task", "t", true));
-			p_ready = net.addPlace(getLabel(a.getLabel()+"_ready", "task", "p", true));
-			p_finished = net.addPlace(getLabel(a.getLabel()+"_finished", "task", "p", true));
-			
-			if (!config.translateWithLifeCycleVisible) {
-				// hide life-cycle transitions if translation of activity shall be atomic
-				t_start.setInvisible(true);
-				t_end.setInvisible(true);
-			} else {
-				// otherwise hide the activity (so only the life-cycle transitions are visible)
-				t_act.setInvisible(true);
-			}
+			// hide life-cycle transitions if translation of activity shall be atomic
+			t_start = f.addTransition(getLabel("task", "t", true, a.getLabel(), "start"), !config.translateWithLifeCycleVisible);
+			t_end = f.addTransition(getLabel("task", "t", true, a.getLabel(), "complete"), !config.translateWithLifeCycleVisible);
+			p_ready = f.addPlace(getLabel("task", "p", true, a.getLabel(), "ready"));
+			p_finished = f.addPlace(getLabel("task", "p", true, a.getLabel(), "finished"));
 
 			// connect start/end with activity
-			net.addArc(t_start, p_ready);
-			net.addArc(p_ready, t_act);
-			net.addArc(t_act, p_finished);
-			net.addArc(p_finished, t_end);
+			f.addArc(t_start, p_ready);
+			f.addArc(p_ready, t_act);
+			f.addArc(t_act, p_finished);
+			f.addArc(p_finished, t_end);
+
+			// t_act is the first node of the activity, see getActivityTransition()
+			f.addToNode(a, t_act, t_start, t_end, p_ready, p_finished);
 
 		} else {
 			t_start = t_act;	// when connecting to the incoming/outgoing places
 			t_end = t_act;
 		}
-		
+
 		// there are different reasons for a structured activity
 		if (model_structured) {
-			
+
 			// is a looped multi-instance activity
 			if (a.isBLooped()) {
 
-				Transition t_repeat = net.addTransition(getLabel(a.getLabel()+"_repeat", "task", "t", true));
-				t_repeat.setInvisible(!config.makeRoutingTransitionsVisible);
+				int t_repeat = f.addTransition(getLabel("task", "t", true, a.getLabel(), "repeat"), !config.makeRoutingTransitionsVisible);
 				// loop back
-				net.addArc(p_finished, t_repeat);
-				net.addArc(t_repeat, p_ready);
-				
-				nodeSet.add(t_act);
-				nodeSet.add(t_start);
-				nodeSet.add(t_end);
-				nodeSet.add(t_repeat);
-				nodeSet.add(p_ready);
-				nodeSet.add(p_finished);
+				f.addArc(p_finished, t_repeat);
+				f.addArc(t_repeat, p_ready);
+
+				f.addToNode(a, t_repeat);
 			}
 
 			// has attached events
 			Event compensationEvent = null;
 			for (Event e : getBoundaryEvents(a)) {
-				
+
 				if (e.getEventTrigger() == EventTrigger.COMPENSATION) {
 					compensationEvent = e;
 					continue;
 				}
-				
+
 				// for each boundary event: retrieve the transition representing the event
-				PetrinetNode e_nodes[] = nodeMap.get(e).toArray(new PetrinetNode[nodeMap.get(e).size()]);
+				int t_event = getNodeHandles(f, e)[0];
 				// and add an arc from the activity start to the event
-				net.addArc(p_ready, (Transition)e_nodes[0]);
+				f.addArc(p_ready, t_event);
 			}
 
 			// compensation events are translated differently
 			if (compensationEvent != null) {
 				// compensation events are translated not as exclusive choice, but as parallel activation
-				PetrinetNode e_nodes[] = nodeMap.get(compensationEvent).toArray(new PetrinetNode[nodeMap.get(compensationEvent).size()]);
-				
+				int t_event = getNodeHandles(f, compensationEvent)[0];
+
 				// remember when the activity has been executed and enable compensation event correspondingly
-				Place p_act_wasExecuted = net.addPlace(getLabel(a.getLabel()+"_wasExecuted", "task", "p", true));
-				net.addArc(t_act, p_act_wasExecuted);
-				net.addArc(p_act_wasExecuted, (Transition)e_nodes[0]);
-				
-				nodeSet.add(p_act_wasExecuted);
+				int p_act_wasExecuted = f.addPlace(getLabel("task", "p", true, a.getLabel(), "wasExecuted"));
+				f.addArc(t_act, p_act_wasExecuted);
+				f.addArc(p_act_wasExecuted, t_event);
+
+				f.addToNode(a, p_act_wasExecuted);
 			}
-			
+
 			// if activity has an inner definition of a subprocess and definition shall be linked
 			if (a instanceof SubProcess && linkToSubprocess) {
-				
+
 				Set<ContainableDirectedGraphElement> children = ((SubProcess) a).getChildren();
-				
+
 				// get the start and end event of the process
 				List<Event> startEvents = new LinkedList<Event>();
 				List<Event> endEvents = new LinkedList<Event>();
@@ -450,59 +1345,57 @@ public class BPMN2PetriNetConverter {
 						}
 					}
 				}
-				
-				if (startEvents.size() > 1) warnings.add("Subprocess '"+a.getLabel()+"' has multiple start events. Start events are assumed to be exclusive.");
-				if (endEvents.size() > 1) warnings.add("Subprocess '"+a.getLabel()+"' has multiple end events. End events are assumed to be exclusive.");
-				
-				// they should be translated by now, 
+
+				if (startEvents.size() > 1) f.warnings.add("Subprocess '"+a.getLabel()+"' has multiple start events. Start events are assumed to be exclusive.");
+				if (endEvents.size() > 1) f.warnings.add("Subprocess '"+a.getLabel()+"' has multiple end events. End events are assumed to be exclusive.");
+
+				// they should be translated by now,
 				// link start and end events of the subprocess to start and end transitions of this activity
 				for (Event startEvent : startEvents) {
-					Set<PetrinetNode> startNodes = nodeMap.get(startEvent);
-					for (PetrinetNode n : startNodes) {
-						if (n instanceof Place) {
-							Place p = (Place)n;
-							m.remove(p); // initial place of start node is no longer initially marked
-							net.addArc(t_start, p);
+					for (int p : getNodeHandles(f, startEvent)) {
+						if (isPlace(f, p)) {
+							f.unmarkInitial(p); // initial place of start node is no longer initially marked
+							f.addArc(t_start, p);
 						}
 					}
 				}
-				
+
 				for (Event endEvent : endEvents) {
-					Set<PetrinetNode> endNodes = nodeMap.get(endEvent);
-					for (PetrinetNode n : endNodes) {
-						if (n instanceof Place) {
-							Place p = (Place)n;
-							finalPlace.remove(p); // final place no longer part of final marking
-							net.addArc(p, t_end);
+					for (int p : getNodeHandles(f, endEvent)) {
+						if (isPlace(f, p)) {
+							f.unmarkFinal(p); // final place no longer part of final marking
+							f.addArc(p, t_end);
 						}
-					}				
+					}
 				}
 			}
-			
+
 		} else {
 			// default case of atomic task
-			nodeSet.add(t_act);
+			f.addToNode(a, t_act);
 		}
-		
-		connectToAllInFlows(a, t_start);
-		connectToAllOutFlows(a, t_end);
+
+		connectToAllInFlows(f, a, t_start);
+		connectToAllOutFlows(f, a, t_end);
 	}
-	
-	
-	
+
+
+
 	/**
 	 * Translate subprocesses to Petri net patterns. Currently only as atomic tasks.
-	 * 
+	 *
 	 * updates {@link #nodeMap} and reads {@link #flowMap}
 	 */
-	private void translateSubProcesses() {
-		for (SubProcess s : bpmn.getSubProcesses()) {
-			//warnings.add("Subprocess '"+s.getLabel()+"' has been translated as activity; inner details are not considered.");
-			boolean hasInnerDefinition = (s.getGraph() != null && s.getGraph() instanceof BPMNDiagram); 
-			translateActivity(s, hasInnerDefinition && config.linkSubProcessToActivity);
-		}
+	private void translateSubProcesses(ForkJoinPool pool) {
+		translatePhase(pool, PHASE_SUBPROCESSES, new ArrayList<SubProcess>(bpmn.getSubProcesses()), subProcessTranslator);
+	}
+
+	private void translateSubProcess(NetFragment f, SubProcess s) {
+		//warnings.add("Subprocess '"+s.getLabel()+"' has been translated as activity; inner details are not considered.");
+		boolean hasInnerDefinition = (s.getGraph() != null && s.getGraph() instanceof BPMNDiagram);
+		translateActivity(f, s, hasInnerDefinition && config.linkSubProcessToActivity);
 	}
-	
+
 	/**
 	 * @param a
 	 * @return true iff the activity can be translated as a single atomic
@@ -510,125 +1403,148 @@ public class BPMN2PetriNetConverter {
 	 *         events etc.)
 	 */
 	private boolean translateActivityAtomic(Activity a) {
-		
+
 		if (a.isBLooped()) return false;
 		if (getBoundaryEvents(a).size() > 0) return false;
 		if (a instanceof SubProcess && config.linkSubProcessToActivity) return false;
 		return true;
 	}
-	
+
 	/**
-	 * @param a
-	 * @return all events that are attached to the given activity
+	 * Collect the attached events of all activities in a single pass over the
+	 * events of the diagram, updates {@link #boundaryEventMap}.
 	 */
-	private List<Event> getBoundaryEvents(Activity a) {
-		List<Event> boundaryEvents = new ArrayList<Event>();
+	private void indexBoundaryEvents() {
+		boundaryEventMap.clear();
 		for (Event e : bpmn.getEvents()) {
-			if (e.getBoundingNode() == a) boundaryEvents.add(e);
+			Activity a = e.getBoundingNode();
+			if (a == null) continue;
+
+			List<Event> boundaryEvents = boundaryEventMap.get(a);
+			if (boundaryEvents == null) {
+				boundaryEvents = new ArrayList<Event>();
+				boundaryEventMap.put(a, boundaryEvents);
+			}
+			boundaryEvents.add(e);
 		}
+	}
+
+	/**
+	 * @param a
+	 * @return all events that are attached to the given activity, reads {@link #boundaryEventMap}
+	 */
+	private List<Event> getBoundaryEvents(Activity a) {
+		List<Event> boundaryEvents = boundaryEventMap.get(a);
+		if (boundaryEvents == null) return Collections.emptyList();
 		return boundaryEvents;
 	}
-	
+
 	/**
 	 * Translates gateways to Petri net patterns, updated {@link #nodeMap}, reads {@link #flowMap}.
 	 */
-	private void translateGateways() {
-		for (Gateway g : bpmn.getGateways()) {
-			switch (g.getGatewayType()) {
-				case DATABASED:
-				case EVENTBASED:
-					translateXORGateway(g);
-					break;
-				case PARALLEL:
-					translateANDGateway(g);
-					break;
-				case COMPLEX:
-				case INCLUSIVE:
-					translateORGateway(g);
-					break;
-				default:
-					warnings.add("Unknown gateway type "+g.getGatewayType()+" for "+g.getId()+" ("+g.getLabel()+")");
-					break;
-			}
-		}
-	}
-		
-	private void translateXORGateway(Gateway g) {
-		
-		Place p = net.addPlace(getLabel(g.getLabel(), "xor", "p", false));
-		setNodeMapFor(nodeMap, g, p);
-		
+	private void translateGateways(ForkJoinPool pool) {
+		translatePhase(pool, PHASE_GATEWAYS, new ArrayList<Gateway>(bpmn.getGateways()), gatewayTranslator);
+	}
+
+	private void translateGateway(NetFragment f, Gateway g) {
+		switch (g.getGatewayType()) {
+			case DATABASED:
+			case EVENTBASED:
+				translateXORGateway(f, g);
+				break;
+			case PARALLEL:
+				translateANDGateway(f, g);
+				break;
+			case COMPLEX:
+			case INCLUSIVE:
+				translateORGateway(f, g);
+				break;
+			default:
+				f.warnings.add("Unknown gateway type "+g.getGatewayType()+" for "+g.getId()+" ("+g.getLabel()+")");
+				break;
+		}
+	}
+
+	private void translateXORGateway(NetFragment fragment, Gateway g) {
+
+		int p = fragment.addPlace(getLabel("xor", "p", false, g.getLabel()));
+		fragment.mapNode(g, p);
+
 		// connect transition to place of incoming edge
 		for (BPMNEdge<?, ?> f : bpmn.getInEdges(g)) {
 			if (f instanceof Flow) {
-				String label = f.getSource().getLabel()+"_"+g.getLabel();
-				Transition t = net.addTransition(getLabel(label, "xor_merge", "t", false));
-				t.setInvisible(!config.makeRoutingTransitionsVisible);
-				net.addArc(t, p);
-				net.addArc(flowMap.get(f), t);
-				nodeMap.get(g).add(t);
+				CharSequence label = getLabel("xor_merge", "t", false, f.getSource().getLabel(), g.getLabel());
+				int t = fragment.addTransition(label, !config.makeRoutingTransitionsVisible);
+				fragment.addArc(t, p);
+				fragment.addArc(flowPlace(fragment, f), t);
+				fragment.addToNode(g, t);
 			}
 		}
-			
+
 		// connect transition to place of outgoing edge
 		for (BPMNEdge<?, ?> f : bpmn.getOutEdges(g)) {
 			if (f instanceof Flow) {
-				String label = g.getLabel()+"_"+f.getTarget().getLabel();
-				Transition t = net.addTransition(getLabel(label, "xor_split", "t", false));
-				t.setInvisible(!config.makeRoutingTransitionsVisible);
-				net.addArc(p, t);
-				net.addArc(t, flowMap.get(f));
-				nodeMap.get(g).add(t);
-			}
-		}
-	}
-	
-	private void translateANDGateway(Gateway g) {
-		Transition t = net.addTransition(getLabel(g.getLabel(), "and", "t", false));
-		t.setInvisible(!config.makeRoutingTransitionsVisible);
-		setNodeMapFor(nodeMap, g, t);
-		
-		connectToAllInFlows(g, t);
-		connectToAllOutFlows(g, t);
-	}
-	
-	private void translateORGateway(Gateway g) {
-		
-		Set<PetrinetNode> nodeSet = new HashSet<PetrinetNode>();
-		nodeMap.put(g, nodeSet);
-		
+				CharSequence label = getLabel("xor_split", "t", false, g.getLabel(), f.getTarget().getLabel());
+				int t = fragment.addTransition(label, !config.makeRoutingTransitionsVisible);
+				fragment.addArc(p, t);
+				fragment.addArc(t, flowPlace(fragment, f));
+				fragment.addToNode(g, t);
+			}
+		}
+	}
+
+	private void translateANDGateway(NetFragment f, Gateway g) {
+		int t = f.addTransition(getLabel("and", "t", false, g.getLabel()), !config.makeRoutingTransitionsVisible);
+		f.mapNode(g, t);
+
+		connectToAllInFlows(f, g, t);
+		connectToAllOutFlows(f, g, t);
+	}
+
+	private void translateORGateway(NetFragment fragment, Gateway g) {
+
+		fragment.mapNode(g);
+
 		// OR-join
 		if (bpmn.getInEdges(g).size() > 1 && bpmn.getOutEdges(g).size() == 1) {
-			warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Translation of gateway "+g.getId()+" ("+g.getLabel()+") does not preserve the semantics.");
-			
-			BPMNEdge<?, ?> outEdge = (BPMNEdge<?, ?>)bpmn.getOutEdges(g).toArray()[0]; 
+			fragment.warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Translation of gateway "+g.getId()+" ("+g.getLabel()+") does not preserve the semantics.");
+
+			BPMNEdge<?, ?> outEdge = (BPMNEdge<?, ?>)bpmn.getOutEdges(g).toArray()[0];
 			if (!(outEdge instanceof Flow)) {
-				warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no outgoing control-flow edge.");
+				fragment.warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no outgoing control-flow edge.");
 				return;
 			}
-			Place p_out = flowMap.get(outEdge);
-			
+			int p_out = flowPlace(fragment, outEdge);
+
 			// generate a transition for each non-empty subset of the outgoing edges
-			
+
 			// get the set of all places representing outgoing edges
-			Place p_ins[] = new Place[bpmn.getInEdges(g).size()];
+			int p_ins[] = new int[bpmn.getInEdges(g).size()];
 			int ik=0;
 			for (BPMNEdge<?, ?> f : bpmn.getInEdges(g)) {
 				if (f instanceof Flow) {
-					p_ins[ik] = flowMap.get(f);
+					p_ins[ik] = flowPlace(fragment, f);
 					ik++;
 				}
 			}
 			int n = p_ins.length;
+			fragment.countORGatewayBranches(n);
 			if (n == 0) {
-				warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no incoming control-flow edge.");
+				fragment.warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no incoming control-flow edge.");
 				return;
 			}
-			
+
+			if (config.orGatewayEncoding == ORGatewayEncoding.LINEAR) {
+				translateORJoinLinear(fragment, g, p_ins, p_out);
+				return;
+			}
+			if (!checkORGatewayBranches(fragment, g, n)) return;
+
 			// then compute all subsets by counting to 2^n and using the bitmask of
 			// the number to tell which places to include in the subset
 			for(int i = 0; i < (1<<n); i++){
-				List<Place> p_subset = new ArrayList<Place>();
+				checkInterrupted();
+				List<Integer> p_subset = new ArrayList<Integer>();
 			    for(int j = 0; j < n; j++){
 			        if( ((i>>j) & 1) == 1) { 	// bit j is on
 			        	p_subset.add(p_ins[j]);// add place
@@ -636,46 +1552,56 @@ public class BPMN2PetriNetConverter {
 			    }
 			    // not for the emtpy subset
 			    if (p_subset.isEmpty()) continue;
-			    
+
 			    // create transition for this subset and connect it to the post-places in the subset
-			    Transition t = net.addTransition(getLabel(g.getLabel()+"_"+i, "ior_join", "t", false));
-			    t.setInvisible(!config.makeRoutingTransitionsVisible);
-			    nodeSet.add(t);
-			    for (Place p_in : p_subset) {
-			    	net.addArc(p_in, t);
+			    int t = addORTransition(fragment, g, "ior_join", Integer.toString(i));
+			    for (int p_in : p_subset) {
+			    	fragment.addArc(p_in, t);
 			    }
-			    net.addArc(t, p_out);
+			    fragment.addArc(t, p_out);
 			}
-			
+
 		// OR-split with one incoming edge
 		} else {
 
-			BPMNEdge<?, ?> inEdge = (BPMNEdge<?, ?>)bpmn.getInEdges(g).toArray()[0]; 
+			if (bpmn.getInEdges(g).isEmpty()) {
+				fragment.errors.add("Cannot translate Inclusive-OR-Split to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no incoming edge.");
+				return;
+			}
+			BPMNEdge<?, ?> inEdge = (BPMNEdge<?, ?>)bpmn.getInEdges(g).toArray()[0];
 			if (!(inEdge instanceof Flow)) {
-				warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no incoming control-flow edge.");
+				fragment.warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no incoming control-flow edge.");
 				return;
-			}			
-			Place p_in = flowMap.get(inEdge);
-			
+			}
+			int p_in = flowPlace(fragment, inEdge);
+
 			// generate a transition for each non-empty subset of the outgoing edges
-			
+
 			// get the set of all places representing outgoing edges
-			Place p_outs[] = new Place[bpmn.getOutEdges(g).size()];
+			int p_outs[] = new int[bpmn.getOutEdges(g).size()];
 			int ik=0;
 			for (BPMNEdge<?, ?> f : bpmn.getOutEdges(g)) {
-				p_outs[ik] = flowMap.get(f);
+				p_outs[ik] = flowPlace(fragment, f);
 				ik++;
 			}
 			int n = p_outs.length;
+			fragment.countORGatewayBranches(n);
 			if (n == 0) {
-				warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no outgoing control-flow edge.");
+				fragment.warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.getId()+" ("+g.getLabel()+") has no outgoing control-flow edge.");
+				return;
+			}
+
+			if (config.orGatewayEncoding == ORGatewayEncoding.LINEAR) {
+				translateORSplitLinear(fragment, g, p_in, p_outs);
 				return;
 			}
-			
+			if (!checkORGatewayBranches(fragment, g, n)) return;
+
 			// then compute all subsets by counting to 2^n and using the bitmask of
 			// the number to tell which places to include in the subset
 			for(int i = 0; i < (1<<n); i++){
-				List<Place> p_subset = new ArrayList<Place>();
+				checkInterrupted();
+				List<Integer> p_subset = new ArrayList<Integer>();
 			    for(int j = 0; j < n; j++){
 			        if( ((i>>j) & 1) == 1) { 	// bit j is on
 			        	p_subset.add(p_outs[j]);// add place
@@ -683,86 +1609,266 @@ public class BPMN2PetriNetConverter {
 			    }
 			    // not for the emtpy subset
 			    if (p_subset.isEmpty()) continue;
-			    
+
 			    // create transition for this subset and connect it to the post-places in the subset
-			    Transition t = net.addTransition(getLabel(g.getLabel()+"_"+i, "ior_split", "t", false));
-			    t.setInvisible(!config.makeRoutingTransitionsVisible);
-			    nodeSet.add(t);
-			    for (Place p_out : p_subset) {
-			    	net.addArc(t, p_out);
+			    int t = addORTransition(fragment, g, "ior_split", Integer.toString(i));
+			    for (int p_out : p_subset) {
+			    	fragment.addArc(t, p_out);
 			    }
-			    net.addArc(p_in, t);
+			    fragment.addArc(p_in, t);
 			}
-			
+
 		}
 	}
-	
 
 	/**
-	 * Extend nodeMap with a new entry for n containing all nodes.
-	 * @param nodeMap
+	 * Check whether an inclusive gateway with n branches can be translated
+	 * with one transition per non-empty subset of its branches, records an
+	 * error otherwise.
+	 *
+	 * @param f
+	 * @param g
 	 * @param n
-	 * @param nodes
+	 *            number of branches of the gateway
+	 * @return true iff the gateway is small enough to be translated
 	 */
-	private void setNodeMapFor(Map<BPMNNode, Set<PetrinetNode>> nodeMap, BPMNNode n, PetrinetNode ...nodes) {
-		Set<PetrinetNode> nodeSet = new HashSet<PetrinetNode>();
-		for (PetrinetNode n2 : nodes)
-			nodeSet.add(n2);
-		nodeMap.put(n, nodeSet);
+	private boolean checkORGatewayBranches(NetFragment f, Gateway g, int n) {
+		int maxBranches = Math.min(config.maxORGatewayBranches, MAX_OR_SUBSET_BRANCHES);
+		if (n <= maxBranches) return true;
+
+		f.errors.add("Inclusive gateway "+g.getId()+" ("+g.getLabel()+") has "+n+" branches, translating it would create 2^"+n+"-1 transitions (at most "+maxBranches+" branches are allowed). Use the linear encoding for inclusive gateways instead.");
+		return false;
+	}
+
+	/**
+	 * Translate an OR-split with a number of transitions linear in the number
+	 * of outgoing flows, see {@link LinearORGatewayEncoding}.
+	 */
+	private void translateORSplitLinear(NetFragment f, Gateway g, int p_in, int[] p_outs) {
+		linearEncoding(f, g).translateSplit(p_in, asList(p_outs));
+	}
+
+	/**
+	 * Translate an OR-join with a number of transitions linear in the number
+	 * of incoming flows, see {@link LinearORGatewayEncoding}.
+	 */
+	private void translateORJoinLinear(NetFragment f, Gateway g, int[] p_ins, int p_out) {
+		linearEncoding(f, g).translateJoin(asList(p_ins), p_out);
+	}
+
+	private LinearORGatewayEncoding<Integer, RuntimeException> linearEncoding(final NetFragment f, final Gateway g) {
+		return new LinearORGatewayEncoding<Integer, RuntimeException>() {
+			protected Integer addPlace(String bpmnPrefix, String... suffix) {
+				String[] parts = new String[suffix.length + 1];
+				parts[0] = g.getLabel();
+				System.arraycopy(suffix, 0, parts, 1, suffix.length);
+				int p = f.addPlace(getLabel(bpmnPrefix, "p", false, parts));
+				f.addToNode(g, p);
+				return p;
+			}
+
+			protected Integer addTransition(String bpmnPrefix, String... suffix) {
+				return addORTransition(f, g, bpmnPrefix, suffix);
+			}
+
+			protected void addArc(Integer source, Integer target) {
+				f.addArc(source, target);
+			}
+		};
+	}
+
+	private static List<Integer> asList(int[] handles) {
+		List<Integer> list = new ArrayList<Integer>(handles.length);
+		for (int handle : handles) {
+			list.add(handle);
+		}
+		return list;
+	}
+
+	private int addORTransition(NetFragment f, Gateway g, String bpmnPrefix, String... suffix) {
+		String[] parts = new String[suffix.length + 1];
+		parts[0] = g.getLabel();
+		System.arraycopy(suffix, 0, parts, 1, suffix.length);
+		int t = f.addTransition(getLabel(bpmnPrefix, "t", false, parts), !config.makeRoutingTransitionsVisible);
+		f.addToNode(g, t);
+		return t;
 	}
 
 	/**
 	 * @return resulting Petri net
+	 * @throws IllegalStateException
+	 *             if the net factory does not create {@link Petrinet}s, use
+	 *             {@link #getNet()} instead
 	 */
 	public Petrinet getPetriNet() {
+		materialize();
+		if (net != null && !(net instanceof Petrinet))
+			throw new IllegalStateException("The net factory created a "+net.getClass().getSimpleName()+", which is not a Petrinet; use getNet()");
+		return (Petrinet)net;
+	}
+
+	/**
+	 * @return resulting net as created by the net factory
+	 */
+	public PetrinetGraph getNet() {
+		materialize();
 		return net;
 	}
 
+	/**
+	 * Set the factory creating the net in which the result of the conversion
+	 * is built, e.g., to build a net with data directly instead of copying a
+	 * plain Petri net. The markings, {@link #getNodeMap()} and
+	 * {@link #getFlowMap()} refer to the nodes of this net.
+	 *
+	 * @param netFactory
+	 */
+	public void setNetFactory(NetFactory netFactory) {
+		this.netFactory = netFactory;
+		net = null;
+	}
+
+	/**
+	 * Set the pool in which the elements are translated if
+	 * {@link BPMN2PetriNetConverter_Configuration#translateInParallel} is
+	 * set, e.g., to share one pool between the conversions of a batch of
+	 * models. The pool is not shut down by this converter and its parallelism
+	 * overrides {@link BPMN2PetriNetConverter_Configuration#parallelism}.
+	 *
+	 * @param pool
+	 *            the shared pool, or null to create a pool per conversion
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.sharedPool = pool;
+	}
+
+	/**
+	 * @return pool shared with other conversions, or null if the converter
+	 *         creates its own pool
+	 */
+	protected ForkJoinPool getForkJoinPool() {
+		return sharedPool;
+	}
+
 	/**
 	 * @return initial marking of the resulting Petri net
 	 */
 	public Marking getMarking() {
+		materialize();
 		return m;
 	}
-	
+
 	public List<String> getWarnings() {
 		return warnings;
 	}
-	
+
 	public List<String> getErrors() {
 		return errors;
 	}
-	
+
 	public List<Place> getFinalPlaces() {
+		materialize();
 		return finalPlace;
 	}
-	
+
 	/**
 	 * @return map from bpmn nodes to the set of Petri net nodes that represent the bpmn node
 	 */
 	public Map<BPMNNode, Set<PetrinetNode>> getNodeMap() {
+		materialize();
 		return nodeMap;
 	}
-	
+
+	/**
+	 * @param a
+	 *            an activity or subprocess
+	 * @return the transition representing the execution of the activity,
+	 *         without its life-cycle transitions; null if the activity was not
+	 *         translated
+	 */
+	public Transition getActivityTransition(Activity a) {
+		materialize();
+		IntList nodes = compactNodeMap.get(a);
+		if (nodes == null || nodes.isEmpty()) return null;
+		return (Transition)netNodes[nodes.get(0)];
+	}
+
 	/**
 	 * @return map from edges between BPMN nodes the place that represents the edge
 	 */
 	public Map<BPMNEdge<BPMNNode, BPMNNode>, Place> getFlowMap() {
+		materialize();
 		return flowMap;
 	}
-	
-	private String getLabel(String originalLabel, String bpmnPrefix, String pnPrefix, boolean isActivity) {
-		switch (config.labelNodesWith) {
-			case ORIGINAL_LABEL: return originalLabel;
-			case PREFIX_NONTASK_BY_BPMN_TYPE:
-				if (isActivity) return originalLabel;
-				else return bpmnPrefix+"_"+originalLabel;
-			case PREFIX_ALL_BY_BPMN_TYPE:
-				return bpmnPrefix+"_"+originalLabel;
-			case PREFIX_ALL_BY_PN_BPMN_TYPE:
-				return pnPrefix+"_"+bpmnPrefix+"_"+originalLabel;
-		}
-		return originalLabel;
-	}
-	
+
+	/**
+	 * @return measurements of the last conversion or update
+	 */
+	public ConversionMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @param listener
+	 *            to be notified of the phases of every following conversion
+	 *            and update
+	 */
+	public void addConversionListener(ConversionListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeConversionListener(ConversionListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return resulting net in compact form, without creating a ProM Petri net
+	 */
+	public CompactPetriNet getCompactNet() {
+		return compactNet;
+	}
+
+	/**
+	 * @param n
+	 * @return indices of the nodes of {@link #getCompactNet()} that represent
+	 *         the bpmn node
+	 */
+	public int[] getCompactNodes(BPMNNode n) {
+		IntList nodes = compactNodeMap.get(n);
+		if (nodes == null) return new int[0];
+		return nodes.toArray();
+	}
+
+	/**
+	 * @param f
+	 * @return index of the place of {@link #getCompactNet()} that represents
+	 *         the edge, or -1 if the edge was not translated
+	 */
+	public int getCompactPlace(BPMNEdge<BPMNNode, BPMNNode> f) {
+		Integer p = compactFlowMap.get(f);
+		if (p == null) return -1;
+		return p;
+	}
+
+	/**
+	 * Set the table in which the labels of the resulting net are interned,
+	 * e.g., to share labels between the nets of a batch of conversions.
+	 *
+	 * @param labelTable
+	 */
+	public void setLabelTable(LabelTable labelTable) {
+		this.labelTable = labelTable;
+	}
+
+	/**
+	 * Label of a Petri net node, consisting of the given parts joined by '_'
+	 * and prefixed as configured in
+	 * {@link BPMN2PetriNetConverter_Configuration#labelNodesWith}. The label
+	 * string is only built when the label is read from the net.
+	 */
+	private CharSequence getLabel(String bpmnPrefix, String pnPrefix, boolean isActivity, String... parts) {
+		if (config.labelNodesWith == LabelValue.ORIGINAL_LABEL && parts.length == 1) return parts[0];
+		return new NodeLabel(config.labelNodesWith, bpmnPrefix, pnPrefix, isActivity, parts);
+	}
+
 }
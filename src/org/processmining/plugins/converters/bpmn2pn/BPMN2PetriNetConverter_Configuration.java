@@ -83,6 +83,58 @@ public class BPMN2PetriNetConverter_Configuration {
 	 * inflows/multiple end events are present.
 	 */
 	public EndEventJoin endEventJoin = EndEventJoin.XOR;
+	
+	/**
+	 * Provides constants for how inclusive (OR) gateways are translated in
+	 * {@link BPMN2PetriNetConverter}
+	 */
+	public static enum ORGatewayEncoding {
+		/**
+		 * one transition for each non-empty subset of the branches, the size
+		 * of the translation is exponential in the number of branches
+		 */
+		ALL_SUBSETS,
+		/**
+		 * choice places and transitions for each branch and a completion
+		 * transition, the size of the translation is linear in the number of
+		 * branches
+		 */
+		LINEAR
+	}
+	
+	/**
+	 * How to translate inclusive gateways, default is to generate one
+	 * transition for each non-empty subset of the branches.
+	 */
+	public ORGatewayEncoding orGatewayEncoding = ORGatewayEncoding.ALL_SUBSETS;
+	
+	/**
+	 * Maximum number of branches of an inclusive gateway that is translated
+	 * with {@link ORGatewayEncoding#ALL_SUBSETS}. Larger gateways are reported
+	 * as an error instead of generating 2^n-1 transitions.
+	 */
+	public int maxORGatewayBranches = 20;
+	
+	/**
+	 * Translate the elements of each translation phase concurrently. The
+	 * resulting net is the same as for a sequential translation.
+	 */
+	public boolean translateInParallel = false;
+	
+	/**
+	 * Number of threads for {@link #translateInParallel}, 0 to use one thread
+	 * per available processor.
+	 */
+	public int parallelism = 0;
+
+	/**
+	 * If 'true', then the inner diagram of each subprocess is translated as a
+	 * separate fragment before the diagram containing it, concurrently if
+	 * {@link #translateInParallel} is set. Subprocesses with identical inner
+	 * diagrams are translated only once. The resulting net is the same as for
+	 * the translation by phases, up to the order of its nodes.
+	 */
+	public boolean translateSubProcessesHierarchically = false;
 
 
 }
@@ -14,6 +14,7 @@ import org.processmining.contexts.uitopia.UIPluginContext;
 import org.processmining.framework.plugin.PluginContext;
 import org.processmining.framework.util.ui.widgets.LeftAlignedHeader;
 import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.EndEventJoin;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.ORGatewayEncoding;
 import org.processmining.plugins.converters.bpmn2pn.ui.ProMPropertiesPanel;
 
 public class BPMN2PetriNetConverter_UI extends ProMPropertiesPanel {
@@ -24,6 +25,7 @@ public class BPMN2PetriNetConverter_UI extends ProMPropertiesPanel {
 	private javax.swing.JCheckBox translateWithLifeCycleVisible;
 	private javax.swing.JComboBox<String> labelType;
 	private javax.swing.JComboBox<BPMN2PetriNetConverter_Configuration.EndEventJoin> endEventJoin;
+	private javax.swing.JComboBox<BPMN2PetriNetConverter_Configuration.ORGatewayEncoding> orGatewayEncoding;
 	private javax.swing.JCheckBox labelFlowPlaces;
 	private javax.swing.JCheckBox makeRoutingTransitionsVisible;
 	private javax.swing.JCheckBox makeStartEndEventsVisible;
@@ -81,6 +83,21 @@ public class BPMN2PetriNetConverter_UI extends ProMPropertiesPanel {
 			conformanceGroup.add(endEventJoin.getParent());
 			conformanceGroup.add(vStrut_finalNodes);
 		
+		JLabel behaviorOptions_orGateways = new JLabel("How to translate inclusive gateways?");
+		behaviorOptions_orGateways.setAlignmentX(Component.RIGHT_ALIGNMENT);
+		behaviorOptions_orGateways.setMaximumSize(new Dimension(1000, 20));
+		addToProperties(behaviorOptions_orGateways);
+		orGatewayEncoding = addComboBox("Encode the branches of inclusive gateways as", BPMN2PetriNetConverter_Configuration.ORGatewayEncoding.values(), 1, 400);
+		orGatewayEncoding.setSelectedIndex(config.orGatewayEncoding.ordinal());
+		Component vStrut_orGateways = Box.createVerticalStrut(15);
+		addToProperties(vStrut_orGateways);
+			soundessGroup.add(behaviorOptions_orGateways);
+			soundessGroup.add(orGatewayEncoding.getParent());
+			soundessGroup.add(vStrut_orGateways);
+			conformanceGroup.add(behaviorOptions_orGateways);
+			conformanceGroup.add(orGatewayEncoding.getParent());
+			conformanceGroup.add(vStrut_orGateways);
+		
 		JLabel visibilityLabel = new JLabel("Which transitions shall be visible?");
 		visibilityLabel.setAlignmentX(Component.RIGHT_ALIGNMENT);
 		visibilityLabel.setMaximumSize(new Dimension(1000, 20));
@@ -172,6 +189,7 @@ public class BPMN2PetriNetConverter_UI extends ProMPropertiesPanel {
 		config.makeStartEndEventsVisible = makeStartEndEventsVisible.isSelected();
 		config.makeIntermediateEventsVisible = makeIntermediateEventsVisible.isSelected();
 		config.endEventJoin = (EndEventJoin) endEventJoin.getSelectedItem();
+		config.orGatewayEncoding = (ORGatewayEncoding) orGatewayEncoding.getSelectedItem();
 	}
 	
 	/**
@@ -0,0 +1,1077 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.EndEventJoin;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.LabelValue;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.ORGatewayEncoding;
+
+/**
+ * Convert a BPMN 2.0 XML file to a Petri net in PNML without building a
+ * BPMN diagram in memory, following the translation of
+ * {@link BPMN2PetriNetConverter} and its configuration.
+ *
+ * Places, transitions and arcs are written as soon as a BPMN node and all
+ * flows and nodes it is connected to have been read. A node that lists its
+ * flows in incoming/outgoing elements can be translated before the end of
+ * its process; a node that does not is translated at the end of its process
+ * or subprocess. Nodes and flows are forgotten once they and their neighbours
+ * are translated, so memory grows with the number of unresolved references
+ * rather than with the size of the model. Activities need to know their
+ * attached events before they are translated, these are collected in a
+ * first, cheap pass over the file.
+ *
+ * Gateway branches are numbered in the order in which the gateway references
+ * its flows, which is the order of the flows in the diagram if the gateway
+ * does not list them.
+ */
+public class BPMN2PetriNetStreamConverter {
+
+	private static final String BPMN_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+	private static final String PNML_NET_TYPE = "http://www.pnml.org/version-2009/grammar/pnmlcoremodel";
+
+	private static enum Kind {
+		START_EVENT, END_EVENT, INTERMEDIATE_EVENT, ACTIVITY, SUBPROCESS, XOR_GATEWAY, AND_GATEWAY, OR_GATEWAY
+	}
+
+	/**
+	 * BPMN flow node, created when it is read or first referenced.
+	 */
+	private static class Node {
+		final String id;
+		final int index;
+		Kind kind;
+		String name = "";
+		String trigger = "NONE";
+		Node attachedTo;
+		boolean looped;
+		boolean inSubProcess;
+		boolean declaresFlows;
+		/** true once the element of the node has been read completely */
+		boolean read;
+		boolean translated;
+		Container container;
+		List<Flow> incoming = new ArrayList<Flow>();
+		List<Flow> outgoing = new ArrayList<Flow>();
+		/** attached events of an activity, except compensation events */
+		List<Node> boundaryEvents;
+		Node compensationEvent;
+		/** start and end events of a subprocess */
+		List<Node> startEvents;
+		List<Node> endEvents;
+
+		Node(String id, int index) {
+			this.id = id;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * BPMN sequence flow, created when it is read or first referenced.
+	 */
+	private static class Flow {
+		final String id;
+		final int index;
+		String name = "";
+		Node source;
+		Node target;
+		boolean read;
+		int translatedEnds;
+
+		Flow(String id, int index) {
+			this.id = id;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Process or subprocess, its nodes are all translated when it is closed.
+	 */
+	private static class Container {
+		final Node subProcess;
+		final Set<Node> untranslated = new LinkedHashSet<Node>();
+		boolean closed;
+
+		Container(Node subProcess) {
+			this.subProcess = subProcess;
+		}
+	}
+
+	/**
+	 * Open BPMN element that is read further.
+	 */
+	private static class Frame {
+		final Node node;
+		final Container container;
+
+		Frame(Node node, Container container) {
+			this.node = node;
+			this.container = container;
+		}
+	}
+
+	/**
+	 * Attached event as found by the first pass.
+	 */
+	private static class BoundaryEvent {
+		final String id;
+		final boolean compensation;
+
+		BoundaryEvent(String id, boolean compensation) {
+			this.id = id;
+			this.compensation = compensation;
+		}
+	}
+
+	private final BPMN2PetriNetConverter_Configuration config;
+
+	private final List<String> warnings = new ArrayList<String>();
+	private final List<String> errors = new ArrayList<String>();
+
+	// compact id table of the unresolved nodes and flows
+	private final Map<String, Node> nodes = new HashMap<String, Node>();
+	private final Map<String, Flow> flows = new HashMap<String, Flow>();
+	private int nextIndex = 0;
+	private int peakUnresolved = 0;
+
+	/** attached events by the id of their activity, found by the first pass */
+	private Map<String, List<BoundaryEvent>> boundaryEvents = new HashMap<String, List<BoundaryEvent>>();
+	private List<String> finalPlaces = new ArrayList<String>();
+
+	private XMLStreamWriter pnml;
+	private int arcCount = 0;
+
+	public BPMN2PetriNetStreamConverter(BPMN2PetriNetConverter_Configuration config) {
+		this.config = config;
+	}
+
+	public BPMN2PetriNetStreamConverter() {
+		this(new BPMN2PetriNetConverter_Configuration());
+	}
+
+	/**
+	 * Convert the BPMN model in the given file and write the resulting net
+	 * with its initial and final marking as PNML to out.
+	 *
+	 * @param bpmnFile
+	 * @param out
+	 *            stream to write the PNML to, is flushed but not closed
+	 * @return true iff the conversion reported no errors
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 *             if the file is not well-formed XML
+	 */
+	public boolean convert(File bpmnFile, OutputStream out) throws IOException, XMLStreamException {
+
+		warnings.clear();
+		errors.clear();
+		nodes.clear();
+		flows.clear();
+		finalPlaces.clear();
+		nextIndex = 0;
+		peakUnresolved = 0;
+		arcCount = 0;
+
+		InputStream in = new BufferedInputStream(new FileInputStream(bpmnFile));
+		try {
+			boundaryEvents = collectBoundaryEvents(createReader(in));
+		} finally {
+			in.close();
+		}
+
+		pnml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+		pnml.writeStartDocument("UTF-8", "1.0");
+		pnml.writeStartElement("pnml");
+		pnml.writeStartElement("net");
+		pnml.writeAttribute("id", "net1");
+		pnml.writeAttribute("type", PNML_NET_TYPE);
+		writeName("Petri net from " + bpmnFile.getName());
+		pnml.writeStartElement("page");
+		pnml.writeAttribute("id", "n0");
+
+		if (!config.linkSubProcessToActivity) {
+			// make each subprocess executable as an alternative path:
+			// add new initial/final place
+			writePlace("i", "i", 1);
+			writePlace("o", "o", 0);
+			finalPlaces.add("o");
+		}
+
+		in = new BufferedInputStream(new FileInputStream(bpmnFile));
+		try {
+			translate(createReader(in));
+		} finally {
+			in.close();
+		}
+
+		for (Node n : nodes.values()) {
+			if (!n.read)
+				errors.add("Node " + n.id + " is referenced but not defined");
+		}
+
+		pnml.writeEndElement(); // page
+		pnml.writeStartElement("finalmarkings");
+		pnml.writeStartElement("marking");
+		for (String p : finalPlaces) {
+			pnml.writeStartElement("place");
+			pnml.writeAttribute("idref", p);
+			writeText("1");
+			pnml.writeEndElement();
+		}
+		pnml.writeEndElement(); // marking
+		pnml.writeEndElement(); // finalmarkings
+		pnml.writeEndElement(); // net
+		pnml.writeEndElement(); // pnml
+		pnml.writeEndDocument();
+		pnml.flush();
+		pnml = null;
+
+		return errors.size() == 0;
+	}
+
+	public List<String> getWarnings() {
+		return warnings;
+	}
+
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return largest number of BPMN nodes and flows held in memory at the
+	 *         same time during the last conversion
+	 */
+	public int getPeakUnresolved() {
+		return peakUnresolved;
+	}
+
+	private static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory.createXMLStreamReader(in);
+	}
+
+	private static boolean isBPMNElement(XMLStreamReader reader) {
+		String ns = reader.getNamespaceURI();
+		return ns == null || ns.isEmpty() || ns.equals(BPMN_NAMESPACE);
+	}
+
+	/**
+	 * Skip the current element and all its children.
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	/**
+	 * First pass: collect the events attached to each activity.
+	 */
+	private static Map<String, List<BoundaryEvent>> collectBoundaryEvents(XMLStreamReader reader)
+			throws XMLStreamException {
+		Map<String, List<BoundaryEvent>> result = new HashMap<String, List<BoundaryEvent>>();
+		while (reader.hasNext()) {
+			if (reader.next() != XMLStreamConstants.START_ELEMENT || !isBPMNElement(reader)
+					|| !reader.getLocalName().equals("boundaryEvent"))
+				continue;
+
+			String id = reader.getAttributeValue(null, "id");
+			String activity = reader.getAttributeValue(null, "attachedToRef");
+			boolean compensation = false;
+			int depth = 1;
+			while (depth > 0) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					if (reader.getLocalName().equals("compensateEventDefinition"))
+						compensation = true;
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+
+			List<BoundaryEvent> events = result.get(activity);
+			if (events == null) {
+				events = new ArrayList<BoundaryEvent>();
+				result.put(activity, events);
+			}
+			events.add(new BoundaryEvent(id, compensation));
+		}
+		reader.close();
+		return result;
+	}
+
+	/**
+	 * Second pass: translate nodes as soon as they and their neighbours are
+	 * known.
+	 */
+	private void translate(XMLStreamReader reader) throws XMLStreamException {
+		LinkedList<Frame> open = new LinkedList<Frame>();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				Frame parent = open.peekFirst();
+				if (!isBPMNElement(reader)) {
+					skipElement(reader);
+				} else if (parent != null && parent.node != null && isNodeChild(reader.getLocalName())) {
+					readNodeChild(reader, parent.node);
+				} else if (parent != null && parent.node != null && parent.container == null) {
+					// other details of a node
+					skipElement(reader);
+				} else {
+					Frame frame = openElement(reader, parent);
+					if (frame != null)
+						open.addFirst(frame);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				Frame frame = open.removeFirst();
+				if (frame.container != null)
+					closeContainer(frame.container);
+				if (frame.node != null)
+					nodeRead(frame.node);
+			}
+			peakUnresolved = Math.max(peakUnresolved, nodes.size() + flows.size());
+		}
+		reader.close();
+	}
+
+	/**
+	 * Open a child element of a process or subprocess.
+	 *
+	 * @return frame of the opened element, null if the element has been read
+	 *         or skipped completely
+	 */
+	private Frame openElement(XMLStreamReader reader, Frame parent) throws XMLStreamException {
+		String element = reader.getLocalName();
+		Container container = (parent != null) ? parent.container : null;
+
+		if (element.equals("definitions"))
+			return new Frame(null, null);
+		if (element.equals("process") && parent != null && parent.node == null && parent.container == null)
+			return new Frame(null, new Container(null));
+
+		Kind kind = getKind(element);
+		if (container != null && element.equals("sequenceFlow")) {
+			readFlow(reader);
+			return null;
+		}
+		if (container == null || kind == null) {
+			skipElement(reader);
+			return null;
+		}
+
+		Node n = node(reader.getAttributeValue(null, "id"));
+		n.kind = kind;
+		n.container = container;
+		String name = reader.getAttributeValue(null, "name");
+		if (name != null)
+			n.name = name;
+		if (element.equals("boundaryEvent"))
+			n.attachedTo = node(reader.getAttributeValue(null, "attachedToRef"));
+
+		// start and end events of a subprocess
+		if (container.subProcess != null) {
+			n.inSubProcess = true;
+			if (kind == Kind.START_EVENT)
+				container.subProcess.startEvents.add(n);
+			else if (kind == Kind.END_EVENT)
+				container.subProcess.endEvents.add(n);
+		}
+
+		if (kind == Kind.SUBPROCESS) {
+			n.startEvents = new ArrayList<Node>();
+			n.endEvents = new ArrayList<Node>();
+			return new Frame(n, new Container(n));
+		}
+		return new Frame(n, null);
+	}
+
+	private static Kind getKind(String element) {
+		if (element.equals("startEvent"))
+			return Kind.START_EVENT;
+		if (element.equals("endEvent"))
+			return Kind.END_EVENT;
+		if (element.equals("intermediateCatchEvent") || element.equals("intermediateThrowEvent")
+				|| element.equals("boundaryEvent"))
+			return Kind.INTERMEDIATE_EVENT;
+		if (element.equals("task") || element.endsWith("Task") || element.equals("callActivity"))
+			return Kind.ACTIVITY;
+		if (element.equals("subProcess") || element.equals("transaction") || element.equals("adHocSubProcess"))
+			return Kind.SUBPROCESS;
+		if (element.equals("exclusiveGateway") || element.equals("eventBasedGateway"))
+			return Kind.XOR_GATEWAY;
+		if (element.equals("parallelGateway"))
+			return Kind.AND_GATEWAY;
+		if (element.equals("inclusiveGateway") || element.equals("complexGateway"))
+			return Kind.OR_GATEWAY;
+		return null;
+	}
+
+	private static boolean isNodeChild(String element) {
+		return element.equals("incoming") || element.equals("outgoing")
+				|| element.equals("standardLoopCharacteristics") || element.endsWith("EventDefinition");
+	}
+
+	/**
+	 * Read a child element of a node that describes the node itself.
+	 */
+	private void readNodeChild(XMLStreamReader reader, Node n) throws XMLStreamException {
+		String element = reader.getLocalName();
+		if (element.equals("incoming") || element.equals("outgoing")) {
+			// flows listed by the node replace the flows collected from
+			// sequence flows read before the node
+			if (!n.declaresFlows) {
+				n.declaresFlows = true;
+				n.incoming.clear();
+				n.outgoing.clear();
+			}
+			Flow f = flow(reader.getElementText().trim());
+			addFlow(element.equals("incoming") ? n.incoming : n.outgoing, f);
+			return;
+		}
+		if (element.equals("standardLoopCharacteristics")) {
+			n.looped = true;
+		} else {
+			String trigger = element.substring(0, element.length() - "EventDefinition".length()).toUpperCase();
+			if (trigger.equals("COMPENSATE"))
+				trigger = "COMPENSATION";
+			n.trigger = n.trigger.equals("NONE") ? trigger : "MULTIPLE";
+		}
+		skipElement(reader);
+	}
+
+	private static void addFlow(List<Flow> flows, Flow f) {
+		if (!flows.contains(f))
+			flows.add(f);
+	}
+
+	private void readFlow(XMLStreamReader reader) throws XMLStreamException {
+		Flow f = flow(reader.getAttributeValue(null, "id"));
+		String name = reader.getAttributeValue(null, "name");
+		if (name != null)
+			f.name = name;
+		f.source = node(reader.getAttributeValue(null, "sourceRef"));
+		f.target = node(reader.getAttributeValue(null, "targetRef"));
+		f.read = true;
+		skipElement(reader);
+
+		if (!f.source.declaresFlows)
+			addFlow(f.source.outgoing, f);
+		if (!f.target.declaresFlows)
+			addFlow(f.target.incoming, f);
+
+		translateIfReady(f.source);
+		translateIfReady(f.target);
+	}
+
+	private Node node(String id) {
+		Node n = nodes.get(id);
+		if (n == null) {
+			n = new Node(id, nextIndex++);
+			nodes.put(id, n);
+		}
+		return n;
+	}
+
+	private Flow flow(String id) {
+		Flow f = flows.get(id);
+		if (f == null) {
+			f = new Flow(id, nextIndex++);
+			flows.put(id, f);
+		}
+		return f;
+	}
+
+	private void nodeRead(Node n) throws XMLStreamException {
+		n.read = true;
+		n.container.untranslated.add(n);
+
+		if (n.kind == Kind.ACTIVITY || n.kind == Kind.SUBPROCESS) {
+			n.boundaryEvents = new ArrayList<Node>();
+			List<BoundaryEvent> events = boundaryEvents.remove(n.id);
+			if (events != null) {
+				for (BoundaryEvent e : events) {
+					// compensation events are translated differently
+					if (e.compensation)
+						n.compensationEvent = node(e.id);
+					else
+						n.boundaryEvents.add(node(e.id));
+				}
+			}
+		}
+
+		translateIfReady(n);
+		for (Flow f : n.incoming) {
+			if (f.source != null)
+				translateIfReady(f.source);
+		}
+		for (Flow f : n.outgoing) {
+			if (f.target != null)
+				translateIfReady(f.target);
+		}
+		if (n.boundaryEvents != null) {
+			for (Node e : n.boundaryEvents)
+				translateIfReady(e);
+			if (n.compensationEvent != null)
+				translateIfReady(n.compensationEvent);
+		}
+	}
+
+	/**
+	 * Translate all remaining nodes of a closed process or subprocess, flows
+	 * and nodes they refer to can no longer be read.
+	 */
+	private void closeContainer(Container c) throws XMLStreamException {
+		c.closed = true;
+		for (Node n : new ArrayList<Node>(c.untranslated)) {
+			dropUnresolvedFlows(n, n.incoming, true);
+			dropUnresolvedFlows(n, n.outgoing, false);
+			if (n.attachedTo != null && !n.attachedTo.read) {
+				warnings.add("Event " + n.id + " is attached to undefined activity " + n.attachedTo.id);
+				n.attachedTo = null;
+			}
+			translateIfReady(n);
+		}
+	}
+
+	private void dropUnresolvedFlows(Node n, List<Flow> nodeFlows, boolean incoming) {
+		for (int i = nodeFlows.size() - 1; i >= 0; i--) {
+			Flow f = nodeFlows.get(i);
+			Node other = incoming ? f.source : f.target;
+			if (f.read && other.read)
+				continue;
+			warnings.add("Flow " + f.id + " of node " + n.id + " could not be resolved");
+			nodeFlows.remove(i);
+			flows.remove(f.id);
+		}
+	}
+
+	private void translateIfReady(Node n) throws XMLStreamException {
+		if (!n.read || n.translated)
+			return;
+		if (!n.declaresFlows && !n.container.closed)
+			return;
+		for (Flow f : n.incoming) {
+			if (!f.read || !f.source.read)
+				return;
+		}
+		for (Flow f : n.outgoing) {
+			if (!f.read || !f.target.read)
+				return;
+		}
+		if (n.attachedTo != null && !n.attachedTo.read)
+			return;
+
+		translateNode(n);
+		n.translated = true;
+		n.container.untranslated.remove(n);
+
+		// forget the node and its flows once all their neighbours are translated
+		for (Flow f : n.incoming)
+			flowTranslated(f);
+		for (Flow f : n.outgoing)
+			flowTranslated(f);
+		release(n);
+		for (Flow f : n.incoming)
+			release(f.source);
+		for (Flow f : n.outgoing)
+			release(f.target);
+		if (n.attachedTo != null)
+			release(n.attachedTo);
+		if (n.boundaryEvents != null) {
+			for (Node e : n.boundaryEvents)
+				release(e);
+			if (n.compensationEvent != null)
+				release(n.compensationEvent);
+		}
+	}
+
+	private void flowTranslated(Flow f) {
+		f.translatedEnds++;
+		if (f.translatedEnds == 2)
+			flows.remove(f.id);
+	}
+
+	private void release(Node n) {
+		if (!n.translated)
+			return;
+		for (Flow f : n.incoming) {
+			if (f.translatedEnds < 2)
+				return;
+		}
+		for (Flow f : n.outgoing) {
+			if (f.translatedEnds < 2)
+				return;
+		}
+		if (n.attachedTo != null && !n.attachedTo.translated)
+			return;
+		if (n.boundaryEvents != null) {
+			for (Node e : n.boundaryEvents) {
+				if (!e.translated)
+					return;
+			}
+			if (n.compensationEvent != null && !n.compensationEvent.translated)
+				return;
+		}
+		nodes.remove(n.id);
+	}
+
+	private void translateNode(Node n) throws XMLStreamException {
+		translateInFlows(n);
+		switch (n.kind) {
+			case START_EVENT :
+				translateStartEvent(n);
+				break;
+			case END_EVENT :
+				translateEndEvent(n);
+				break;
+			case INTERMEDIATE_EVENT :
+				translateIntermediateEvent(n);
+				break;
+			case ACTIVITY :
+			case SUBPROCESS :
+				translateActivity(n);
+				break;
+			case XOR_GATEWAY :
+				translateXORGateway(n);
+				break;
+			case AND_GATEWAY :
+				translateANDGateway(n);
+				break;
+			case OR_GATEWAY :
+				translateORGateway(n);
+				break;
+		}
+	}
+
+	/**
+	 * @return true iff each incoming flow of n is translated to its own place
+	 */
+	private boolean hasPlacePerFlow(Node n) {
+		switch (n.kind) {
+			case XOR_GATEWAY :
+			case AND_GATEWAY :
+			case OR_GATEWAY :
+				return true;
+			case END_EVENT :
+				return config.endEventJoin != EndEventJoin.XOR;
+			default :
+				return false;
+		}
+	}
+
+	/**
+	 * @return id of the place representing the flow
+	 */
+	private String flowPlace(Flow f) {
+		if (hasPlacePerFlow(f.target))
+			return "f" + f.index;
+		return id(f.target, "in");
+	}
+
+	/**
+	 * Translate the incoming flows of n to places, like
+	 * {@link BPMN2PetriNetConverter} translates the edges of the diagram.
+	 */
+	private void translateInFlows(Node n) throws XMLStreamException {
+		if (n.incoming.isEmpty())
+			return;
+
+		if (!hasPlacePerFlow(n)) {
+			// one place for all flows
+			CharSequence p_label;
+			if (config.labelFlowPlaces && !n.name.isEmpty())
+				p_label = getLabel("flow_merge", "p", false, n.name);
+			else
+				p_label = "";
+			writePlace(id(n, "in"), p_label, 0);
+
+		} else {
+			// one place for each flow
+			for (Flow f : n.incoming) {
+				CharSequence p_label;
+				if (!f.name.isEmpty())
+					p_label = getLabel("flow", "p", false, f.name);
+				else if (config.labelFlowPlaces)
+					p_label = getLabel("flow", "p", false, f.source.name, f.target.name);
+				else
+					p_label = "";
+				writePlace(flowPlace(f), p_label, 0);
+			}
+		}
+	}
+
+	private void connectToAllInFlows(Node n, String t) throws XMLStreamException {
+		Set<String> places = new LinkedHashSet<String>();
+		for (Flow f : n.incoming)
+			places.add(flowPlace(f));
+		for (String p : places)
+			writeArc(p, t);
+	}
+
+	private void connectToAllOutFlows(Node n, String t) throws XMLStreamException {
+		Set<String> places = new LinkedHashSet<String>();
+		for (Flow f : n.outgoing)
+			places.add(flowPlace(f));
+		for (String p : places)
+			writeArc(t, p);
+	}
+
+	private void translateStartEvent(Node e) throws XMLStreamException {
+
+		String t = id(e, "t");
+		writeTransition(t, getLabel("start_event", "t", false, e.name), !config.makeStartEndEventsVisible);
+
+		// input from new initial place, not marked if the start event is
+		// reached from a subprocess activity or from the unique initial place
+		String p = id(e, "p");
+		boolean marked = config.linkSubProcessToActivity && !e.inSubProcess;
+		writePlace(p, getLabel("start_event", "p", false, e.name, "initial"), marked ? 1 : 0);
+		writeArc(p, t);
+		connectToAllOutFlows(e, t);
+
+		if (!config.linkSubProcessToActivity) {
+			String t_eventStart = id(e, "link");
+			writeTransition(t_eventStart, new NodeLabel(LabelValue.ORIGINAL_LABEL, null, null, false, "t_start", e.name), true);
+			writeArc("i", t_eventStart);
+			writeArc(t_eventStart, p);
+		}
+	}
+
+	private void translateEndEvent(Node e) throws XMLStreamException {
+
+		String t = id(e, "t");
+		writeTransition(t, getLabel("end_event", "t", false, e.name), !config.makeStartEndEventsVisible);
+		connectToAllInFlows(e, t);
+
+		// output to new final place
+		String p = id(e, "p");
+		writePlace(p, getLabel("end_event", "p", false, e.name, "ended"), 0);
+		writeArc(t, p);
+
+		if (!config.linkSubProcessToActivity) {
+			String t_eventEnd = id(e, "link");
+			writeTransition(t_eventEnd, new NodeLabel(LabelValue.ORIGINAL_LABEL, null, null, false, "t_end", e.name), true);
+			writeArc(p, t_eventEnd);
+			writeArc(t_eventEnd, "o");
+		} else if (!e.inSubProcess) {
+			finalPlaces.add(p);
+		}
+	}
+
+	private void translateIntermediateEvent(Node e) throws XMLStreamException {
+
+		if (e.trigger.equals("COMPENSATION")) {
+			warnings.add("This translation does not support compensation events and does not preserve compensation semantics.\n The resulting Petri net should not be used for soundness chedcking.");
+		}
+
+		CharSequence label;
+		if (e.attachedTo != null)
+			label = getLabel("event", "t", false, e.trigger, e.name, e.attachedTo.name);
+		else
+			label = getLabel("event", "t", false, e.trigger, e.name);
+
+		String t = id(e, "t");
+		writeTransition(t, label, !config.makeIntermediateEventsVisible);
+		connectToAllInFlows(e, t);
+		connectToAllOutFlows(e, t);
+	}
+
+	private void translateActivity(Node a) throws XMLStreamException {
+
+		boolean linkToSubprocess = a.kind == Kind.SUBPROCESS && config.linkSubProcessToActivity;
+		boolean model_structured = a.looped || !a.boundaryEvents.isEmpty() || a.compensationEvent != null
+				|| linkToSubprocess;
+
+		// if life-cycle transitions are visible, hide the activity (so only the life-cycle transitions are visible)
+		String t_act = id(a, "t");
+		writeTransition(t_act, getLabel("task", "t", true, a.name), model_structured && config.translateWithLifeCycleVisible);
+		String t_start = t_act;
+		String t_end = t_act;
+
+		if (model_structured) {
+			t_start = id(a, "start");
+			t_end = id(a, "complete");
+			String p_ready = id(a, "ready");
+			String p_finished = id(a, "finished");
+			writeTransition(t_start, getLabel("task", "t", true, a.name, "start"), !config.translateWithLifeCycleVisible);
+			writeTransition(t_end, getLabel("task", "t", true, a.name, "complete"), !config.translateWithLifeCycleVisible);
+			writePlace(p_ready, getLabel("task", "p", true, a.name, "ready"), 0);
+			writePlace(p_finished, getLabel("task", "p", true, a.name, "finished"), 0);
+
+			// connect start/end with activity
+			writeArc(t_start, p_ready);
+			writeArc(p_ready, t_act);
+			writeArc(t_act, p_finished);
+			writeArc(p_finished, t_end);
+
+			// is a looped multi-instance activity
+			if (a.looped) {
+				String t_repeat = id(a, "repeat");
+				writeTransition(t_repeat, getLabel("task", "t", true, a.name, "repeat"), !config.makeRoutingTransitionsVisible);
+				writeArc(p_finished, t_repeat);
+				writeArc(t_repeat, p_ready);
+			}
+
+			// has attached events
+			for (Node e : a.boundaryEvents)
+				writeArc(p_ready, id(e, "t"));
+
+			// remember when the activity has been executed and enable compensation event correspondingly
+			if (a.compensationEvent != null) {
+				String p_act_wasExecuted = id(a, "wasExecuted");
+				writePlace(p_act_wasExecuted, getLabel("task", "p", true, a.name, "wasExecuted"), 0);
+				writeArc(t_act, p_act_wasExecuted);
+				writeArc(p_act_wasExecuted, id(a.compensationEvent, "t"));
+			}
+
+			// link start and end events of the subprocess to start and end transitions of this activity
+			if (linkToSubprocess) {
+				if (a.startEvents.size() > 1) warnings.add("Subprocess '"+a.name+"' has multiple start events. Start events are assumed to be exclusive.");
+				if (a.endEvents.size() > 1) warnings.add("Subprocess '"+a.name+"' has multiple end events. End events are assumed to be exclusive.");
+				for (Node startEvent : a.startEvents)
+					writeArc(t_start, id(startEvent, "p"));
+				for (Node endEvent : a.endEvents)
+					writeArc(id(endEvent, "p"), t_end);
+			}
+		}
+
+		connectToAllInFlows(a, t_start);
+		connectToAllOutFlows(a, t_end);
+	}
+
+	private void translateXORGateway(Node g) throws XMLStreamException {
+
+		String p = id(g, "p");
+		writePlace(p, getLabel("xor", "p", false, g.name), 0);
+
+		// connect transition to place of incoming edge
+		for (Flow f : g.incoming) {
+			String t = id(g, "in" + f.index);
+			writeTransition(t, getLabel("xor_merge", "t", false, f.source.name, g.name), !config.makeRoutingTransitionsVisible);
+			writeArc(t, p);
+			writeArc(flowPlace(f), t);
+		}
+
+		// connect transition to place of outgoing edge
+		for (Flow f : g.outgoing) {
+			String t = id(g, "out" + f.index);
+			writeTransition(t, getLabel("xor_split", "t", false, g.name, f.target.name), !config.makeRoutingTransitionsVisible);
+			writeArc(p, t);
+			writeArc(t, flowPlace(f));
+		}
+	}
+
+	private void translateANDGateway(Node g) throws XMLStreamException {
+		String t = id(g, "t");
+		writeTransition(t, getLabel("and", "t", false, g.name), !config.makeRoutingTransitionsVisible);
+		connectToAllInFlows(g, t);
+		connectToAllOutFlows(g, t);
+	}
+
+	private void translateORGateway(Node g) throws XMLStreamException {
+
+		// OR-join
+		if (g.incoming.size() > 1 && g.outgoing.size() == 1) {
+			warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Translation of gateway "+g.id+" ("+g.name+") does not preserve the semantics.");
+
+			String p_out = flowPlace(g.outgoing.get(0));
+			String[] p_ins = new String[g.incoming.size()];
+			for (int j = 0; j < p_ins.length; j++)
+				p_ins[j] = flowPlace(g.incoming.get(j));
+			int n = p_ins.length;
+
+			if (config.orGatewayEncoding == ORGatewayEncoding.LINEAR) {
+				translateORJoinLinear(g, p_ins, p_out);
+				return;
+			}
+			if (!checkORGatewayBranches(g, n)) return;
+
+			// one transition for each non-empty subset of the incoming flows
+			for (int i = 1; i < (1<<n); i++) {
+				String t = addORTransition(g, "ior_join", Integer.toString(i));
+				for (int j = 0; j < n; j++) {
+					if (((i>>j) & 1) == 1) writeArc(p_ins[j], t);
+				}
+				writeArc(t, p_out);
+			}
+
+		// OR-split with one incoming edge
+		} else {
+
+			if (g.incoming.isEmpty()) {
+				errors.add("Cannot translate Inclusive-OR-Split to standard Petri nets. Gateway "+g.id+" ("+g.name+") has no incoming control-flow edge.");
+				return;
+			}
+			String p_in = flowPlace(g.incoming.get(0));
+			String[] p_outs = new String[g.outgoing.size()];
+			for (int j = 0; j < p_outs.length; j++)
+				p_outs[j] = flowPlace(g.outgoing.get(j));
+			int n = p_outs.length;
+			if (n == 0) {
+				warnings.add("Cannot translate Inclusive-OR-Join to standard Petri nets. Gateway "+g.id+" ("+g.name+") has no outgoing control-flow edge.");
+				return;
+			}
+
+			if (config.orGatewayEncoding == ORGatewayEncoding.LINEAR) {
+				translateORSplitLinear(g, p_in, p_outs);
+				return;
+			}
+			if (!checkORGatewayBranches(g, n)) return;
+
+			// one transition for each non-empty subset of the outgoing flows
+			for (int i = 1; i < (1<<n); i++) {
+				String t = addORTransition(g, "ior_split", Integer.toString(i));
+				for (int j = 0; j < n; j++) {
+					if (((i>>j) & 1) == 1) writeArc(t, p_outs[j]);
+				}
+				writeArc(p_in, t);
+			}
+		}
+	}
+
+	private boolean checkORGatewayBranches(Node g, int n) {
+		int maxBranches = Math.min(config.maxORGatewayBranches, BPMN2PetriNetConverter.MAX_OR_SUBSET_BRANCHES);
+		if (n <= maxBranches) return true;
+
+		errors.add("Inclusive gateway "+g.id+" ("+g.name+") has "+n+" branches, translating it would create 2^"+n+"-1 transitions (at most "+maxBranches+" branches are allowed). Use the linear encoding for inclusive gateways instead.");
+		return false;
+	}
+
+	/**
+	 * Linear encoding of an OR-split, see {@link LinearORGatewayEncoding}.
+	 */
+	private void translateORSplitLinear(Node g, String p_in, String[] p_outs) throws XMLStreamException {
+		linearEncoding(g).translateSplit(p_in, Arrays.asList(p_outs));
+	}
+
+	/**
+	 * Linear encoding of an OR-join, see {@link LinearORGatewayEncoding}.
+	 */
+	private void translateORJoinLinear(Node g, String[] p_ins, String p_out) throws XMLStreamException {
+		linearEncoding(g).translateJoin(Arrays.asList(p_ins), p_out);
+	}
+
+	private LinearORGatewayEncoding<String, XMLStreamException> linearEncoding(final Node g) {
+		return new LinearORGatewayEncoding<String, XMLStreamException>() {
+			protected String addPlace(String bpmnPrefix, String... suffix) throws XMLStreamException {
+				String[] parts = new String[suffix.length + 1];
+				parts[0] = g.name;
+				System.arraycopy(suffix, 0, parts, 1, suffix.length);
+
+				StringBuilder p = new StringBuilder("n").append(g.index);
+				for (String s : suffix)
+					p.append('_').append(s);
+				writePlace(p.toString(), getLabel(bpmnPrefix, "p", false, parts), 0);
+				return p.toString();
+			}
+
+			protected String addTransition(String bpmnPrefix, String... suffix) throws XMLStreamException {
+				return addORTransition(g, bpmnPrefix, suffix);
+			}
+
+			protected void addArc(String source, String target) throws XMLStreamException {
+				writeArc(source, target);
+			}
+		};
+	}
+
+	private String addORTransition(Node g, String bpmnPrefix, String... suffix) throws XMLStreamException {
+		String[] parts = new String[suffix.length + 1];
+		parts[0] = g.name;
+		System.arraycopy(suffix, 0, parts, 1, suffix.length);
+
+		StringBuilder t = new StringBuilder("n").append(g.index);
+		for (String s : suffix)
+			t.append('_').append(s);
+		writeTransition(t.toString(), getLabel(bpmnPrefix, "t", false, parts), !config.makeRoutingTransitionsVisible);
+		return t.toString();
+	}
+
+	/**
+	 * @return id of a Petri net node created for BPMN node n
+	 */
+	private static String id(Node n, String suffix) {
+		return "n" + n.index + "_" + suffix;
+	}
+
+	/**
+	 * Label of a Petri net node, as built by {@link BPMN2PetriNetConverter}.
+	 */
+	private CharSequence getLabel(String bpmnPrefix, String pnPrefix, boolean isActivity, String... parts) {
+		if (config.labelNodesWith == LabelValue.ORIGINAL_LABEL && parts.length == 1) return parts[0];
+		return new NodeLabel(config.labelNodesWith, bpmnPrefix, pnPrefix, isActivity, parts);
+	}
+
+	private void writePlace(String id, CharSequence label, int tokens) throws XMLStreamException {
+		pnml.writeStartElement("place");
+		pnml.writeAttribute("id", id);
+		writeName(label);
+		if (tokens > 0) {
+			pnml.writeStartElement("initialMarking");
+			writeText(Integer.toString(tokens));
+			pnml.writeEndElement();
+		}
+		pnml.writeEndElement();
+	}
+
+	private void writeTransition(String id, CharSequence label, boolean invisible) throws XMLStreamException {
+		pnml.writeStartElement("transition");
+		pnml.writeAttribute("id", id);
+		writeName(label);
+		if (invisible) {
+			pnml.writeEmptyElement("toolspecific");
+			pnml.writeAttribute("tool", "ProM");
+			pnml.writeAttribute("version", "6.4");
+			pnml.writeAttribute("activity", "$invisible$");
+		}
+		pnml.writeEndElement();
+	}
+
+	private void writeArc(String source, String target) throws XMLStreamException {
+		pnml.writeStartElement("arc");
+		pnml.writeAttribute("id", "a" + arcCount++);
+		pnml.writeAttribute("source", source);
+		pnml.writeAttribute("target", target);
+		pnml.writeEndElement();
+	}
+
+	private void writeName(CharSequence label) throws XMLStreamException {
+		pnml.writeStartElement("name");
+		writeText(label.toString());
+		pnml.writeEndElement();
+	}
+
+	private void writeText(String text) throws XMLStreamException {
+		pnml.writeStartElement("text");
+		pnml.writeCharacters(text);
+		pnml.writeEndElement();
+	}
+}
@@ -5,5 +5,11 @@ package org.processmining.plugins.converters.bpmn2pn;
  * @author dfahland
  */
 public class BPMN2PetriNetWithDataConverter_Configuration extends BPMN2PetriNetConverter_Configuration {
-	// currently empty
+	/**
+	 * If 'true', then the control-flow is translated directly into the Petri
+	 * net with data. If 'false', then a plain Petri net is created first and
+	 * copied into the Petri net with data, so that {@link BPMN2PetriNetConverter#getPetriNet()}
+	 * and the markings refer to the plain Petri net.
+	 */
+	public boolean buildDataPetriNetDirectly = false;
 }
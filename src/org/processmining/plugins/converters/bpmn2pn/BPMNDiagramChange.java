@@ -0,0 +1,86 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
+
+/**
+ * Edit of a BPMN diagram that has already been converted, passed to
+ * {@link BPMN2PetriNetConverter#update(BPMNDiagramChange)} to patch the
+ * resulting net. The change only records which elements were edited; the
+ * diagram itself has to be edited by the caller.
+ */
+public class BPMNDiagramChange {
+
+	private final Set<BPMNNode> addedNodes = new LinkedHashSet<BPMNNode>();
+	private final Set<BPMNNode> removedNodes = new LinkedHashSet<BPMNNode>();
+	private final Set<BPMNNode> changedNodes = new LinkedHashSet<BPMNNode>();
+	private final Set<Flow> addedFlows = new LinkedHashSet<Flow>();
+	private final Set<Flow> removedFlows = new LinkedHashSet<Flow>();
+
+	public void addNode(BPMNNode n) {
+		addedNodes.add(n);
+	}
+
+	/**
+	 * Record the removal of node n. The flows that were removed together with
+	 * n have to be recorded by {@link #removeFlow(Flow)} as well.
+	 *
+	 * @param n
+	 */
+	public void removeNode(BPMNNode n) {
+		if (!addedNodes.remove(n))
+			removedNodes.add(n);
+		changedNodes.remove(n);
+	}
+
+	/**
+	 * Record a change of the attributes of node n, e.g., of its label, its
+	 * gateway type, or its loop marker. Attaching an event to another
+	 * activity or moving a node to another subprocess has to be recorded as
+	 * removal and addition of the node.
+	 *
+	 * @param n
+	 */
+	public void changeNode(BPMNNode n) {
+		if (!addedNodes.contains(n))
+			changedNodes.add(n);
+	}
+
+	public void addFlow(Flow f) {
+		addedFlows.add(f);
+	}
+
+	public void removeFlow(Flow f) {
+		if (!addedFlows.remove(f))
+			removedFlows.add(f);
+	}
+
+	public Set<BPMNNode> getAddedNodes() {
+		return Collections.unmodifiableSet(addedNodes);
+	}
+
+	public Set<BPMNNode> getRemovedNodes() {
+		return Collections.unmodifiableSet(removedNodes);
+	}
+
+	public Set<BPMNNode> getChangedNodes() {
+		return Collections.unmodifiableSet(changedNodes);
+	}
+
+	public Set<Flow> getAddedFlows() {
+		return Collections.unmodifiableSet(addedFlows);
+	}
+
+	public Set<Flow> getRemovedFlows() {
+		return Collections.unmodifiableSet(removedFlows);
+	}
+
+	public boolean isEmpty() {
+		return addedNodes.isEmpty() && removedNodes.isEmpty() && changedNodes.isEmpty() && addedFlows.isEmpty()
+				&& removedFlows.isEmpty();
+	}
+}
@@ -0,0 +1,474 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.petrinet.Petrinet;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+
+/**
+ * Petri net with int-indexed places and transitions, built by
+ * {@link BPMN2PetriNetConverter} before (and possibly instead of) a ProM
+ * {@link Petrinet}. Places and transitions share one index space; each arc
+ * is stored in a slot that is linked into the list of outgoing arcs of its
+ * source and the list of incoming arcs of its target, so pre- and postsets
+ * are read and nodes are removed in time proportional to the number of their
+ * arcs. Node labels are kept as given (possibly as a deferred label) and only
+ * turned into strings when read. The indices of removed nodes and the slots
+ * of their arcs are reused by nodes and arcs added later; the indices of all
+ * other nodes remain valid.
+ */
+public class CompactPetriNet {
+
+	private static final int NONE = -1;
+
+	private final String label;
+	private final LabelTable labelTable;
+
+	private CharSequence[] labels = new CharSequence[16];
+	private int nodeCount = 0;
+	private int placeCount = 0;
+	private int removedCount = 0;
+	private BitSet isPlace = new BitSet();
+	private BitSet isInvisible = new BitSet();
+	private BitSet isRemoved = new BitSet();
+	// indices of removed nodes, reused by new nodes
+	private IntList freeNodes = new IntList();
+
+	// first and last outgoing and incoming arc slot of each node, NONE if the
+	// node has no such arcs
+	private int[] firstOut = new int[16];
+	private int[] lastOut = new int[16];
+	private int[] firstIn = new int[16];
+	private int[] lastIn = new int[16];
+
+	// source and target of each arc slot (source NONE if the slot is free),
+	// and the neighbouring slots in the arc lists of source and target
+	private int[] arcSource = new int[32];
+	private int[] arcTarget = new int[32];
+	private int[] nextOut = new int[32];
+	private int[] prevOut = new int[32];
+	private int[] nextIn = new int[32];
+	private int[] prevIn = new int[32];
+	private int arcSlots = 0;
+	private int arcCount = 0;
+	// slots of removed arcs, reused by new arcs
+	private IntList freeArcs = new IntList();
+
+	// nodes removed and nodes and arc slots added since startRecording(), null
+	// if changes are not recorded
+	private IntList recordedRemovals;
+	private IntList recordedNodes;
+	private IntList recordedArcs;
+
+	// initial marking as multiset of places, final places in order of addition
+	private IntList initialMarking = new IntList();
+	private IntList finalPlaces = new IntList();
+
+	public CompactPetriNet(String label) {
+		this(label, null);
+	}
+
+	/**
+	 * @param label
+	 * @param labelTable
+	 *            table to intern node labels in when they are read, or null
+	 */
+	public CompactPetriNet(String label, LabelTable labelTable) {
+		this.label = label;
+		this.labelTable = labelTable;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * @param label
+	 * @return index of the new place
+	 */
+	public int addPlace(CharSequence label) {
+		int p = addNode(label);
+		isPlace.set(p);
+		placeCount++;
+		return p;
+	}
+
+	/**
+	 * @param label
+	 * @param invisible
+	 * @return index of the new transition
+	 */
+	public int addTransition(CharSequence label, boolean invisible) {
+		int t = addNode(label);
+		isInvisible.set(t, invisible);
+		return t;
+	}
+
+	private int addNode(CharSequence label) {
+		int n;
+		if (!freeNodes.isEmpty()) {
+			n = freeNodes.removeLast();
+			isRemoved.clear(n);
+			isPlace.clear(n);
+			isInvisible.clear(n);
+			removedCount--;
+		} else {
+			if (nodeCount == labels.length) {
+				int capacity = labels.length * 2;
+				labels = Arrays.copyOf(labels, capacity);
+				firstOut = Arrays.copyOf(firstOut, capacity);
+				lastOut = Arrays.copyOf(lastOut, capacity);
+				firstIn = Arrays.copyOf(firstIn, capacity);
+				lastIn = Arrays.copyOf(lastIn, capacity);
+			}
+			n = nodeCount++;
+		}
+		labels[n] = label;
+		firstOut[n] = NONE;
+		lastOut[n] = NONE;
+		firstIn[n] = NONE;
+		lastIn[n] = NONE;
+		if (recordedNodes != null)
+			recordedNodes.add(n);
+		return n;
+	}
+
+	/**
+	 * Add an arc from a place to a transition or from a transition to a place.
+	 *
+	 * @param source
+	 * @param target
+	 */
+	public void addArc(int source, int target) {
+		checkNode(source);
+		checkNode(target);
+		if (isPlace(source) == isPlace(target))
+			throw new IllegalArgumentException("Arc from " + source + " to " + target
+					+ " does not connect a place and a transition");
+
+		int a;
+		if (!freeArcs.isEmpty()) {
+			a = freeArcs.removeLast();
+		} else {
+			if (arcSlots == arcSource.length) {
+				int capacity = arcSource.length * 2;
+				arcSource = Arrays.copyOf(arcSource, capacity);
+				arcTarget = Arrays.copyOf(arcTarget, capacity);
+				nextOut = Arrays.copyOf(nextOut, capacity);
+				prevOut = Arrays.copyOf(prevOut, capacity);
+				nextIn = Arrays.copyOf(nextIn, capacity);
+				prevIn = Arrays.copyOf(prevIn, capacity);
+			}
+			a = arcSlots++;
+		}
+		arcSource[a] = source;
+		arcTarget[a] = target;
+
+		// append to the outgoing arcs of source and the incoming arcs of target
+		prevOut[a] = lastOut[source];
+		nextOut[a] = NONE;
+		if (lastOut[source] == NONE)
+			firstOut[source] = a;
+		else
+			nextOut[lastOut[source]] = a;
+		lastOut[source] = a;
+
+		prevIn[a] = lastIn[target];
+		nextIn[a] = NONE;
+		if (lastIn[target] == NONE)
+			firstIn[target] = a;
+		else
+			nextIn[lastIn[target]] = a;
+		lastIn[target] = a;
+
+		arcCount++;
+		if (recordedArcs != null)
+			recordedArcs.add(a);
+	}
+
+	/**
+	 * Unlink the arc in slot a from the arc lists of its source and target
+	 * and free the slot.
+	 */
+	private void removeArc(int a) {
+		int source = arcSource[a];
+		int target = arcTarget[a];
+
+		if (prevOut[a] == NONE)
+			firstOut[source] = nextOut[a];
+		else
+			nextOut[prevOut[a]] = nextOut[a];
+		if (nextOut[a] == NONE)
+			lastOut[source] = prevOut[a];
+		else
+			prevOut[nextOut[a]] = prevOut[a];
+
+		if (prevIn[a] == NONE)
+			firstIn[target] = nextIn[a];
+		else
+			nextIn[prevIn[a]] = nextIn[a];
+		if (nextIn[a] == NONE)
+			lastIn[target] = prevIn[a];
+		else
+			prevIn[nextIn[a]] = prevIn[a];
+
+		arcSource[a] = NONE;
+		freeArcs.add(a);
+		arcCount--;
+	}
+
+	/**
+	 * Remove the given nodes, all arcs connected to them, and their tokens in
+	 * the initial and final marking. Nodes that are already removed are
+	 * ignored. Takes time proportional to the number of arcs of the removed
+	 * nodes, their indices are reused by nodes added later.
+	 *
+	 * @param nodes
+	 */
+	public void removeNodes(int... nodes) {
+		for (int n : nodes) {
+			checkIndex(n);
+			if (isRemoved.get(n))
+				continue;
+			while (firstOut[n] != NONE)
+				removeArc(firstOut[n]);
+			while (firstIn[n] != NONE)
+				removeArc(firstIn[n]);
+			isRemoved.set(n);
+			labels[n] = null;
+			if (isPlace(n)) {
+				placeCount--;
+				while (initialMarking.remove(n));
+				while (finalPlaces.remove(n));
+			}
+			removedCount++;
+			freeNodes.add(n);
+			if (recordedRemovals != null)
+				recordedRemovals.add(n);
+		}
+	}
+
+	/**
+	 * @return number of node indices of this net, including the indices of
+	 *         removed nodes that have not been reused
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getPlaceCount() {
+		return placeCount;
+	}
+
+	public int getTransitionCount() {
+		return nodeCount - removedCount - placeCount;
+	}
+
+	public boolean isRemoved(int node) {
+		return isRemoved.get(node);
+	}
+
+	public int getArcCount() {
+		return arcCount;
+	}
+
+	public boolean isPlace(int node) {
+		return isPlace.get(node);
+	}
+
+	public boolean isInvisible(int node) {
+		return isInvisible.get(node);
+	}
+
+	/**
+	 * @param node
+	 * @return label of the node, interned in the label table of this net
+	 */
+	public String getLabel(int node) {
+		checkNode(node);
+		if (labels[node] == null)
+			return null;
+		String label = labels[node].toString();
+		return (labelTable != null) ? labelTable.intern(label) : label;
+	}
+
+	/**
+	 * @param node
+	 * @return indices of the targets of all arcs leaving node, in the order
+	 *         the arcs were added
+	 */
+	public int[] getPostset(int node) {
+		checkNode(node);
+		IntList targets = new IntList();
+		for (int a = firstOut[node]; a != NONE; a = nextOut[a])
+			targets.add(arcTarget[a]);
+		return targets.toArray();
+	}
+
+	/**
+	 * @param node
+	 * @return indices of the sources of all arcs entering node, in the order
+	 *         the arcs were added
+	 */
+	public int[] getPreset(int node) {
+		checkNode(node);
+		IntList sources = new IntList();
+		for (int a = firstIn[node]; a != NONE; a = nextIn[a])
+			sources.add(arcSource[a]);
+		return sources.toArray();
+	}
+
+	/**
+	 * Add a token on the given place to the initial marking.
+	 */
+	public void addInitialToken(int place) {
+		checkPlace(place);
+		initialMarking.add(place);
+	}
+
+	/**
+	 * Remove one token on the given place from the initial marking.
+	 */
+	public void removeInitialToken(int place) {
+		initialMarking.remove(place);
+	}
+
+	/**
+	 * @return places of the initial marking, one entry per token
+	 */
+	public int[] getInitialMarking() {
+		return initialMarking.toArray();
+	}
+
+	public void addFinalPlace(int place) {
+		checkPlace(place);
+		finalPlaces.add(place);
+	}
+
+	public void removeFinalPlace(int place) {
+		finalPlaces.remove(place);
+	}
+
+	public int[] getFinalPlaces() {
+		return finalPlaces.toArray();
+	}
+
+	/**
+	 * Create all places, transitions and arcs of this net in the given
+	 * Petri net.
+	 *
+	 * @param net
+	 * @return the created Petri net nodes, indexed like the nodes of this net;
+	 *         null for removed nodes
+	 */
+	public PetrinetNode[] materialize(PetrinetGraph net) {
+		PetrinetNode[] nodes = new PetrinetNode[nodeCount];
+		for (int n = 0; n < nodeCount; n++) {
+			if (!isRemoved(n))
+				nodes[n] = createNode(net, n);
+		}
+		for (int a = 0; a < arcSlots; a++) {
+			if (arcSource[a] != NONE)
+				createArc(net, nodes, a);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Record the nodes removed and the nodes and arcs added from now on,
+	 * until the changes are applied to a materialized net by
+	 * {@link #materializeChanges(PetrinetGraph, PetrinetNode[])}.
+	 */
+	public void startRecording() {
+		recordedRemovals = new IntList();
+		recordedNodes = new IntList();
+		recordedArcs = new IntList();
+	}
+
+	/**
+	 * Apply the changes recorded since {@link #startRecording()} to a net
+	 * created by {@link #materialize(PetrinetGraph)}: remove the Petri net
+	 * nodes of removed nodes together with their arcs, and create the added
+	 * nodes and arcs. Takes time proportional to the number of recorded
+	 * changes and stops recording.
+	 *
+	 * @param net
+	 * @param nodes
+	 *            the Petri net nodes of net, indexed like the nodes of this
+	 *            net
+	 * @return the Petri net nodes of net after the changes, indexed like the
+	 *         nodes of this net; null for removed nodes
+	 */
+	public PetrinetNode[] materializeChanges(PetrinetGraph net, PetrinetNode[] nodes) {
+		if (recordedNodes == null)
+			throw new IllegalStateException("Changes of " + label + " are not recorded");
+
+		if (nodes.length < nodeCount)
+			nodes = Arrays.copyOf(nodes, nodeCount);
+		for (int i = 0; i < recordedRemovals.size(); i++) {
+			int n = recordedRemovals.get(i);
+			if (nodes[n] instanceof Place)
+				net.removePlace((Place) nodes[n]);
+			else if (nodes[n] instanceof Transition)
+				net.removeTransition((Transition) nodes[n]);
+			nodes[n] = null;
+		}
+		for (int i = 0; i < recordedNodes.size(); i++) {
+			int n = recordedNodes.get(i);
+			if (!isRemoved(n) && nodes[n] == null)
+				nodes[n] = createNode(net, n);
+		}
+		// a slot may have been recorded again after its arc was removed
+		Set<Integer> created = new HashSet<Integer>();
+		for (int i = 0; i < recordedArcs.size(); i++) {
+			int a = recordedArcs.get(i);
+			if (arcSource[a] != NONE && created.add(a))
+				createArc(net, nodes, a);
+		}
+
+		recordedRemovals = null;
+		recordedNodes = null;
+		recordedArcs = null;
+		return nodes;
+	}
+
+	private PetrinetNode createNode(PetrinetGraph net, int n) {
+		if (isPlace(n))
+			return net.addPlace(getLabel(n));
+		Transition t = net.addTransition(getLabel(n));
+		t.setInvisible(isInvisible(n));
+		return t;
+	}
+
+	private void createArc(PetrinetGraph net, PetrinetNode[] nodes, int a) {
+		PetrinetNode source = nodes[arcSource[a]];
+		PetrinetNode target = nodes[arcTarget[a]];
+		if (source instanceof Place)
+			net.addArc((Place) source, (Transition) target);
+		else
+			net.addArc((Transition) source, (Place) target);
+	}
+
+	private void checkNode(int node) {
+		checkIndex(node);
+		if (isRemoved.get(node))
+			throw new IllegalArgumentException("Node " + node + " has been removed");
+	}
+
+	private void checkIndex(int node) {
+		if (node < 0 || node >= nodeCount)
+			throw new IndexOutOfBoundsException("Node: " + node + ", Nodes: " + nodeCount);
+	}
+
+	private void checkPlace(int place) {
+		checkNode(place);
+		if (!isPlace(place))
+			throw new IllegalArgumentException("Node " + place + " is not a place");
+	}
+}
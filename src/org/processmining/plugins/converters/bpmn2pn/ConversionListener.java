@@ -0,0 +1,23 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+/**
+ * Listener for the progress of {@link BPMN2PetriNetConverter}, called on the
+ * thread running {@link BPMN2PetriNetConverter#convert()} or
+ * {@link BPMN2PetriNetConverter#update(BPMNDiagramChange)}.
+ */
+public interface ConversionListener {
+
+	/**
+	 * @param phase
+	 *            name of the translation phase, e.g., "translateEvents"
+	 * @param nanos
+	 *            wall time of the phase in nanoseconds
+	 */
+	void phaseFinished(String phase, long nanos);
+
+	/**
+	 * @param metrics
+	 *            all measurements of the conversion or update
+	 */
+	void conversionFinished(ConversionMetrics metrics);
+}
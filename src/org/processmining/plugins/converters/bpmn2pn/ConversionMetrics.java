@@ -0,0 +1,147 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measurements of one conversion or update of {@link BPMN2PetriNetConverter}:
+ * the wall time of each translation phase, the size of the translation of
+ * each type of BPMN element, the size of the largest inclusive gateway and
+ * the peak sizes of the maps from BPMN elements to net nodes.
+ */
+public class ConversionMetrics {
+
+	/**
+	 * Number of BPMN elements of one type and of the places, transitions and
+	 * arcs created for them.
+	 */
+	public static class ElementCounts {
+
+		private int elements;
+		private int places;
+		private int transitions;
+		private int arcs;
+
+		void add(int elements, int places, int transitions, int arcs) {
+			this.elements += elements;
+			this.places += places;
+			this.transitions += transitions;
+			this.arcs += arcs;
+		}
+
+		public int getElements() {
+			return elements;
+		}
+
+		public int getPlaces() {
+			return places;
+		}
+
+		public int getTransitions() {
+			return transitions;
+		}
+
+		public int getArcs() {
+			return arcs;
+		}
+
+		public String toString() {
+			return elements+" elements, "+places+" places, "+transitions+" transitions, "+arcs+" arcs";
+		}
+	}
+
+	private final Map<String, Long> phaseTimes = new LinkedHashMap<String, Long>();
+	private final Map<String, ElementCounts> elementCounts = new LinkedHashMap<String, ElementCounts>();
+	private int maxORGatewayBranches;
+	private int peakNodeMapSize;
+	private int peakFlowMapSize;
+
+	void addPhaseTime(String phase, long nanos) {
+		Long time = phaseTimes.get(phase);
+		phaseTimes.put(phase, (time != null) ? time + nanos : nanos);
+	}
+
+	void addElementCounts(String type, int elements, int places, int transitions, int arcs) {
+		ElementCounts counts = elementCounts.get(type);
+		if (counts == null) {
+			counts = new ElementCounts();
+			elementCounts.put(type, counts);
+		}
+		counts.add(elements, places, transitions, arcs);
+	}
+
+	void updateMaxORGatewayBranches(int branches) {
+		maxORGatewayBranches = Math.max(maxORGatewayBranches, branches);
+	}
+
+	void updatePeakMapSizes(int nodeMapSize, int flowMapSize) {
+		peakNodeMapSize = Math.max(peakNodeMapSize, nodeMapSize);
+		peakFlowMapSize = Math.max(peakFlowMapSize, flowMapSize);
+	}
+
+	/**
+	 * @return wall time in nanoseconds of each translation phase, in the
+	 *         order in which the phases were run
+	 */
+	public Map<String, Long> getPhaseTimes() {
+		return Collections.unmodifiableMap(phaseTimes);
+	}
+
+	/**
+	 * @return sum of the wall times of all phases in nanoseconds
+	 */
+	public long getTotalTime() {
+		long total = 0;
+		for (long time : phaseTimes.values()) total += time;
+		return total;
+	}
+
+	/**
+	 * @return counts for each type of BPMN element, e.g., "Activity",
+	 *         "Flow", "Event(START)" or "Gateway(INCLUSIVE)"
+	 */
+	public Map<String, ElementCounts> getElementCounts() {
+		return Collections.unmodifiableMap(elementCounts);
+	}
+
+	/**
+	 * @param type
+	 * @return counts for the given type of BPMN element, all 0 if no element
+	 *         of this type was translated
+	 */
+	public ElementCounts getElementCounts(String type) {
+		ElementCounts counts = elementCounts.get(type);
+		return (counts != null) ? counts : new ElementCounts();
+	}
+
+	/**
+	 * @return largest number of branches of a translated inclusive or complex
+	 *         gateway; the number of transitions created for these gateways
+	 *         is part of {@link #getElementCounts()}
+	 */
+	public int getMaxORGatewayBranches() {
+		return maxORGatewayBranches;
+	}
+
+	/**
+	 * @return largest number of BPMN nodes mapped to net nodes during the
+	 *         conversion
+	 */
+	public int getPeakNodeMapSize() {
+		return peakNodeMapSize;
+	}
+
+	/**
+	 * @return largest number of BPMN edges mapped to places during the
+	 *         conversion
+	 */
+	public int getPeakFlowMapSize() {
+		return peakFlowMapSize;
+	}
+
+	public String toString() {
+		return "phases "+phaseTimes+", elements "+elementCounts+", max OR branches "+maxORGatewayBranches
+				+", peak node map "+peakNodeMapSize+", peak flow map "+peakFlowMapSize;
+	}
+}
@@ -0,0 +1,53 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.processmining.datapetrinets.expression.GuardExpression;
+import org.processmining.datapetrinets.expression.syntax.ParseException;
+
+/**
+ * Cache of parsed guard expressions by their text, so that each distinct
+ * guard of one or more conversions is parsed only once. Parse failures are
+ * cached as well. The cache can be shared between conversions running
+ * concurrently.
+ */
+public class GuardCache {
+
+	// a GuardExpression, or the ParseException for guards that cannot be parsed
+	private final ConcurrentMap<String, Object> guards = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * @param guard
+	 * @return the parsed guard, parsed only on the first call for this text
+	 * @throws ParseException
+	 *             if the guard cannot be parsed
+	 */
+	public GuardExpression parse(String guard) throws ParseException {
+		Object parsed = guards.get(guard);
+		if (parsed == null) {
+			try {
+				parsed = GuardExpression.Factory.newInstance(guard);
+			} catch (ParseException e) {
+				parsed = e;
+			}
+			Object existing = guards.putIfAbsent(guard, parsed);
+			if (existing != null)
+				parsed = existing;
+		}
+		if (parsed instanceof ParseException)
+			throw (ParseException) parsed;
+		return (GuardExpression) parsed;
+	}
+
+	/**
+	 * @return number of distinct guards in this cache
+	 */
+	public int size() {
+		return guards.size();
+	}
+
+	public void clear() {
+		guards.clear();
+	}
+}
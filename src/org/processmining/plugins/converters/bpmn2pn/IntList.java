@@ -0,0 +1,84 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of ints, used to store node indices of a
+ * {@link CompactPetriNet} without boxing.
+ */
+final class IntList {
+
+	private int[] items;
+	private int size = 0;
+
+	IntList() {
+		this(4);
+	}
+
+	IntList(int capacity) {
+		items = new int[Math.max(capacity, 1)];
+	}
+
+	void add(int item) {
+		if (size == items.length)
+			items = Arrays.copyOf(items, items.length * 2);
+		items[size++] = item;
+	}
+
+	void addAll(IntList other) {
+		if (size + other.size > items.length)
+			items = Arrays.copyOf(items, Math.max(items.length * 2, size + other.size));
+		System.arraycopy(other.items, 0, items, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * Remove the first occurrence of item.
+	 *
+	 * @param item
+	 * @return true iff the list contained item
+	 */
+	boolean remove(int item) {
+		for (int i = 0; i < size; i++) {
+			if (items[i] == item) {
+				System.arraycopy(items, i + 1, items, i, size - i - 1);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remove the last item.
+	 *
+	 * @return the removed item
+	 */
+	int removeLast() {
+		if (size == 0)
+			throw new IndexOutOfBoundsException("Index: -1, Size: 0");
+		return items[--size];
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	int get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		return items[index];
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(items, size);
+	}
+}
@@ -0,0 +1,37 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interning table for node labels, so that equal labels of the nets created
+ * by one or more conversions share one String instance. The table can be
+ * shared between conversions running concurrently.
+ */
+public class LabelTable {
+
+	private final ConcurrentMap<String, String> labels = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * @param label
+	 * @return the instance in this table that is equal to label, label itself
+	 *         if there is none yet; null if label is null
+	 */
+	public String intern(String label) {
+		if (label == null)
+			return null;
+		String existing = labels.putIfAbsent(label, label);
+		return (existing != null) ? existing : label;
+	}
+
+	/**
+	 * @return number of distinct labels in this table
+	 */
+	public int size() {
+		return labels.size();
+	}
+
+	public void clear() {
+		labels.clear();
+	}
+}
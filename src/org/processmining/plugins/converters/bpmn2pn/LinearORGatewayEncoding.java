@@ -0,0 +1,129 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding of an inclusive gateway with a number of Petri net nodes linear in
+ * the number of its branches, shared by the converters. Subclasses create the
+ * nodes and arcs in their representation of the net.
+ *
+ * @param <N>
+ *            handle of a Petri net node
+ * @param <E>
+ *            exception thrown when writing the net
+ */
+abstract class LinearORGatewayEncoding<N, E extends Exception> {
+
+	/**
+	 * @param bpmnPrefix
+	 * @param suffix
+	 *            parts of the label after the gateway label
+	 * @return the new place
+	 */
+	protected abstract N addPlace(String bpmnPrefix, String... suffix) throws E;
+
+	/**
+	 * @param bpmnPrefix
+	 * @param suffix
+	 *            parts of the label after the gateway label
+	 * @return the new routing transition
+	 */
+	protected abstract N addTransition(String bpmnPrefix, String... suffix) throws E;
+
+	protected abstract void addArc(N source, N target) throws E;
+
+	/**
+	 * Translate an OR-split. Branches are decided one after the other: choice
+	 * place p_none_j (resp. p_some_j) is marked when branch j is to be decided
+	 * and none (resp. at least one) of the previous branches was taken. There
+	 * is no p_some_0, as no branch is taken before the first one. The last
+	 * branch cannot be skipped if no branch was taken so far, so every
+	 * non-empty subset of the branches is produced exactly once.
+	 *
+	 * @param p_in
+	 *            place representing the incoming flow
+	 * @param p_outs
+	 *            places representing the outgoing flows
+	 */
+	void translateSplit(N p_in, List<N> p_outs) throws E {
+		int n = p_outs.size();
+
+		List<N> p_none = new ArrayList<N>(n);
+		List<N> p_some = new ArrayList<N>(n);
+		for (int j = 0; j < n; j++) {
+			p_none.add(addPlace("ior_split", Integer.toString(j), "none"));
+			p_some.add((j > 0) ? addPlace("ior_split", Integer.toString(j), "some") : null);
+		}
+
+		N t_start = addTransition("ior_split", "start");
+		addArc(p_in, t_start);
+		addArc(t_start, p_none.get(0));
+
+		for (int j = 0; j < n; j++) {
+			// the next choice place, there is none after the last branch
+			boolean hasNext = j < n-1;
+
+			// take branch j as the first branch
+			N t_takeFirst = addTransition("ior_split", Integer.toString(j), "take_first");
+			addArc(p_none.get(j), t_takeFirst);
+			addArc(t_takeFirst, p_outs.get(j));
+			if (hasNext) addArc(t_takeFirst, p_some.get(j+1));
+
+			// skip branch j while no branch was taken, not for the last branch
+			if (hasNext) {
+				N t_skipFirst = addTransition("ior_split", Integer.toString(j), "skip_first");
+				addArc(p_none.get(j), t_skipFirst);
+				addArc(t_skipFirst, p_none.get(j+1));
+			}
+
+			// no branch can be taken before the first one
+			if (j == 0) continue;
+
+			// take branch j after some other branch
+			N t_take = addTransition("ior_split", Integer.toString(j), "take");
+			addArc(p_some.get(j), t_take);
+			addArc(t_take, p_outs.get(j));
+			if (hasNext) addArc(t_take, p_some.get(j+1));
+
+			// skip branch j after some other branch
+			N t_skip = addTransition("ior_split", Integer.toString(j), "skip");
+			addArc(p_some.get(j), t_skip);
+			if (hasNext) addArc(t_skip, p_some.get(j+1));
+		}
+	}
+
+	/**
+	 * Translate an OR-join. The first consumed incoming flow marks a choice
+	 * place from which further incoming flows can be consumed one by one, a
+	 * completion transition then produces the outgoing flow. Like the subset
+	 * translation, this does not preserve the non-local semantics of the
+	 * OR-join.
+	 *
+	 * @param p_ins
+	 *            places representing the incoming flows
+	 * @param p_out
+	 *            place representing the outgoing flow
+	 */
+	void translateJoin(List<N> p_ins, N p_out) throws E {
+
+		N p_choice = addPlace("ior_join", "choice");
+
+		for (int j = 0; j < p_ins.size(); j++) {
+			// consume branch j as the first branch
+			N t_first = addTransition("ior_join", Integer.toString(j), "first");
+			addArc(p_ins.get(j), t_first);
+			addArc(t_first, p_choice);
+
+			// consume branch j after some other branch
+			N t_next = addTransition("ior_join", Integer.toString(j), "next");
+			addArc(p_ins.get(j), t_next);
+			addArc(p_choice, t_next);
+			addArc(t_next, p_choice);
+		}
+
+		N t_complete = addTransition("ior_join", "complete");
+		addArc(p_choice, t_complete);
+		addArc(t_complete, p_out);
+	}
+}
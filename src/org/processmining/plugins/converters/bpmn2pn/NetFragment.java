@@ -0,0 +1,404 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNEdge;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+
+/**
+ * Part of a Petri net produced by {@link BPMN2PetriNetConverter} for some BPMN
+ * elements. A fragment only records which places, transitions and arcs have to
+ * be created, it does not touch the resulting net. Nodes of the fragment are
+ * referred to by int handles: local nodes by their index (>= 0), nodes that
+ * already exist in the resulting net by a negative handle. Fragments can
+ * therefore be filled concurrently and are merged into the net one after the
+ * other by {@link #mergeInto(CompactPetriNet, Map, Map, List, List)}, or
+ * appended to an enclosing fragment by
+ * {@link #append(NetFragment, Map, Map)}.
+ */
+class NetFragment {
+
+	private static final int OP_MARK_INITIAL = 0;
+	private static final int OP_UNMARK_INITIAL = 1;
+	private static final int OP_MARK_FINAL = 2;
+	private static final int OP_UNMARK_FINAL = 3;
+
+	// local nodes
+	private List<CharSequence> labels = new ArrayList<CharSequence>();
+	private BitSet isPlace = new BitSet();
+	private BitSet isInvisible = new BitSet();
+	private int placeCount = 0;
+
+	// arcs as pairs of handles
+	private int[] arcs = new int[16];
+	private int arcCount = 0;
+
+	// changes to initial and final marking as pairs of (operation, handle)
+	private int[] markingOps = new int[4];
+	private int markingOpCount = 0;
+
+	private List<BPMNNode> mappedNodes = new ArrayList<BPMNNode>();
+	private List<int[]> mappedNodeHandles = new ArrayList<int[]>();
+	private BitSet mappedNodeReplace = new BitSet();
+
+	private List<BPMNEdge<BPMNNode, BPMNNode>> mappedFlows = new ArrayList<BPMNEdge<BPMNNode, BPMNNode>>();
+	private int[] mappedFlowPlaces = new int[16];
+
+	// mappings of this fragment by BPMN element, only if indexed
+	private Map<BPMNNode, IntList> nodeIndex;
+	private Map<BPMNEdge<?, ?>, Integer> flowIndex;
+
+	// element counts for ConversionMetrics, by type of BPMN element
+	private Map<String, int[]> elementCounts = new LinkedHashMap<String, int[]>();
+	private int maxORGatewayBranches = 0;
+
+	List<String> warnings = new ArrayList<String>();
+	List<String> errors = new ArrayList<String>();
+
+	NetFragment() {
+		this(false);
+	}
+
+	/**
+	 * @param indexed
+	 *            if 'true', the mappings of this fragment can be looked up by
+	 *            {@link #getNodeHandles(BPMNNode)} and
+	 *            {@link #getFlowPlace(BPMNEdge)}
+	 */
+	NetFragment(boolean indexed) {
+		if (indexed) {
+			nodeIndex = new HashMap<BPMNNode, IntList>();
+			flowIndex = new HashMap<BPMNEdge<?, ?>, Integer>();
+		}
+	}
+
+	/**
+	 * @param label
+	 * @return handle of a new place with the given label
+	 */
+	int addPlace(CharSequence label) {
+		labels.add(label);
+		isPlace.set(labels.size() - 1);
+		placeCount++;
+		return labels.size() - 1;
+	}
+
+	/**
+	 * @param label
+	 * @param invisible
+	 * @return handle of a new transition with the given label
+	 */
+	int addTransition(CharSequence label, boolean invisible) {
+		labels.add(label);
+		isInvisible.set(labels.size() - 1, invisible);
+		return labels.size() - 1;
+	}
+
+	int getNodeCount() {
+		return labels.size();
+	}
+
+	int getPlaceCount() {
+		return placeCount;
+	}
+
+	int getArcCount() {
+		return arcCount;
+	}
+
+	int getFlowCount() {
+		return mappedFlows.size();
+	}
+
+	/**
+	 * @return BPMN nodes mapped by this fragment
+	 */
+	List<BPMNNode> getMappedNodes() {
+		return mappedNodes;
+	}
+
+	/**
+	 * @return BPMN control-flow edges mapped by this fragment
+	 */
+	List<BPMNEdge<BPMNNode, BPMNNode>> getMappedFlows() {
+		return mappedFlows;
+	}
+
+	/**
+	 * Record that elements BPMN elements of the given type were translated
+	 * to the given number of places, transitions and arcs.
+	 */
+	void countElements(String type, int elements, int places, int transitions, int arcs) {
+		int[] counts = elementCounts.get(type);
+		if (counts == null) {
+			counts = new int[4];
+			elementCounts.put(type, counts);
+		}
+		counts[0] += elements;
+		counts[1] += places;
+		counts[2] += transitions;
+		counts[3] += arcs;
+	}
+
+	void countORGatewayBranches(int branches) {
+		maxORGatewayBranches = Math.max(maxORGatewayBranches, branches);
+	}
+
+	/**
+	 * Add the element counts of this fragment to metrics.
+	 */
+	void addCountsTo(ConversionMetrics metrics) {
+		for (Map.Entry<String, int[]> entry : elementCounts.entrySet()) {
+			int[] counts = entry.getValue();
+			metrics.addElementCounts(entry.getKey(), counts[0], counts[1], counts[2], counts[3]);
+		}
+		metrics.updateMaxORGatewayBranches(maxORGatewayBranches);
+	}
+
+	/**
+	 * @param node
+	 *            index of a node of the resulting net
+	 * @return handle to refer to the node in this fragment
+	 */
+	static int ref(int node) {
+		return -node - 1;
+	}
+
+	void addArc(int source, int target) {
+		if (arcCount * 2 == arcs.length)
+			arcs = Arrays.copyOf(arcs, arcs.length * 2);
+		arcs[arcCount * 2] = source;
+		arcs[arcCount * 2 + 1] = target;
+		arcCount++;
+	}
+
+	void markInitial(int place) {
+		addMarkingOp(OP_MARK_INITIAL, place);
+	}
+
+	void unmarkInitial(int place) {
+		addMarkingOp(OP_UNMARK_INITIAL, place);
+	}
+
+	void markFinal(int place) {
+		addMarkingOp(OP_MARK_FINAL, place);
+	}
+
+	void unmarkFinal(int place) {
+		addMarkingOp(OP_UNMARK_FINAL, place);
+	}
+
+	private void addMarkingOp(int op, int place) {
+		if (markingOpCount * 2 == markingOps.length)
+			markingOps = Arrays.copyOf(markingOps, markingOps.length * 2);
+		markingOps[markingOpCount * 2] = op;
+		markingOps[markingOpCount * 2 + 1] = place;
+		markingOpCount++;
+	}
+
+	/**
+	 * Map BPMN node n to exactly the given nodes, replacing any previous
+	 * mapping of n.
+	 *
+	 * @param n
+	 * @param handles
+	 */
+	void mapNode(BPMNNode n, int... handles) {
+		mappedNodes.add(n);
+		mappedNodeHandles.add(handles);
+		mappedNodeReplace.set(mappedNodes.size() - 1);
+		if (nodeIndex != null) nodeIndex.put(n, new IntList(handles.length));
+		indexNode(n, handles);
+	}
+
+	/**
+	 * Extend the mapping of BPMN node n by the given nodes.
+	 *
+	 * @param n
+	 * @param handles
+	 */
+	void addToNode(BPMNNode n, int... handles) {
+		mappedNodes.add(n);
+		mappedNodeHandles.add(handles);
+		indexNode(n, handles);
+	}
+
+	private void indexNode(BPMNNode n, int[] handles) {
+		if (nodeIndex == null) return;
+		IntList nodes = nodeIndex.get(n);
+		if (nodes == null) {
+			nodes = new IntList(handles.length);
+			nodeIndex.put(n, nodes);
+		}
+		for (int handle : handles)
+			nodes.add(handle);
+	}
+
+	void mapFlow(BPMNEdge<BPMNNode, BPMNNode> f, int place) {
+		if (mappedFlows.size() == mappedFlowPlaces.length)
+			mappedFlowPlaces = Arrays.copyOf(mappedFlowPlaces, mappedFlowPlaces.length * 2);
+		mappedFlowPlaces[mappedFlows.size()] = place;
+		mappedFlows.add(f);
+		if (flowIndex != null) flowIndex.put(f, place);
+	}
+
+	/**
+	 * @param n
+	 * @return handles of the nodes n is mapped to in this fragment, or null
+	 *         if n is not mapped in this fragment or it is not indexed
+	 */
+	IntList getNodeHandles(BPMNNode n) {
+		return (nodeIndex != null) ? nodeIndex.get(n) : null;
+	}
+
+	/**
+	 * @param f
+	 * @return handle of the place f is mapped to in this fragment, or null if
+	 *         f is not mapped in this fragment or it is not indexed
+	 */
+	Integer getFlowPlace(BPMNEdge<?, ?> f) {
+		return (flowIndex != null) ? flowIndex.get(f) : null;
+	}
+
+	/**
+	 * @param handle
+	 *            handle of a local node
+	 * @return true iff the node is a place
+	 */
+	boolean isPlace(int handle) {
+		return isPlace.get(handle);
+	}
+
+	/**
+	 * Add all nodes, arcs, mappings, messages and counts of other to this fragment.
+	 * The mappings of other can be redirected to other BPMN elements, e.g.,
+	 * to reuse the translation of a subprocess for an identical subprocess.
+	 *
+	 * @param other
+	 * @param nodeCopies
+	 *            BPMN node to record instead of each node mapped in other,
+	 *            or null to record the same nodes
+	 * @param flowCopies
+	 *            BPMN edge to record instead of each edge mapped in other, or
+	 *            null to record the same edges
+	 */
+	void append(NetFragment other, Map<BPMNNode, BPMNNode> nodeCopies,
+			Map<BPMNEdge<BPMNNode, BPMNNode>, BPMNEdge<BPMNNode, BPMNNode>> flowCopies) {
+
+		int offset = labels.size();
+		labels.addAll(other.labels);
+		for (int i = other.isPlace.nextSetBit(0); i >= 0; i = other.isPlace.nextSetBit(i + 1))
+			isPlace.set(offset + i);
+		placeCount += other.placeCount;
+		for (int i = other.isInvisible.nextSetBit(0); i >= 0; i = other.isInvisible.nextSetBit(i + 1))
+			isInvisible.set(offset + i);
+
+		for (int i = 0; i < other.arcCount; i++) {
+			addArc(shift(offset, other.arcs[i * 2]), shift(offset, other.arcs[i * 2 + 1]));
+		}
+
+		for (int i = 0; i < other.markingOpCount; i++) {
+			addMarkingOp(other.markingOps[i * 2], shift(offset, other.markingOps[i * 2 + 1]));
+		}
+
+		for (int i = 0; i < other.mappedNodes.size(); i++) {
+			BPMNNode n = other.mappedNodes.get(i);
+			if (nodeCopies != null) n = nodeCopies.get(n);
+			int[] handles = other.mappedNodeHandles.get(i).clone();
+			for (int j = 0; j < handles.length; j++)
+				handles[j] = shift(offset, handles[j]);
+			if (other.mappedNodeReplace.get(i))
+				mapNode(n, handles);
+			else
+				addToNode(n, handles);
+		}
+
+		for (int i = 0; i < other.mappedFlows.size(); i++) {
+			BPMNEdge<BPMNNode, BPMNNode> f = other.mappedFlows.get(i);
+			if (flowCopies != null) f = flowCopies.get(f);
+			mapFlow(f, shift(offset, other.mappedFlowPlaces[i]));
+		}
+
+		for (Map.Entry<String, int[]> entry : other.elementCounts.entrySet()) {
+			int[] counts = entry.getValue();
+			countElements(entry.getKey(), counts[0], counts[1], counts[2], counts[3]);
+		}
+		countORGatewayBranches(other.maxORGatewayBranches);
+
+		warnings.addAll(other.warnings);
+		errors.addAll(other.errors);
+	}
+
+	private static int shift(int offset, int handle) {
+		return (handle >= 0) ? handle + offset : handle;
+	}
+
+	/**
+	 * Create all nodes and arcs of this fragment in the given net and record
+	 * all mappings, markings and messages of this fragment.
+	 */
+	void mergeInto(CompactPetriNet net, Map<BPMNNode, IntList> nodeMap,
+			Map<BPMNEdge<BPMNNode, BPMNNode>, Integer> flowMap, List<String> warnings, List<String> errors) {
+
+		int[] local = new int[labels.size()];
+		for (int i = 0; i < local.length; i++) {
+			if (isPlace.get(i))
+				local[i] = net.addPlace(labels.get(i));
+			else
+				local[i] = net.addTransition(labels.get(i), isInvisible.get(i));
+		}
+
+		for (int i = 0; i < arcCount; i++) {
+			net.addArc(resolve(local, arcs[i * 2]), resolve(local, arcs[i * 2 + 1]));
+		}
+
+		for (int i = 0; i < markingOpCount; i++) {
+			int p = resolve(local, markingOps[i * 2 + 1]);
+			switch (markingOps[i * 2]) {
+				case OP_MARK_INITIAL :
+					net.addInitialToken(p);
+					break;
+				case OP_UNMARK_INITIAL :
+					net.removeInitialToken(p);
+					break;
+				case OP_MARK_FINAL :
+					net.addFinalPlace(p);
+					break;
+				case OP_UNMARK_FINAL :
+					net.removeFinalPlace(p);
+					break;
+			}
+		}
+
+		for (int i = 0; i < mappedNodes.size(); i++) {
+			BPMNNode n = mappedNodes.get(i);
+			int[] handles = mappedNodeHandles.get(i);
+			IntList nodes = nodeMap.get(n);
+			if (nodes == null || mappedNodeReplace.get(i)) {
+				nodes = new IntList(handles.length);
+				nodeMap.put(n, nodes);
+			}
+			for (int handle : handles)
+				nodes.add(resolve(local, handle));
+		}
+
+		for (int i = 0; i < mappedFlows.size(); i++) {
+			flowMap.put(mappedFlows.get(i), resolve(local, mappedFlowPlaces[i]));
+		}
+
+		warnings.addAll(this.warnings);
+		errors.addAll(this.errors);
+	}
+
+	private static int resolve(int[] local, int handle) {
+		if (handle >= 0)
+			return local[handle];
+		return -handle - 1;
+	}
+}
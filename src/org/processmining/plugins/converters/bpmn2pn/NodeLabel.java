@@ -0,0 +1,80 @@
+package org.processmining.plugins.converters.bpmn2pn;
+
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.LabelValue;
+
+/**
+ * Label of a Petri net node generated by {@link BPMN2PetriNetConverter},
+ * stored as its parts (labels of the BPMN elements, suffixes) and the prefixes
+ * telling which construct the node belongs to. The label string is only built
+ * when the label is first read, and then kept.
+ */
+final class NodeLabel implements CharSequence {
+
+	private final LabelValue labelWith;
+	private final String bpmnPrefix;
+	private final String pnPrefix;
+	private final boolean isActivity;
+	private final String[] parts;
+
+	// the built label, like String.hash a race only builds it more than once
+	private String label;
+
+	/**
+	 * @param labelWith
+	 *            which prefixes to put in front of the parts
+	 * @param bpmnPrefix
+	 * @param pnPrefix
+	 * @param isActivity
+	 * @param parts
+	 *            parts of the label, joined by '_'
+	 */
+	NodeLabel(LabelValue labelWith, String bpmnPrefix, String pnPrefix, boolean isActivity, String... parts) {
+		this.labelWith = labelWith;
+		this.bpmnPrefix = bpmnPrefix;
+		this.pnPrefix = pnPrefix;
+		this.isActivity = isActivity;
+		this.parts = parts;
+	}
+
+	public String toString() {
+		if (label == null)
+			label = buildLabel();
+		return label;
+	}
+
+	private String buildLabel() {
+		StringBuilder label = new StringBuilder();
+		switch (labelWith) {
+			case ORIGINAL_LABEL :
+				break;
+			case PREFIX_NONTASK_BY_BPMN_TYPE :
+				if (!isActivity)
+					label.append(bpmnPrefix).append('_');
+				break;
+			case PREFIX_ALL_BY_BPMN_TYPE :
+				label.append(bpmnPrefix).append('_');
+				break;
+			case PREFIX_ALL_BY_PN_BPMN_TYPE :
+				label.append(pnPrefix).append('_').append(bpmnPrefix).append('_');
+				break;
+		}
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0)
+				label.append('_');
+			label.append(parts[i]);
+		}
+		return label.toString();
+	}
+
+	public int length() {
+		return toString().length();
+	}
+
+	public char charAt(int index) {
+		return toString().charAt(index);
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+}
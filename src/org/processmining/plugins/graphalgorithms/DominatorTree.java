@@ -0,0 +1,431 @@
+package org.processmining.plugins.graphalgorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.DirectedGraph;
+import org.processmining.models.graphbased.directed.DirectedGraphEdge;
+import org.processmining.models.graphbased.directed.DirectedGraphNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.DataAssociation;
+
+/**
+ * Immediate dominators (or post-dominators) of the nodes of a directed graph,
+ * computed over int-indexed nodes with the algorithm of Cooper, Harvey and
+ * Kennedy, "A Simple, Fast Dominance Algorithm". Only the given nodes and the
+ * edges between them are considered; data associations are ignored.
+ *
+ * The tree is numbered in preorder, so {@link #dominates(DirectedGraphNode,
+ * DirectedGraphNode)} takes constant time, and the children and descendants of
+ * a node are iterated without collecting them. Nodes which are not reachable
+ * from the root have no immediate dominator and are not in the tree. The graph
+ * should not be changed while the tree is used.
+ *
+ * @param <N>
+ *            type of the nodes
+ */
+public class DominatorTree<N extends DirectedGraphNode> {
+
+	// Indexed nodes
+	private final List<N> nodes = new ArrayList<N>();
+	private final Map<N, Integer> nodeIds = new HashMap<N, Integer>();
+
+	private int root = -1;
+
+	// Immediate dominator of each node, the root for the root and -1 for unreachable nodes
+	private int[] immediateDominators;
+
+	// Children of each node in the tree as linked lists, -1 terminates a list
+	private int[] firstChildren;
+	private int[] nextSiblings;
+
+	// Preorder number of each node in the tree (-1 for unreachable nodes), the
+	// last preorder number in its subtree, and the node with each number
+	private int[] preorderNumbers;
+	private int[] lastDescendants;
+	private int[] preorder;
+
+	/**
+	 * @param graph
+	 * @param root
+	 *            start node for dominators, end node for post-dominators
+	 * @param nodes
+	 *            nodes to be considered, including the root
+	 * @param inversive
+	 *            - true for determining post-dominators
+	 */
+	public DominatorTree(DirectedGraph<?, ?> graph, N root, Collection<? extends N> nodes, boolean inversive) {
+		for (N node : nodes) {
+			if (!nodeIds.containsKey(node)) {
+				nodeIds.put(node, this.nodes.size());
+				this.nodes.add(node);
+			}
+		}
+		Integer rootId = nodeIds.get(root);
+		if (rootId != null) {
+			this.root = rootId;
+		}
+		computeImmediateDominators(collectSuccessors(graph, inversive));
+		numberTree();
+	}
+
+	/**
+	 * @return the root, or null if it is not one of the considered nodes
+	 */
+	public N getRoot() {
+		return (root != -1) ? nodes.get(root) : null;
+	}
+
+	/**
+	 * @return considered nodes
+	 */
+	public List<N> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @param node
+	 * @return whether the node is considered and reachable from the root
+	 */
+	public boolean isReachable(N node) {
+		Integer id = nodeIds.get(node);
+		return (id != null) && (immediateDominators[id] != -1);
+	}
+
+	/**
+	 * @param node
+	 * @return immediate dominator, null for the root and for nodes which are
+	 *         not reachable
+	 */
+	public N getImmediateDominator(N node) {
+		Integer id = nodeIds.get(node);
+		if ((id == null) || (id == root) || (immediateDominators[id] == -1)) {
+			return null;
+		}
+		return nodes.get(immediateDominators[id]);
+	}
+
+	/**
+	 * @param node
+	 * @return the node and all its dominators, empty for nodes which are not
+	 *         reachable
+	 */
+	public Set<N> getDominators(N node) {
+		Set<N> dominators = new HashSet<N>();
+		Integer id = nodeIds.get(node);
+		if ((id != null) && (immediateDominators[id] != -1)) {
+			int dominator = id;
+			dominators.add(nodes.get(dominator));
+			while (dominator != root) {
+				dominator = immediateDominators[dominator];
+				dominators.add(nodes.get(dominator));
+			}
+		}
+		return dominators;
+	}
+
+	/**
+	 * Check in constant time whether the first node dominates the second one;
+	 * every node of the tree dominates itself
+	 * 
+	 * @param dominator
+	 * @param node
+	 * @return false if one of the nodes is not reachable
+	 */
+	public boolean dominates(N dominator, N node) {
+		Integer dominatorId = nodeIds.get(dominator);
+		Integer id = nodeIds.get(node);
+		if ((dominatorId == null) || (id == null) || (preorderNumbers[dominatorId] == -1)
+				|| (preorderNumbers[id] == -1)) {
+			return false;
+		}
+		return dominates(dominatorId, id);
+	}
+
+	private boolean dominates(int dominator, int node) {
+		return (preorderNumbers[dominator] <= preorderNumbers[node])
+				&& (preorderNumbers[node] <= lastDescendants[dominator]);
+	}
+
+	/**
+	 * @param innerNodes
+	 * @return the nearest node which dominates all reachable nodes of the
+	 *         collection, null if there is no such node
+	 */
+	public N getNearestCommonDominator(Collection<? extends N> innerNodes) {
+		int common = -1;
+		for (N node : innerNodes) {
+			Integer id = nodeIds.get(node);
+			if ((id == null) || (preorderNumbers[id] == -1)) {
+				continue;
+			}
+			if (common == -1) {
+				common = id;
+			}
+			while (!dominates(common, id)) {
+				common = immediateDominators[common];
+			}
+		}
+		return (common != -1) ? nodes.get(common) : null;
+	}
+
+	/**
+	 * @param node
+	 * @return nodes immediately dominated by the node, iterated lazily
+	 */
+	public Iterable<N> getChildren(N node) {
+		Integer id = nodeIds.get(node);
+		final int firstChild = (id != null) ? firstChildren[id] : -1;
+		return new Iterable<N>() {
+			public Iterator<N> iterator() {
+				return new Iterator<N>() {
+					private int next = firstChild;
+
+					public boolean hasNext() {
+						return next != -1;
+					}
+
+					public N next() {
+						if (next == -1) {
+							throw new NoSuchElementException();
+						}
+						N child = nodes.get(next);
+						next = nextSiblings[next];
+						return child;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * @param node
+	 * @return nodes strictly dominated by the node, iterated lazily in
+	 *         preorder
+	 */
+	public Iterable<N> getDescendants(N node) {
+		Integer id = nodeIds.get(node);
+		final int first = ((id != null) && (preorderNumbers[id] != -1)) ? preorderNumbers[id] + 1 : 0;
+		final int last = ((id != null) && (preorderNumbers[id] != -1)) ? lastDescendants[id] : -1;
+		return new Iterable<N>() {
+			public Iterator<N> iterator() {
+				return new Iterator<N>() {
+					private int next = first;
+
+					public boolean hasNext() {
+						return next <= last;
+					}
+
+					public N next() {
+						if (next > last) {
+							throw new NoSuchElementException();
+						}
+						return nodes.get(preorder[next++]);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * @param node
+	 * @return number of the node in the preorder of the tree, -1 if the node is
+	 *         not reachable; the descendants of the node directly follow it
+	 */
+	public int getPreorderNumber(N node) {
+		Integer id = nodeIds.get(node);
+		return (id != null) ? preorderNumbers[id] : -1;
+	}
+
+	/**
+	 * @param node
+	 * @return number of nodes strictly dominated by the node
+	 */
+	public int getDescendantCount(N node) {
+		Integer id = nodeIds.get(node);
+		if ((id == null) || (preorderNumbers[id] == -1)) {
+			return 0;
+		}
+		return lastDescendants[id] - preorderNumbers[id];
+	}
+
+	/**
+	 * Successors of each node, predecessors if inversive
+	 */
+	private int[][] collectSuccessors(DirectedGraph<?, ?> graph, boolean inversive) {
+		int[][] successors = new int[nodes.size()][];
+		int[] buffer = new int[16];
+		for (int id = 0; id < nodes.size(); id++) {
+			Collection<? extends DirectedGraphEdge<?, ?>> edges = inversive ? graph.getInEdges(nodes.get(id))
+					: graph.getOutEdges(nodes.get(id));
+			int count = 0;
+			for (DirectedGraphEdge<?, ?> edge : edges) {
+				if (edge instanceof DataAssociation) {
+					continue;
+				}
+				Integer successor = nodeIds.get(inversive ? edge.getSource() : edge.getTarget());
+				if (successor != null) {
+					if (count == buffer.length) {
+						buffer = Arrays.copyOf(buffer, 2 * count);
+					}
+					buffer[count++] = successor;
+				}
+			}
+			successors[id] = Arrays.copyOf(buffer, count);
+		}
+		return successors;
+	}
+
+	private void computeImmediateDominators(int[][] successors) {
+		int n = nodes.size();
+		immediateDominators = new int[n];
+		Arrays.fill(immediateDominators, -1);
+		if (root == -1) {
+			return;
+		}
+
+		// Postorder numbers of a depth-first search from the root, without recursion
+		int[] postorderNumbers = new int[n];
+		Arrays.fill(postorderNumbers, -1);
+		int[] postorder = new int[n];
+		int reachable = 0;
+		boolean[] visited = new boolean[n];
+		int[] stack = new int[n];
+		int[] nextSuccessor = new int[n];
+		int stackSize = 0;
+		stack[stackSize++] = root;
+		visited[root] = true;
+		while (stackSize > 0) {
+			int v = stack[stackSize - 1];
+			if (nextSuccessor[v] < successors[v].length) {
+				int w = successors[v][nextSuccessor[v]++];
+				if (!visited[w]) {
+					visited[w] = true;
+					stack[stackSize++] = w;
+				}
+			} else {
+				stackSize--;
+				postorderNumbers[v] = reachable;
+				postorder[reachable++] = v;
+			}
+		}
+
+		// Predecessors of the reachable nodes
+		int[] predecessorCounts = new int[n];
+		for (int i = 0; i < reachable; i++) {
+			for (int w : successors[postorder[i]]) {
+				predecessorCounts[w]++;
+			}
+		}
+		int[][] predecessors = new int[n][];
+		for (int v = 0; v < n; v++) {
+			predecessors[v] = new int[predecessorCounts[v]];
+			predecessorCounts[v] = 0;
+		}
+		for (int i = 0; i < reachable; i++) {
+			int v = postorder[i];
+			for (int w : successors[v]) {
+				predecessors[w][predecessorCounts[w]++] = v;
+			}
+		}
+
+		// Iterate in reverse postorder until the immediate dominators are stable
+		immediateDominators[root] = root;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = reachable - 2; i >= 0; i--) {
+				int v = postorder[i];
+				int newImmediateDominator = -1;
+				for (int p : predecessors[v]) {
+					if (immediateDominators[p] == -1) {
+						continue;
+					}
+					newImmediateDominator = (newImmediateDominator == -1) ? p : intersect(p,
+							newImmediateDominator, postorderNumbers);
+				}
+				if (immediateDominators[v] != newImmediateDominator) {
+					immediateDominators[v] = newImmediateDominator;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Link the children of each node and number the tree in preorder, without
+	 * recursion
+	 */
+	private void numberTree() {
+		int n = nodes.size();
+		firstChildren = new int[n];
+		nextSiblings = new int[n];
+		preorderNumbers = new int[n];
+		lastDescendants = new int[n];
+		Arrays.fill(firstChildren, -1);
+		Arrays.fill(preorderNumbers, -1);
+		for (int v = n - 1; v >= 0; v--) {
+			if ((v != root) && (immediateDominators[v] != -1)) {
+				nextSiblings[v] = firstChildren[immediateDominators[v]];
+				firstChildren[immediateDominators[v]] = v;
+			}
+		}
+
+		int reachable = 0;
+		int[] stack = new int[n];
+		int[] nextChild = new int[n];
+		preorder = new int[n];
+		if (root != -1) {
+			int stackSize = 0;
+			stack[stackSize++] = root;
+			preorderNumbers[root] = reachable;
+			preorder[reachable++] = root;
+			nextChild[root] = firstChildren[root];
+			while (stackSize > 0) {
+				int v = stack[stackSize - 1];
+				int child = nextChild[v];
+				if (child != -1) {
+					nextChild[v] = nextSiblings[child];
+					preorderNumbers[child] = reachable;
+					preorder[reachable++] = child;
+					nextChild[child] = firstChildren[child];
+					stack[stackSize++] = child;
+				} else {
+					stackSize--;
+					lastDescendants[v] = reachable - 1;
+				}
+			}
+		}
+		preorder = Arrays.copyOf(preorder, reachable);
+	}
+
+	/**
+	 * Nearest common dominator of two nodes in the current approximation
+	 */
+	private int intersect(int first, int second, int[] postorderNumbers) {
+		while (first != second) {
+			while (postorderNumbers[first] < postorderNumbers[second]) {
+				first = immediateDominators[first];
+			}
+			while (postorderNumbers[second] < postorderNumbers[first]) {
+				second = immediateDominators[second];
+			}
+		}
+		return first;
+	}
+}
@@ -0,0 +1,219 @@
+package org.processmining.plugins.graphalgorithms;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.ContainableDirectedGraphElement;
+import org.processmining.models.graphbased.directed.ContainingDirectedGraphNode;
+import org.processmining.models.graphbased.directed.DirectedGraph;
+import org.processmining.models.graphbased.directed.DirectedGraphNode;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Swimlane;
+
+/**
+ * Nodes of a graph partitioned by the element containing them, null for the
+ * nodes on the top level. The nodes of each container take a range of one
+ * array, so the nodes on a level are listed without scanning the graph.
+ * Swimlanes and nodes which cannot be contained are not in the partition.
+ *
+ * The partition is built once per graph and has to be updated when nodes
+ * are added to the graph or moved to another container, e.g. to a new
+ * subprocess.
+ *
+ * @param <N>
+ *            type of the nodes
+ */
+public class NodePartition<N extends DirectedGraphNode> {
+
+	/**
+	 * Range of the array taken by the nodes of a container
+	 */
+	private static class Range {
+		private int start;
+		private int size;
+		private int capacity;
+	}
+
+	// Nodes of all containers, with unused slots after moving ranges
+	private final List<N> members = new ArrayList<N>();
+	private int unusedSlots = 0;
+
+	private final Map<ContainingDirectedGraphNode, Range> ranges = new HashMap<ContainingDirectedGraphNode, Range>();
+	private final Map<N, ContainingDirectedGraphNode> containers = new HashMap<N, ContainingDirectedGraphNode>();
+	private final Map<N, Integer> positions = new HashMap<N, Integer>();
+
+	public NodePartition(DirectedGraph<? extends N, ?> graph) {
+		for (N node : graph.getNodes()) {
+			if (isPartitioned(node)) {
+				containers.put(node, getContainer(node));
+			}
+		}
+		buildRanges();
+	}
+
+	/**
+	 * @param container
+	 *            containing element, null for the top level
+	 * @return nodes directly contained in the element; the list reflects later
+	 *         updates of the partition
+	 */
+	public List<N> getNodes(final ContainingDirectedGraphNode container) {
+		return new AbstractList<N>() {
+			public N get(int index) {
+				Range range = ranges.get(container);
+				if ((range == null) || (index < 0) || (index >= range.size)) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+				}
+				return members.get(range.start + index);
+			}
+
+			public int size() {
+				Range range = ranges.get(container);
+				return (range != null) ? range.size : 0;
+			}
+		};
+	}
+
+	/**
+	 * Add a node to the range of the element containing it
+	 *
+	 * @param node
+	 */
+	public void addNode(N node) {
+		if (isPartitioned(node) && !containers.containsKey(node)) {
+			append(Collections.singletonList(node), getContainer(node));
+		}
+	}
+
+	/**
+	 * Move nodes to the range of another container, after the nodes are moved
+	 * in the graph; nodes which are not in the partition are added
+	 *
+	 * @param nodes
+	 * @param container
+	 */
+	public void moveNodes(Collection<? extends N> nodes, ContainingDirectedGraphNode container) {
+		Set<N> movedNodes = new LinkedHashSet<N>();
+		for (N node : nodes) {
+			if (!isPartitioned(node) || (containers.containsKey(node) && (containers.get(node) == container))) {
+				continue;
+			}
+			if (containers.containsKey(node)) {
+				remove(node);
+			}
+			movedNodes.add(node);
+		}
+		append(movedNodes, container);
+	}
+
+	/**
+	 * The element containing a node, as the nodes on the level of a
+	 * subprocess are determined
+	 */
+	private ContainingDirectedGraphNode getContainer(N node) {
+		if (node instanceof BPMNNode) {
+			return ((BPMNNode) node).getParentSubProcess();
+		}
+		return ((ContainableDirectedGraphElement) node).getParent();
+	}
+
+	private boolean isPartitioned(N node) {
+		// swimlanes are containable, but are not nodes on a level of the process
+		return (node instanceof ContainableDirectedGraphElement) && !(node instanceof Swimlane);
+	}
+
+	/**
+	 * Lay out the ranges of all containers without unused slots
+	 */
+	private void buildRanges() {
+		Map<ContainingDirectedGraphNode, List<N>> nodesByContainer = new LinkedHashMap<ContainingDirectedGraphNode, List<N>>();
+		for (Map.Entry<N, ContainingDirectedGraphNode> entry : containers.entrySet()) {
+			List<N> containerNodes = nodesByContainer.get(entry.getValue());
+			if (containerNodes == null) {
+				containerNodes = new ArrayList<N>();
+				nodesByContainer.put(entry.getValue(), containerNodes);
+			}
+			containerNodes.add(entry.getKey());
+		}
+		members.clear();
+		ranges.clear();
+		unusedSlots = 0;
+		for (Map.Entry<ContainingDirectedGraphNode, List<N>> entry : nodesByContainer.entrySet()) {
+			Range range = new Range();
+			range.start = members.size();
+			range.size = entry.getValue().size();
+			range.capacity = range.size;
+			ranges.put(entry.getKey(), range);
+			for (N node : entry.getValue()) {
+				positions.put(node, members.size());
+				members.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Remove a node from its range, the last node of the range takes its slot
+	 */
+	private void remove(N node) {
+		Range range = ranges.get(containers.remove(node));
+		int position = positions.remove(node);
+		int last = range.start + range.size - 1;
+		if (position != last) {
+			N lastNode = members.get(last);
+			members.set(position, lastNode);
+			positions.put(lastNode, position);
+		}
+		members.set(last, null);
+		range.size--;
+	}
+
+	/**
+	 * Append nodes to the range of a container; a range which cannot grow in
+	 * place is moved to the end of the array
+	 */
+	private void append(Collection<N> nodes, ContainingDirectedGraphNode container) {
+		if (nodes.isEmpty()) {
+			return;
+		}
+		Range range = ranges.get(container);
+		if (range == null) {
+			range = new Range();
+			range.start = members.size();
+			ranges.put(container, range);
+		} else if ((range.size + nodes.size() > range.capacity) && (range.start + range.capacity != members.size())) {
+			int start = members.size();
+			for (int i = 0; i < range.size; i++) {
+				N node = members.get(range.start + i);
+				positions.put(node, members.size());
+				members.add(node);
+				members.set(range.start + i, null);
+			}
+			unusedSlots += range.capacity;
+			range.start = start;
+			range.capacity = range.size;
+		}
+		for (N node : nodes) {
+			int position = range.start + range.size;
+			if (position == members.size()) {
+				members.add(node);
+				range.capacity++;
+			} else {
+				members.set(position, node);
+			}
+			positions.put(node, position);
+			containers.put(node, container);
+			range.size++;
+		}
+		if (unusedSlots > members.size() / 2) {
+			buildRanges();
+		}
+	}
+}
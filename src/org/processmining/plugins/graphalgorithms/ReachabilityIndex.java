@@ -0,0 +1,241 @@
+package org.processmining.plugins.graphalgorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.processmining.models.graphbased.directed.DirectedGraph;
+import org.processmining.models.graphbased.directed.DirectedGraphEdge;
+import org.processmining.models.graphbased.directed.DirectedGraphNode;
+
+/**
+ * Reachability between the nodes of a directed graph. The strongly connected
+ * components of the graph are condensed to a DAG, and for each component the
+ * set of components reachable from it is stored as a bitset, so
+ * {@link #reaches(DirectedGraphNode, DirectedGraphNode)} takes constant time.
+ * Construction takes O(C*E/64) time and the bitsets take O(C^2/8) bytes, where
+ * C is the number of components.
+ *
+ * The graph should not be changed while the index is used.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class ReachabilityIndex {
+
+	// Indexed nodes and the successors of each node
+	private final List<DirectedGraphNode> nodes = new ArrayList<DirectedGraphNode>();
+	private final Map<DirectedGraphNode, Integer> nodeIds = new HashMap<DirectedGraphNode, Integer>();
+	private final List<int[]> successors = new ArrayList<int[]>();
+
+	// Component of each node, nodes of each component, components reachable from each component
+	private int[] componentOf;
+	private int[][] componentNodes;
+	private BitSet[] reachableComponents;
+
+	/**
+	 * Index all nodes of the graph
+	 *
+	 * @param graph
+	 */
+	public ReachabilityIndex(DirectedGraph graph) {
+		this(graph, (Collection<DirectedGraphNode>) graph.getNodes());
+	}
+
+	/**
+	 * Index the nodes reachable from the start node, including the start node
+	 *
+	 * @param graph
+	 * @param startNode
+	 */
+	public ReachabilityIndex(DirectedGraph graph, DirectedGraphNode startNode) {
+		this(graph, (startNode != null) ? Collections.singleton(startNode) : Collections.<DirectedGraphNode>emptySet());
+	}
+
+	private ReachabilityIndex(DirectedGraph graph, Collection<DirectedGraphNode> startNodes) {
+		collectNodes(graph, startNodes);
+		computeComponents();
+		computeReachableComponents();
+	}
+
+	/**
+	 * @param source
+	 * @param target
+	 * @return whether there is a non-empty path from source to target; false
+	 *         if one of the nodes is not indexed
+	 */
+	public boolean reaches(DirectedGraphNode source, DirectedGraphNode target) {
+		Integer sourceId = nodeIds.get(source);
+		Integer targetId = nodeIds.get(target);
+		if ((sourceId == null) || (targetId == null)) {
+			return false;
+		}
+		return reachableComponents[componentOf[sourceId]].get(componentOf[targetId]);
+	}
+
+	/**
+	 * @param node
+	 * @return nodes reachable by a non-empty path from the node, empty if the
+	 *         node is not indexed
+	 */
+	public Set<DirectedGraphNode> getDescendants(DirectedGraphNode node) {
+		Set<DirectedGraphNode> descendants = new HashSet<DirectedGraphNode>();
+		Integer nodeId = nodeIds.get(node);
+		if (nodeId != null) {
+			BitSet reachable = reachableComponents[componentOf[nodeId]];
+			for (int c = reachable.nextSetBit(0); c >= 0; c = reachable.nextSetBit(c + 1)) {
+				for (int descendant : componentNodes[c]) {
+					descendants.add(nodes.get(descendant));
+				}
+			}
+		}
+		return descendants;
+	}
+
+	/**
+	 * @param node
+	 * @return whether the node is indexed
+	 */
+	public boolean contains(DirectedGraphNode node) {
+		return nodeIds.containsKey(node);
+	}
+
+	/**
+	 * @return number of strongly connected components of the indexed nodes
+	 */
+	public int getComponentCount() {
+		return componentNodes.length;
+	}
+
+	/**
+	 * Collect the nodes reachable from the start nodes with their successors,
+	 * in breadth-first order
+	 */
+	private void collectNodes(DirectedGraph graph, Collection<DirectedGraphNode> startNodes) {
+		for (DirectedGraphNode startNode : startNodes) {
+			getNodeId(startNode);
+		}
+		for (int id = 0; id < nodes.size(); id++) {
+			Collection outEdges = graph.getOutEdges(nodes.get(id));
+			int[] nodeSuccessors = new int[outEdges.size()];
+			int i = 0;
+			for (Object outEdge : outEdges) {
+				nodeSuccessors[i++] = getNodeId((DirectedGraphNode) ((DirectedGraphEdge) outEdge).getTarget());
+			}
+			successors.add(nodeSuccessors);
+		}
+	}
+
+	private int getNodeId(DirectedGraphNode node) {
+		Integer id = nodeIds.get(node);
+		if (id == null) {
+			id = nodes.size();
+			nodes.add(node);
+			nodeIds.put(node, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Tarjan's algorithm without recursion; the components are numbered in
+	 * reverse topological order, i.e., successors of a component have smaller
+	 * numbers
+	 */
+	private void computeComponents() {
+		int n = nodes.size();
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		Arrays.fill(index, -1);
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] callStack = new int[n];
+		int[] nextSuccessor = new int[n];
+		int callStackSize = 0;
+		int counter = 0;
+		int components = 0;
+		componentOf = new int[n];
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			index[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			callStack[callStackSize++] = root;
+			while (callStackSize > 0) {
+				int v = callStack[callStackSize - 1];
+				int[] vSuccessors = successors.get(v);
+				if (nextSuccessor[v] < vSuccessors.length) {
+					int w = vSuccessors[nextSuccessor[v]++];
+					if (index[w] == -1) {
+						index[w] = lowLink[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						callStack[callStackSize++] = w;
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+				} else {
+					callStackSize--;
+					if (callStackSize > 0) {
+						int u = callStack[callStackSize - 1];
+						lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+					}
+					if (lowLink[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--stackSize];
+							onStack[w] = false;
+							componentOf[w] = components;
+						} while (w != v);
+						components++;
+					}
+				}
+			}
+		}
+
+		int[] componentSizes = new int[components];
+		for (int v = 0; v < n; v++) {
+			componentSizes[componentOf[v]]++;
+		}
+		componentNodes = new int[components][];
+		for (int c = 0; c < components; c++) {
+			componentNodes[c] = new int[componentSizes[c]];
+			componentSizes[c] = 0;
+		}
+		for (int v = 0; v < n; v++) {
+			int c = componentOf[v];
+			componentNodes[c][componentSizes[c]++] = v;
+		}
+	}
+
+	/**
+	 * Transitive closure of the condensation, from the sink components
+	 * upwards; a component reaches itself if it contains a cycle
+	 */
+	private void computeReachableComponents() {
+		reachableComponents = new BitSet[componentNodes.length];
+		for (int c = 0; c < componentNodes.length; c++) {
+			BitSet reachable = new BitSet(c + 1);
+			for (int v : componentNodes[c]) {
+				for (int w : successors.get(v)) {
+					int d = componentOf[w];
+					if (d == c) {
+						reachable.set(c);
+					} else if (!reachable.get(d)) {
+						reachable.set(d);
+						reachable.or(reachableComponents[d]);
+					}
+				}
+			}
+			reachableComponents[c] = reachable;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package org.processmining.plugins.graphalgorithms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.processmining.models.graphbased.directed.DirectedGraphNode;
+
+/**
+ * Single-entry single-exit regions of a graph and their nesting. A region is
+ * bordered by an entry and an exit node such that the nodes dominated by the
+ * entry are the nodes post-dominated by the exit; nodes which are not
+ * reachable from the start node or cannot reach the end node are counted in
+ * every region, but do not border regions.
+ *
+ * All regions are found in one pass over the post-dominator tree: the only
+ * possible exit of an entry is the post-dominator of the entry with a matching
+ * number of post-dominated nodes, and the regions are compared by the range of
+ * post-dominator tree numbers the nodes dominated by the entry take. This
+ * takes O(V*log(V)) time after the dominator trees are built.
+ *
+ * @param <N>
+ *            type of the nodes
+ */
+public class SESERegionTree<N extends DirectedGraphNode> {
+
+	// Exit of each region, by entry, and the entry of the enclosing region
+	private final Map<N, N> exits = new LinkedHashMap<N, N>();
+	private final Map<N, N> enclosingEntries = new HashMap<N, N>();
+	private final Map<N, List<N>> nestedEntries = new HashMap<N, List<N>>();
+
+	/**
+	 * @param dominatorTree
+	 * @param postDominatorTree
+	 *            post-dominator tree over the same nodes
+	 */
+	public SESERegionTree(DominatorTree<N> dominatorTree, DominatorTree<N> postDominatorTree) {
+		N start = dominatorTree.getRoot();
+		N end = postDominatorTree.getRoot();
+		if ((start == null) || (end == null)) {
+			return;
+		}
+		Map<N, N> regions = findRegions(dominatorTree, postDominatorTree);
+		nestRegions(dominatorTree, regions);
+	}
+
+	/**
+	 * @return entries of all regions, an enclosing region before the regions
+	 *         nested into it
+	 */
+	public List<N> getEntries() {
+		return new ArrayList<N>(exits.keySet());
+	}
+
+	/**
+	 * @return exit of each region, by entry
+	 */
+	public Map<N, N> getBorders() {
+		return new HashMap<N, N>(exits);
+	}
+
+	/**
+	 * @param entry
+	 * @return exit of the region, null if the node is not an entry
+	 */
+	public N getExit(N entry) {
+		return exits.get(entry);
+	}
+
+	/**
+	 * @param entry
+	 * @return entry of the nearest enclosing region, null for outermost regions
+	 */
+	public N getEnclosingEntry(N entry) {
+		return enclosingEntries.get(entry);
+	}
+
+	/**
+	 * @param entry
+	 * @return entries of the regions directly nested into the region
+	 */
+	public List<N> getNestedEntries(N entry) {
+		List<N> nested = nestedEntries.get(entry);
+		return (nested != null) ? Collections.unmodifiableList(nested) : Collections.<N>emptyList();
+	}
+
+	/**
+	 * Find the exit of each entry, walking the post-dominator tree in preorder
+	 * with the path from the root
+	 */
+	private Map<N, N> findRegions(DominatorTree<N> dominatorTree, DominatorTree<N> postDominatorTree) {
+		Map<N, N> regions = new HashMap<N, N>();
+		int nodes = dominatorTree.getNodes().size();
+		int notReachable = nodes - dominatorTree.getDescendantCount(dominatorTree.getRoot()) - 1;
+		int notReachingEnd = nodes - postDominatorTree.getDescendantCount(postDominatorTree.getRoot()) - 1;
+
+		// Nodes which are not reachable have to be in the region too
+		int notReachableMin = Integer.MAX_VALUE;
+		int notReachableMax = Integer.MIN_VALUE;
+		for (N node : dominatorTree.getNodes()) {
+			int number = postDominatorTree.getPreorderNumber(node);
+			if (!dominatorTree.isReachable(node) && (number != -1)) {
+				notReachableMin = Math.min(notReachableMin, number);
+				notReachableMax = Math.max(notReachableMax, number);
+			}
+		}
+		Map<N, int[]> postNumberRanges = collectPostNumberRanges(dominatorTree, postDominatorTree);
+
+		List<N> path = new ArrayList<N>();
+		List<Integer> pathSizes = new ArrayList<Integer>();
+		for (N node : preorder(postDominatorTree)) {
+			N parent = postDominatorTree.getImmediateDominator(node);
+			while (!path.isEmpty() && (path.get(path.size() - 1) != parent)) {
+				path.remove(path.size() - 1);
+				pathSizes.remove(pathSizes.size() - 1);
+			}
+			path.add(node);
+			pathSizes.add(postDominatorTree.getDescendantCount(node) + 1);
+
+			if (!dominatorTree.isReachable(node)) {
+				continue;
+			}
+			int size = dominatorTree.getDescendantCount(node) + 1 + notReachable - notReachingEnd;
+			int exitIndex = findSize(pathSizes, size);
+			if (exitIndex == -1) {
+				continue;
+			}
+			N exit = path.get(exitIndex);
+			int first = postDominatorTree.getPreorderNumber(exit);
+			int last = first + size - 1;
+			int[] range = postNumberRanges.get(node);
+			if ((range[0] >= first) && (range[1] <= last)
+					&& ((notReachableMin == Integer.MAX_VALUE) || ((notReachableMin >= first) && (notReachableMax <= last)))) {
+				regions.put(node, exit);
+			}
+		}
+		return regions;
+	}
+
+	/**
+	 * Range of post-dominator tree numbers of the nodes dominated by each
+	 * node, collected from the leaves of the dominator tree upwards
+	 */
+	private Map<N, int[]> collectPostNumberRanges(DominatorTree<N> dominatorTree, DominatorTree<N> postDominatorTree) {
+		Map<N, int[]> ranges = new HashMap<N, int[]>();
+		List<N> nodes = preorder(dominatorTree);
+		for (N node : nodes) {
+			ranges.put(node, new int[] { Integer.MAX_VALUE, Integer.MIN_VALUE });
+		}
+		for (int i = nodes.size() - 1; i >= 0; i--) {
+			N node = nodes.get(i);
+			int[] range = ranges.get(node);
+			int number = postDominatorTree.getPreorderNumber(node);
+			if (number != -1) {
+				range[0] = Math.min(range[0], number);
+				range[1] = Math.max(range[1], number);
+			}
+			N parent = dominatorTree.getImmediateDominator(node);
+			if (parent != null) {
+				int[] parentRange = ranges.get(parent);
+				parentRange[0] = Math.min(parentRange[0], range[0]);
+				parentRange[1] = Math.max(parentRange[1], range[1]);
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Order the regions by the dominator tree and link each to the nearest
+	 * enclosing region
+	 */
+	private void nestRegions(DominatorTree<N> dominatorTree, Map<N, N> regions) {
+		Map<N, N> nearestEntries = new HashMap<N, N>();
+		for (N node : preorder(dominatorTree)) {
+			N parent = dominatorTree.getImmediateDominator(node);
+			N enclosingEntry = null;
+			if (parent != null) {
+				enclosingEntry = regions.containsKey(parent) ? parent : nearestEntries.get(parent);
+			}
+			if (enclosingEntry != null) {
+				nearestEntries.put(node, enclosingEntry);
+			}
+			if (regions.containsKey(node)) {
+				exits.put(node, regions.get(node));
+				if (enclosingEntry != null) {
+					enclosingEntries.put(node, enclosingEntry);
+					List<N> nested = nestedEntries.get(enclosingEntry);
+					if (nested == null) {
+						nested = new ArrayList<N>();
+						nestedEntries.put(enclosingEntry, nested);
+					}
+					nested.add(node);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Index of the path node with the given number of descendants; the
+	 * numbers decrease along the path
+	 */
+	private int findSize(List<Integer> pathSizes, int size) {
+		int low = 0;
+		int high = pathSizes.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleSize = pathSizes.get(middle);
+			if (middleSize == size) {
+				return middle;
+			} else if (middleSize > size) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return -1;
+	}
+
+	private List<N> preorder(DominatorTree<N> tree) {
+		List<N> nodes = new ArrayList<N>();
+		nodes.add(tree.getRoot());
+		for (N node : tree.getDescendants(tree.getRoot())) {
+			nodes.add(node);
+		}
+		return nodes;
+	}
+}
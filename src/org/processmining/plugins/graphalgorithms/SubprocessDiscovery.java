@@ -1,7 +1,7 @@
 package org.processmining.plugins.graphalgorithms;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,9 +13,7 @@ import org.processmining.models.graphbased.directed.AbstractDirectedGraphNode;
 import org.processmining.models.graphbased.directed.ContainableDirectedGraphElement;
 import org.processmining.models.graphbased.directed.ContainingDirectedGraphNode;
 import org.processmining.models.graphbased.directed.DirectedGraph;
-import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
 import org.processmining.models.graphbased.directed.bpmn.elements.DataAssociation;
-import org.processmining.models.graphbased.directed.bpmn.elements.Swimlane;
 
 /**
  * Discovering dominators, post-dominators and enclosing subprocess for graph nodes
@@ -48,28 +46,51 @@ public class SubprocessDiscovery {
 	private AbstractDirectedGraphNode endNode;
 	
 	/**
-	 * Dominators for all diagram nodes
+	 * Dominators for all diagram nodes, collected on demand
 	 */
 	private Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> dominators;
 	
+	/**
+	 * The map takes memory quadratic in the number of nodes, the dominator
+	 * tree should be queried instead
+	 */
 	public Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> getDominators() {
+		if (dominators == null) {
+			dominators = collectDominators(dominatorTree);
+		}
 		return dominators;
 	}
 
 	/**
-	 * Post-dominators for all diagram nodes
+	 * Post-dominators for all diagram nodes, collected on demand
 	 */
 	private Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> postDominators;
 	
+	/**
+	 * The map takes memory quadratic in the number of nodes, the
+	 * post-dominator tree should be queried instead
+	 */
 	public Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> getPostDominators() {
+		if (postDominators == null) {
+			postDominators = collectDominators(postDominatorTree);
+		}
 		return postDominators;
 	}
 
 	/**
-	 * Tree of dominators (specifies children for each node)
+	 * Tree of dominators (specifies children for each node), collected on demand
 	 */
 	private Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> treeOfDominators;
 	
+	/**
+	 * Single-entry single-exit regions, the borders of candidate subprocesses
+	 */
+	private SESERegionTree<AbstractDirectedGraphNode> regionTree;
+	
+	public SESERegionTree<AbstractDirectedGraphNode> getRegionTree() {
+		return regionTree;
+	}
+
 	private Map<AbstractDirectedGraphNode, AbstractDirectedGraphNode> subProcessBorders;
 	
 	public Map<AbstractDirectedGraphNode, AbstractDirectedGraphNode> getSubProcessBorders() {
@@ -77,35 +98,76 @@ public class SubprocessDiscovery {
 	}
 
 	public Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> getTreeOfDominators() {
+		if (treeOfDominators == null) {
+			treeOfDominators = constructTree(getDominators());
+		}
 		return treeOfDominators;
 	}
 
 	public Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> getTreeOfPostDominators() {
+		if (treeOfPostDominators == null) {
+			treeOfPostDominators = constructTree(getPostDominators());
+		}
 		return treeOfPostDominators;
 	}
 
 	/**
-	 * Tree of post-dominators (specifies children for each node)
+	 * Tree of post-dominators (specifies children for each node), collected on demand
 	 */
 	private Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> treeOfPostDominators;
+
+	/**
+	 * Immediate dominators and post-dominators of the nodes on the level;
+	 * dominance is checked in constant time
+	 */
+	private DominatorTree<AbstractDirectedGraphNode> dominatorTree;
+	
+	private DominatorTree<AbstractDirectedGraphNode> postDominatorTree;
+	
+	/**
+	 * Nodes on the same level as the start node
+	 */
+	private List<AbstractDirectedGraphNode> nodesOnTheLevel;
+	
+	public DominatorTree<AbstractDirectedGraphNode> getDominatorTree() {
+		return dominatorTree;
+	}
+
+	public DominatorTree<AbstractDirectedGraphNode> getPostDominatorTree() {
+		return postDominatorTree;
+	}
 	
+	/**
+	 * Discover subprocesses on the level of the parent element, taking the
+	 * nodes on the level from a partition of the graph nodes, which can be
+	 * shared by discoveries on different levels
+	 */
 	public SubprocessDiscovery(DirectedGraph<? extends AbstractDirectedGraphNode, 
 			? extends AbstractDirectedGraphEdge<?,?>> directedGraph, AbstractDirectedGraphNode startNode,
-			AbstractDirectedGraphNode endNode, ContainingDirectedGraphNode parentElement) {
-		
-		System.out.println("Parent element " + parentElement);
+			AbstractDirectedGraphNode endNode, ContainingDirectedGraphNode parentElement,
+			NodePartition<AbstractDirectedGraphNode> nodePartition) {
 		this.parentElement = parentElement;
 		this.graph = directedGraph;
 		this.startNode = startNode;
 		this.endNode = endNode;
-		this.dominators = determineDominatorsForGraphNodes(false);
-		this.postDominators = determineDominatorsForGraphNodes(true);
-		this.treeOfDominators = constructTree(dominators);
-		this.treeOfPostDominators = constructTree(postDominators);
-		this.subProcessBorders = constrctSubProcBorders();
+		this.nodesOnTheLevel = new ArrayList<AbstractDirectedGraphNode>(nodePartition.getNodes(parentElement));
+		this.dominatorTree = new DominatorTree<AbstractDirectedGraphNode>(directedGraph, startNode,
+				nodesOnTheLevel, false);
+		this.postDominatorTree = new DominatorTree<AbstractDirectedGraphNode>(directedGraph, endNode,
+				nodesOnTheLevel, true);
+		this.regionTree = new SESERegionTree<AbstractDirectedGraphNode>(dominatorTree, postDominatorTree);
+		this.subProcessBorders = regionTree.getBorders();
 
 	}
 	
+	public SubprocessDiscovery(DirectedGraph<? extends AbstractDirectedGraphNode, 
+			? extends AbstractDirectedGraphEdge<?,?>> directedGraph, AbstractDirectedGraphNode startNode,
+			AbstractDirectedGraphNode endNode, ContainingDirectedGraphNode parentElement) {
+		
+		this(directedGraph, startNode, endNode, parentElement,
+				new NodePartition<AbstractDirectedGraphNode>(directedGraph));
+	}
+	
 	public SubprocessDiscovery(DirectedGraph<? extends AbstractDirectedGraphNode, 
 			? extends AbstractDirectedGraphEdge<?,?>> directedGraph, AbstractDirectedGraphNode startNode,
 			AbstractDirectedGraphNode endNode) {
@@ -113,51 +175,23 @@ public class SubprocessDiscovery {
 		this(directedGraph, startNode, endNode, null);
 	}
 	
-	private Map<AbstractDirectedGraphNode, AbstractDirectedGraphNode> constrctSubProcBorders() {
-		subProcessBorders = new HashMap<AbstractDirectedGraphNode, AbstractDirectedGraphNode>(); 
-		for(AbstractDirectedGraphNode dominator : treeOfDominators.keySet()) {
-			for(AbstractDirectedGraphNode postDominator : treeOfPostDominators.keySet()) {
-				
-				Set<AbstractDirectedGraphNode> dominatorsChildren = treeOfDominators.get(dominator);
-				dominatorsChildren.add(dominator);
-				Set<AbstractDirectedGraphNode> postDominatorsChildren = treeOfPostDominators.get(postDominator);
-				postDominatorsChildren.add(postDominator);
-				
-				if(dominatorsChildren.containsAll(postDominatorsChildren)
-						&& postDominatorsChildren.containsAll(dominatorsChildren)) {
-							subProcessBorders.put(dominator, postDominator);
-				}
-			}
-		}
-		return subProcessBorders;
-	}
-
 	/**
-	 * Determine a minimal dominator
+	 * Determine a minimal dominator: the nearest (post-)dominator of the node,
+	 * including the node itself, which is one of the considered dominators
 	 *
 	 * @param node
 	 * @param inversive - true for determining post-dominators
-	 * @return
+	 * @return null if there is no such dominator
 	 */
 	public AbstractDirectedGraphNode determineMinimalDominator
 	(AbstractDirectedGraphNode node, Set<AbstractDirectedGraphNode> concidredDominators, boolean inversive) {
 
-		Set<AbstractDirectedGraphNode> actualDominators = new HashSet<AbstractDirectedGraphNode>();
-		actualDominators.addAll(dominators.get(node));
-		actualDominators.retainAll(concidredDominators);
-		
-		AbstractDirectedGraphNode immediateDominator = null;
-		// Determine the immediate dominator 
-		if (actualDominators.size() > 0) {
-			 immediateDominator = actualDominators.iterator().next();
-		}
-		for(AbstractDirectedGraphNode dominator : actualDominators) {
-			if((inversive ? postDominators : dominators).get(dominator).contains(immediateDominator)) {
-				immediateDominator = dominator;
-			}
+		DominatorTree<AbstractDirectedGraphNode> tree = inversive ? postDominatorTree : dominatorTree;
+		AbstractDirectedGraphNode dominator = tree.isReachable(node) ? node : null;
+		while (dominator != null && !concidredDominators.contains(dominator)) {
+			dominator = tree.getImmediateDominator(dominator);
 		}
-		
-		return immediateDominator;
+		return dominator;
 	}
 	
 	
@@ -171,32 +205,7 @@ public class SubprocessDiscovery {
 	public AbstractDirectedGraphNode determineImmediateCommonDominator
 	(List<AbstractDirectedGraphNode> innerNodes, boolean inversive) {
 
-		// First step: set of common dominators contains dominators of any node
-		List<AbstractDirectedGraphNode> commonDominators = new ArrayList<AbstractDirectedGraphNode>();
-		commonDominators.addAll((inversive ? postDominators : dominators).get(innerNodes.get(0)));
-		Set<AbstractDirectedGraphNode> dominatorsToRemove = new HashSet<AbstractDirectedGraphNode>();
-		
-		// Calculate the intersection of dominators
-		for(AbstractDirectedGraphNode innerNode : innerNodes) {
-			for(AbstractDirectedGraphNode dominator : commonDominators) {
-				if(!(inversive ? postDominators : dominators).get(innerNode).contains(dominator)) {
-					dominatorsToRemove.add(dominator);
-				}
-			}
-		}
-		
-		// Remone not common dominators
-		commonDominators.removeAll(dominatorsToRemove);
-		
-		// Determine the minimal dominator for the set of node
-		AbstractDirectedGraphNode minimalDominator = commonDominators.get(0);
-		for(AbstractDirectedGraphNode dominator : commonDominators) {
-			if (((inversive ? postDominators : dominators).get(dominator).contains(minimalDominator))) {
-				minimalDominator = dominator;
-			}
-		}
-		
-		return minimalDominator;
+		return (inversive ? postDominatorTree : dominatorTree).getNearestCommonDominator(innerNodes);
 	}
 	
 	
@@ -205,29 +214,41 @@ public class SubprocessDiscovery {
 			AbstractDirectedGraphNode subprocessEndNode) {
 		
 		Set<ContainableDirectedGraphElement> subprocessNodes
-			= DFSForSubprocessDiscovery(subprocessStartNode, subprocessEndNode, 
-					new HashSet<ContainableDirectedGraphElement>());
+			= DFSForSubprocessDiscovery(subprocessStartNode, subprocessEndNode);
 		
 		return subprocessNodes;
 	}
 	
+	/**
+	 * Collect the nodes and control flow edges reachable from the start node
+	 * without passing the end node, with an explicit stack instead of recursion
+	 * 
+	 * @param startNode
+	 * @param endNode
+	 * @return
+	 */
 	private Set<ContainableDirectedGraphElement> DFSForSubprocessDiscovery(
 			AbstractDirectedGraphNode startNode, 
-			AbstractDirectedGraphNode endNode, 
-			Collection<ContainableDirectedGraphElement> processedElements) {
+			AbstractDirectedGraphNode endNode) {
 		
+		// Nodes are added to the result set when they are pushed, so it marks the visited nodes too
 		Set<ContainableDirectedGraphElement> resultSet 
 			= new HashSet<ContainableDirectedGraphElement>();
+		Deque<AbstractDirectedGraphNode> stack = new ArrayDeque<AbstractDirectedGraphNode>();
 		resultSet.add((ContainableDirectedGraphElement)startNode);
-		if(!startNode.equals(endNode)) {
-			for (AbstractDirectedGraphEdge<?,?> outEdge : graph.getOutEdges(startNode)) {
+		stack.push(startNode);
+		while (!stack.isEmpty()) {
+			AbstractDirectedGraphNode node = stack.pop();
+			if (node.equals(endNode)) {
+				continue;
+			}
+			for (AbstractDirectedGraphEdge<?,?> outEdge : graph.getOutEdges(node)) {
 				if (!(outEdge instanceof DataAssociation)){
 					// TODO: Excplicit type cast!
 					resultSet.add((ContainableDirectedGraphElement) outEdge);
 					AbstractDirectedGraphNode nextNode = outEdge.getTarget();
-					if (!processedElements.contains(nextNode)) {
-						processedElements.add((ContainableDirectedGraphElement) nextNode);
-						resultSet.addAll(DFSForSubprocessDiscovery(nextNode, endNode, processedElements));
+					if (resultSet.add((ContainableDirectedGraphElement) nextNode)) {
+						stack.push(nextNode);
 					}
 				}
 			}
@@ -237,33 +258,22 @@ public class SubprocessDiscovery {
 	
 	
 	/**
-	 * Determine dominators for each node of the graph
+	 * Collect dominators for each node of the graph from the tree of
+	 * (post)dominators; nodes which are not reachable are dominated by all nodes
 	 * 
-	 * @param directedGraph
-	 * @param startNode
-	 * @param inversive - true for determining post-dominators
+	 * @param tree
 	 * @return
 	 */
 	private Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> 
-	determineDominatorsForGraphNodes(boolean inversive) {
+	collectDominators(DominatorTree<AbstractDirectedGraphNode> tree) {
 
 		Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> mapToDominators =
 				new HashMap<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>>();
-		initMapToDominators(mapToDominators, graph, inversive ? endNode : startNode);
-		
-		boolean calculatingIsFinished = false;
-		while(!calculatingIsFinished) {			
-			calculatingIsFinished = true;
-			for(AbstractDirectedGraphNode node : retrieveAllNodesOnTheLevel(graph)) {
-				Set<AbstractDirectedGraphNode> nodePredcessors 
-				= collectNodePredcessors(graph, node, inversive);
-				for(AbstractDirectedGraphNode predcessor : nodePredcessors) {
-					boolean elementsRemoved = intersectDominators(node, predcessor, mapToDominators);
-					// If some elements have been removed, calculating of dominators has not been finished
-					if(elementsRemoved) {
-						calculatingIsFinished = false;
-					}
-				}
+		for(AbstractDirectedGraphNode node : nodesOnTheLevel) {
+			if(tree.isReachable(node)) {
+				mapToDominators.put(node, tree.getDominators(node));
+			} else {
+				mapToDominators.put(node, new HashSet<AbstractDirectedGraphNode>(nodesOnTheLevel));
 			}
 		}
 		return mapToDominators;
@@ -293,132 +303,4 @@ public class SubprocessDiscovery {
 		return resultMap;
 	}
 	
-	/**
-	 * The intersection of dominator sets
-	 * 
-	 * @param node
-	 * @param predcessor
-	 * @param mapToDominators
-	 * @return true if some elements have been removed
-	 */
-	private boolean intersectDominators(AbstractDirectedGraphNode node, 
-			AbstractDirectedGraphNode predcessor, Map<AbstractDirectedGraphNode,
-			Set<AbstractDirectedGraphNode>> mapToDominators) {
-		
-		Set<AbstractDirectedGraphNode> nodeDominators = mapToDominators.get(node);
-		Set<AbstractDirectedGraphNode> predcessorDominators = mapToDominators.get(predcessor);
-
-		if(predcessorDominators == null) {
-			System.out.println(node);
-			System.out.println(predcessor);
-		}
-		boolean newSetOfDominators = false;
-		Set<AbstractDirectedGraphNode> elementsToPut = new HashSet<AbstractDirectedGraphNode>();
-		for (AbstractDirectedGraphNode nodeDominator : nodeDominators) {
-			if ((predcessorDominators.contains(nodeDominator)) || (nodeDominator.equals(node))) {
-				elementsToPut.add(nodeDominator);
-			}
-			else {
-				newSetOfDominators = true;
-			}
-		}
-		
-		mapToDominators.put(node, elementsToPut);
-
-		return newSetOfDominators;
-	}
-	
-	/**
-	 * Collect node predcessors
-	 * 
-	 * @param directedGraph
-	 * @param startNode
-	 * @return
-	 */
-	private Set<AbstractDirectedGraphNode> collectNodePredcessors
-		(DirectedGraph<? extends AbstractDirectedGraphNode, 
-			? extends AbstractDirectedGraphEdge<?,?>> directedGraph, AbstractDirectedGraphNode node,
-			boolean inversive) {
-		
-		Set<AbstractDirectedGraphNode> nodePredcessors = new HashSet<AbstractDirectedGraphNode>();
-		if (!inversive) {
-			Collection<? extends AbstractDirectedGraphEdge<?,?>> inEdges = directedGraph.getInEdges(node);
-			for (AbstractDirectedGraphEdge<? extends AbstractDirectedGraphNode, 
-					? extends AbstractDirectedGraphNode> inEdge : inEdges) {
-				if (!(inEdge instanceof DataAssociation)) {
-					nodePredcessors.add(inEdge.getSource());
-				}
-			}
-		} else {
-			Collection<? extends AbstractDirectedGraphEdge<?,?>> outEdges = directedGraph.getOutEdges(node);
-			for (AbstractDirectedGraphEdge<? extends AbstractDirectedGraphNode, 
-					? extends AbstractDirectedGraphNode> outEdge : outEdges) {
-				if (!(outEdge instanceof DataAssociation)) {
-					nodePredcessors.add(outEdge.getTarget());
-				}
-			}
-		}
-		
-		return nodePredcessors;
-	}
-
-	/*
-	 * Retrieve all the nodes on tha same level as the start node
-	 */
-	@SuppressWarnings("unchecked")
-	private Set<AbstractDirectedGraphNode> retrieveAllNodesOnTheLevel(
-			DirectedGraph<? extends AbstractDirectedGraphNode, ? extends AbstractDirectedGraphEdge<?, ?>> directedGraph) {
-
-		Set<AbstractDirectedGraphNode> resultSet = new HashSet<AbstractDirectedGraphNode>();
-
-		for (AbstractDirectedGraphNode node : directedGraph.getNodes()) {
-			if (node instanceof ContainableDirectedGraphElement) {
-				// TODO: Make something more general
-				if (node instanceof BPMNNode) {
-					if (((BPMNNode) node).getParentSubProcess() == parentElement && !(node instanceof Swimlane)) {
-						resultSet.add(node);
-					}
-				} else if (node instanceof ContainableDirectedGraphElement) {
-					if (((ContainableDirectedGraphElement) node).getParent() == parentElement) {
-						resultSet.add(node);
-					}
-
-				} else {
-					resultSet.add(node);
-				}
-			}
-		}
-		return resultSet;
-	}
-	/** 
-	 * Initialize map to dominators
-	 * 
-	 * @param mapToDominators
-	 * @param directedGraph
-	 * @param startNode
-	 */
-	private void initMapToDominators(Map<AbstractDirectedGraphNode, 
-			Set<AbstractDirectedGraphNode>> mapToDominators, 
-			DirectedGraph<? extends AbstractDirectedGraphNode,
-					? extends AbstractDirectedGraphEdge<?,?>> directedGraph, 
-			AbstractDirectedGraphNode startNode) {
-		
-		// All nodes of the graph
-		final Set<AbstractDirectedGraphNode> ALL = 
-				new HashSet<AbstractDirectedGraphNode>(retrieveAllNodesOnTheLevel(directedGraph));
-		
-		// Start graph node
-		final Set<AbstractDirectedGraphNode> START = 
-				new HashSet<AbstractDirectedGraphNode>(Arrays.asList(new AbstractDirectedGraphNode[] {startNode}));
-		
-		// Dominators should be initialized: initially we assume that every node in the graph
-		// (except source node) has all other graph nodes as dominators
-		for(AbstractDirectedGraphNode node : retrieveAllNodesOnTheLevel(directedGraph)) {
-			if(node.equals(startNode)) {
-				mapToDominators.put(node, START);
-			} else {
-				mapToDominators.put(node, ALL);
-			}
-		}	
-	}
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package org.processmining.tests.converters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2DataPetriNetConverter;
+
+/**
+ * Compares mapping the activities of a large diagram to their transitions
+ * through {@link BPMN2DataPetriNetConverter#getActivityTransition(Activity)}
+ * with scanning the labels of all transitions for each activity. Only reports
+ * the timings, it is not run with the unit tests.
+ */
+public class BPMN2DataPetriNetConverterBenchmark {
+
+    private static final int ACTIVITIES = 10000;
+
+    public static void main(String[] args) {
+        BPMNDiagram diagram = new BPMNDiagramImpl("BPMNDiagram with many activities");
+        List<Activity> activities = new ArrayList<Activity>();
+        BPMNNode last = diagram.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE, Event.EventUse.CATCH,
+                true, null);
+        for (int i = 0; i < ACTIVITIES; i++) {
+            Activity activity = diagram.addActivity("a" + i, false, false, false, false, false);
+            diagram.addFlow(last, activity, "");
+            activities.add(activity);
+            last = activity;
+        }
+        Event end = diagram.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW, true,
+                null);
+        diagram.addFlow(last, end, "");
+
+        BPMN2DataPetriNetConverter converter = new BPMN2DataPetriNetConverter(diagram);
+        if (!converter.convertWithData()) {
+            throw new IllegalStateException("Conversion failed: " + converter.getErrors());
+        }
+
+        // exact mapping, O(A)
+        long start = System.nanoTime();
+        int mapped = 0;
+        for (Activity activity : activities) {
+            if (converter.getActivityTransition(activity) != null) {
+                mapped++;
+            }
+        }
+        long exactNanos = System.nanoTime() - start;
+
+        // previous mapping, scanning the labels of all transitions, O(A*T)
+        start = System.nanoTime();
+        Collection<Transition> transitions = converter.getPetriNet().getTransitions();
+        int scanned = 0;
+        for (Activity activity : activities) {
+            for (Transition transition : transitions) {
+                if (transition.getLabel() != null && transition.getLabel().contains(activity.getLabel())) {
+                    scanned++;
+                }
+            }
+        }
+        long scanNanos = System.nanoTime() - start;
+
+        System.out.println(ACTIVITIES + " activities, " + transitions.size() + " transitions");
+        System.out.println("exact mapping:  " + TimeUnit.NANOSECONDS.toMillis(exactNanos) + " ms, " + mapped
+                + " activities mapped");
+        System.out.println("label scanning: " + TimeUnit.NANOSECONDS.toMillis(scanNanos) + " ms, " + scanned
+                + " label matches");
+    }
+}
@@ -0,0 +1,198 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
+import org.processmining.models.graphbased.directed.bpmn.elements.Gateway;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2DataPetriNetConverter;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetWithDataConverter_Configuration;
+import org.processmining.plugins.converters.bpmn2pn.GuardCache;
+
+public class BPMN2DataPetriNetConverterTest {
+
+    private static final int ACTIVITIES = 200;
+
+    @Test
+    public void convertWithData_withRepeatedAndInvalidGuards_expectedEachGuardParsedOnceAndErrorWithFlowId()
+            throws Exception {
+        BPMNDiagram diagram = new BPMNDiagramImpl("BPMNDiagram with guards");
+        Event start = diagram.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE, Event.EventUse.CATCH,
+                true, null);
+        Gateway split = diagram.addGateway("split", Gateway.GatewayType.DATABASED);
+        Gateway join = diagram.addGateway("join", Gateway.GatewayType.DATABASED);
+        Event end = diagram.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW, true,
+                null);
+        diagram.addDataObject("amount");
+        diagram.addFlow(start, split, "");
+        diagram.addFlow(join, end, "");
+        Flow invalid = null;
+        for (int i = 0; i < 6; i++) {
+            Activity activity = diagram.addActivity("a" + i, false, false, false, false, false);
+            String guard = (i == 5) ? "amount >" : (i % 2 == 0) ? "(amount > 100)" : "(amount <= 100)";
+            Flow flow = diagram.addFlow(split, activity, guard);
+            if (i == 5) {
+                invalid = flow;
+            }
+            diagram.addFlow(activity, join, "");
+        }
+
+        BPMN2PetriNetWithDataConverter_Configuration config = new BPMN2PetriNetWithDataConverter_Configuration();
+        config.translateInParallel = true;
+        config.parallelism = 2;
+        GuardCache guardCache = new GuardCache();
+        BPMN2DataPetriNetConverter converter = new BPMN2DataPetriNetConverter(diagram, config);
+        converter.setGuardCache(guardCache);
+
+        assertFalse(converter.convertWithData());
+        assertEquals(3, guardCache.size());
+        assertSame(guardCache.parse("(amount > 100)"), guardCache.parse("(amount > 100)"));
+        assertEquals(1, converter.getGuardErrors().size());
+        assertEquals(invalid.getEdgeID().toString(), converter.getGuardErrors().get(0).getFlowId());
+        assertEquals("amount >", converter.getGuardErrors().get(0).getGuard());
+        assertEquals(1, converter.getErrors().size());
+    }
+
+    @Test
+    public void convertWithData_withSharedPool_expectedGuardsParsedAndPoolNotShutDown() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("BPMNDiagram with guards");
+        Event start = diagram.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE, Event.EventUse.CATCH,
+                true, null);
+        Gateway split = diagram.addGateway("split", Gateway.GatewayType.DATABASED);
+        Gateway join = diagram.addGateway("join", Gateway.GatewayType.DATABASED);
+        Event end = diagram.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW, true,
+                null);
+        diagram.addDataObject("amount");
+        diagram.addFlow(start, split, "");
+        diagram.addFlow(join, end, "");
+        for (int i = 0; i < 4; i++) {
+            Activity activity = diagram.addActivity("a" + i, false, false, false, false, false);
+            diagram.addFlow(split, activity, "(amount > " + i + ")");
+            diagram.addFlow(activity, join, "");
+        }
+
+        BPMN2PetriNetWithDataConverter_Configuration config = new BPMN2PetriNetWithDataConverter_Configuration();
+        config.translateInParallel = true;
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            GuardCache guardCache = new GuardCache();
+            BPMN2DataPetriNetConverter converter = new BPMN2DataPetriNetConverter(diagram, config);
+            converter.setGuardCache(guardCache);
+            converter.setForkJoinPool(pool);
+
+            assertTrue(converter.convertWithData());
+            assertEquals(4, guardCache.size());
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void convertWithData_byDefault_expectedPlainPetriNetCopied() {
+        BPMN2DataPetriNetConverter converter = new BPMN2DataPetriNetConverter(createDiagramWithGuard());
+
+        assertTrue(converter.convertWithData());
+        assertNotNull(converter.getPetriNet());
+        assertNotSame(converter.getPetriNet(), converter.getDataPetriNet());
+        assertEquals(converter.getPetriNet().getPlaces().size(), converter.getDataPetriNet().getPlaces().size());
+        assertEquals(converter.getPetriNet().getTransitions().size(),
+                converter.getDataPetriNet().getTransitions().size());
+        assertEquals(converter.getPetriNet().getEdges().size(), converter.getDataPetriNet().getEdges().size());
+    }
+
+    @Test
+    public void convertWithData_buildingDataPetriNetDirectly_expectedNoCopy() {
+        BPMN2PetriNetWithDataConverter_Configuration config = new BPMN2PetriNetWithDataConverter_Configuration();
+        config.buildDataPetriNetDirectly = true;
+        BPMN2DataPetriNetConverter converter = new BPMN2DataPetriNetConverter(createDiagramWithGuard(), config);
+
+        assertTrue(converter.convertWithData());
+        assertSame(converter.getNet(), converter.getDataPetriNet());
+        for (Place place : converter.getMarking()) {
+            assertTrue(converter.getDataPetriNet().getPlaces().contains(place));
+        }
+    }
+
+    @Test
+    public void getActivityTransition_withLargeDiagram_expectedExactTransition() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("BPMNDiagram with many activities");
+        List<Activity> activities = new ArrayList<Activity>();
+        BPMNNode last = diagram.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE, Event.EventUse.CATCH,
+                true, null);
+        for (int i = 0; i < ACTIVITIES; i++) {
+            Activity activity = diagram.addActivity("a" + i, false, false, false, false, false);
+            diagram.addFlow(last, activity, "");
+            activities.add(activity);
+            last = activity;
+        }
+        Event end = diagram.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW, true,
+                null);
+        diagram.addFlow(last, end, "");
+
+        BPMN2DataPetriNetConverter converter = new BPMN2DataPetriNetConverter(diagram);
+        assertTrue(converter.convertWithData());
+
+        // exact mapping
+        Map<Activity, Transition> exact = new HashMap<Activity, Transition>();
+        for (Activity activity : activities) {
+            exact.put(activity, converter.getActivityTransition(activity));
+        }
+
+        // previous mapping, by scanning the labels of all transitions
+        Collection<Transition> transitions = converter.getPetriNet().getTransitions();
+        Map<Activity, Transition> scanned = new HashMap<Activity, Transition>();
+        for (Activity activity : activities) {
+            for (Transition transition : transitions) {
+                if (transition.getLabel() != null && transition.getLabel().contains(activity.getLabel())) {
+                    scanned.put(activity, transition);
+                }
+            }
+        }
+
+        int wrongMatches = 0;
+        for (Activity activity : activities) {
+            Transition transition = exact.get(activity);
+            assertNotNull(transition);
+            assertEquals(activity.getLabel(), transition.getLabel());
+            assertTrue(transitions.contains(transition));
+            if (scanned.get(activity) != transition) {
+                wrongMatches++;
+            }
+        }
+        // "a1" is also contained in "a10", "a100", ...
+        assertTrue(wrongMatches > 0);
+    }
+
+    private BPMNDiagram createDiagramWithGuard() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("BPMNDiagram with a guard");
+        Event start = diagram.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE, Event.EventUse.CATCH,
+                true, null);
+        Activity activity = diagram.addActivity("a", false, false, false, false, false);
+        Event end = diagram.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW, true,
+                null);
+        diagram.addDataObject("amount");
+        diagram.addFlow(start, activity, "(amount > 100)");
+        diagram.addFlow(activity, end, "");
+        return diagram;
+    }
+}
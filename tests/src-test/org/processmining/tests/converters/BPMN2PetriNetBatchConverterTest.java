@@ -0,0 +1,133 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.bpmn.elements.Gateway;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetBatchConverter;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetBatchConverter.Result;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetBatchConverter.Status;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration;
+
+public class BPMN2PetriNetBatchConverterTest {
+
+    @Test
+    public void convert_withBrokenModel_expectedOtherModelsConverted() {
+        List<BPMNDiagram> diagrams = new ArrayList<BPMNDiagram>();
+        for (int i = 0; i < 10; i++) {
+            diagrams.add(i == 3 ? createBrokenDiagram() : createSequenceDiagram(i));
+        }
+
+        List<Result> results = new BPMN2PetriNetBatchConverter(new BPMN2PetriNetConverter_Configuration(), 3)
+                .convert(diagrams);
+
+        assertEquals(diagrams.size(), results.size());
+        for (int i = 0; i < diagrams.size(); i++) {
+            Result result = results.get(i);
+            assertSame(diagrams.get(i), result.getDiagram());
+            if (i == 3) {
+                assertEquals(Status.FAILED, result.getStatus());
+                assertFalse(result.getErrors().isEmpty());
+                assertNull(result.getPetriNet());
+            } else {
+                assertEquals(Status.CONVERTED, result.getStatus());
+                // start event, activities and end event
+                assertEquals(i + 2, result.getPetriNet().getTransitions().size());
+                assertEquals(1, result.getInitialMarking().size());
+                assertEquals(1, result.getFinalMarking().size());
+            }
+        }
+    }
+
+    @Test
+    public void convert_withParallelTranslation_expectedAllModelsConverted() {
+        BPMN2PetriNetConverter_Configuration config = new BPMN2PetriNetConverter_Configuration();
+        config.translateInParallel = true;
+        config.parallelism = 2;
+        List<BPMNDiagram> diagrams = new ArrayList<BPMNDiagram>();
+        for (int i = 0; i < 10; i++) {
+            diagrams.add(createSequenceDiagram(i + 1));
+        }
+
+        List<Result> results = new BPMN2PetriNetBatchConverter(config, 3).convert(diagrams);
+
+        for (int i = 0; i < diagrams.size(); i++) {
+            assertEquals(Status.CONVERTED, results.get(i).getStatus());
+            assertEquals(i + 3, results.get(i).getPetriNet().getTransitions().size());
+        }
+    }
+
+    @Test
+    public void convert_withRunawayModelOnSingleThread_expectedNextModelConverted() {
+        BPMN2PetriNetConverter_Configuration config = new BPMN2PetriNetConverter_Configuration();
+        config.maxORGatewayBranches = 30;
+        List<BPMNDiagram> diagrams = new ArrayList<BPMNDiagram>();
+        // 2^30 - 1 transitions, does not finish within the timeout
+        diagrams.add(createInclusiveSplitDiagram(30));
+        diagrams.add(createSequenceDiagram(1));
+
+        BPMN2PetriNetBatchConverter batch = new BPMN2PetriNetBatchConverter(config, 1);
+        batch.setTimeout(500, TimeUnit.MILLISECONDS);
+        List<Result> results = batch.convert(diagrams);
+
+        assertEquals(Status.TIMED_OUT, results.get(0).getStatus());
+        assertEquals(Status.CONVERTED, results.get(1).getStatus());
+        assertEquals(3, results.get(1).getPetriNet().getTransitions().size());
+    }
+
+    private BPMNDiagram createSequenceDiagram(int activities) {
+        BPMNDiagram result = new BPMNDiagramImpl("sequence of " + activities);
+
+        Event startEvent = result.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE,
+                Event.EventUse.CATCH, true, null);
+        Event endEvent = result.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW,
+                true, null);
+
+        Event last = startEvent;
+        Activity previous = null;
+        for (int i = 0; i < activities; i++) {
+            Activity activity = result.addActivity("a" + i, false, false, false, false, false);
+            if (previous == null) {
+                result.addFlow(last, activity, "");
+            } else {
+                result.addFlow(previous, activity, "");
+            }
+            previous = activity;
+        }
+        result.addFlow(previous == null ? last : previous, endEvent, "");
+
+        return result;
+    }
+
+    private BPMNDiagram createInclusiveSplitDiagram(int branches) {
+        BPMNDiagram result = new BPMNDiagramImpl("inclusive split with " + branches + " branches");
+        Activity first = result.addActivity("a", false, false, false, false, false);
+        Gateway split = result.addGateway("split", Gateway.GatewayType.INCLUSIVE);
+        result.addFlow(first, split, "");
+        for (int i = 0; i < branches; i++) {
+            result.addFlow(split, result.addActivity("b" + i, false, false, false, false, false), "");
+        }
+        return result;
+    }
+
+    private BPMNDiagram createBrokenDiagram() {
+        BPMNDiagram result = new BPMNDiagramImpl("inclusive gateway without incoming flow");
+
+        Gateway split = result.addGateway("split", Gateway.GatewayType.INCLUSIVE);
+        Activity activity = result.addActivity("a", false, false, false, false, false);
+        result.addFlow(split, activity, "");
+
+        return result;
+    }
+}
@@ -0,0 +1,576 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNEdge;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
+import org.processmining.models.graphbased.directed.bpmn.elements.Gateway;
+import org.processmining.models.graphbased.directed.bpmn.elements.SubProcess;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.ResetInhibitorNet;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.graphbased.directed.petrinet.impl.PetrinetFactory;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.LabelValue;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.ORGatewayEncoding;
+import org.processmining.plugins.converters.bpmn2pn.BPMNDiagramChange;
+import org.processmining.plugins.converters.bpmn2pn.CompactPetriNet;
+import org.processmining.plugins.converters.bpmn2pn.ConversionListener;
+import org.processmining.plugins.converters.bpmn2pn.ConversionMetrics;
+import org.processmining.plugins.converters.bpmn2pn.LabelTable;
+
+public class BPMN2PetriNetConverterTest {
+
+    private Gateway currentSplit;
+    private Gateway currentJoin;
+
+    private BPMN2PetriNetConverter_Configuration config;
+
+    @Before
+    public void setUp()
+            throws Exception {
+        currentSplit = null;
+        currentJoin = null;
+        config = new BPMN2PetriNetConverter_Configuration();
+    }
+
+    @Test
+    public void convert_withInclusiveGatewaysAllSubsets_expectedTransitionPerSubset() {
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(3), config);
+
+        assertTrue(converter.convert());
+
+        // 2^3 - 1 non-empty subsets of the branches
+        assertEquals(7, countTransitions(converter.getNodeMap().get(currentSplit)));
+        assertEquals(7, countTransitions(converter.getNodeMap().get(currentJoin)));
+    }
+
+    @Test
+    public void convert_withInclusiveGatewaysLinear_expectedLinearSize() {
+        config.orGatewayEncoding = ORGatewayEncoding.LINEAR;
+        BPMNDiagram diagram = createDiagramWithInclusiveGateways(25);
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+
+        assertTrue(converter.convert());
+
+        // split: one start transition, take first for each branch, take/skip for all but the first, skip first for
+        // all but the last
+        assertEquals(1 + 25 + 2 * 24 + 24, countTransitions(converter.getNodeMap().get(currentSplit)));
+        assertEquals(25 + 24, countPlaces(converter.getNodeMap().get(currentSplit)));
+        assertAllTransitionsCanBeEnabled(converter, diagram, currentSplit);
+        assertAllTransitionsCanBeEnabled(converter, diagram, currentJoin);
+        // join: first/next for each branch and one completion transition
+        assertEquals(2 * 25 + 1, countTransitions(converter.getNodeMap().get(currentJoin)));
+        assertEquals(1, countPlaces(converter.getNodeMap().get(currentJoin)));
+    }
+
+    @Test
+    public void convert_withInclusiveSplitWithoutIncomingFlow_expectedError() {
+        config.orGatewayEncoding = ORGatewayEncoding.LINEAR;
+        BPMNDiagram diagram = new BPMNDiagramImpl("inclusive gateway without incoming flow");
+        Gateway split = diagram.addGateway("split", Gateway.GatewayType.INCLUSIVE);
+        diagram.addFlow(split, diagram.addActivity("a", false, false, false, false, false), "");
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+
+        assertFalse(converter.convert());
+        assertEquals(1, converter.getErrors().size());
+        assertEquals(0, countTransitions(converter.getNodeMap().get(split)));
+    }
+
+    @Test
+    public void convert_withInclusiveSplitWithoutIncomingControlFlow_expectedWarning() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("inclusive gateway with incoming data association");
+        Gateway split = diagram.addGateway("split", Gateway.GatewayType.INCLUSIVE);
+        diagram.addDataAssociation(diagram.addDataObject("d"), split, "");
+        diagram.addFlow(split, diagram.addActivity("a", false, false, false, false, false), "");
+        diagram.addFlow(split, diagram.addActivity("b", false, false, false, false, false), "");
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+
+        assertTrue(converter.convert());
+        assertEquals(1, converter.getWarnings().size());
+        assertEquals(0, countTransitions(converter.getNodeMap().get(split)));
+    }
+
+    @Test
+    public void convert_withTooManyBranchesForAllSubsets_expectedError() {
+        config.maxORGatewayBranches = 2;
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(3), config);
+
+        assertFalse(converter.convert());
+        assertEquals(2, converter.getErrors().size());
+        assertEquals(0, countTransitions(converter.getNodeMap().get(currentSplit)));
+    }
+
+    @Test
+    public void convert_inParallel_expectedSameNetAsSequential() {
+        BPMNDiagram diagram = createDiagramWithInclusiveGateways(40);
+        config.orGatewayEncoding = ORGatewayEncoding.LINEAR;
+        BPMN2PetriNetConverter sequential = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(sequential.convert());
+
+        config.translateInParallel = true;
+        config.parallelism = 4;
+        BPMN2PetriNetConverter parallel = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(parallel.convert());
+
+        assertEquals(describe(sequential), describe(parallel));
+        assertEquals(sequential.getFlowMap().size(), parallel.getFlowMap().size());
+        for (Activity activity : diagram.getActivities()) {
+            assertEquals(describe(sequential.getNodeMap().get(activity)), describe(parallel.getNodeMap().get(activity)));
+        }
+    }
+
+    @Test
+    public void convert_compactNet_expectedSameNetAsPetriNet() {
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(3), config);
+        assertTrue(converter.convert());
+
+        CompactPetriNet compactNet = converter.getCompactNet();
+        // split and join translated to 7 transitions each, joined by one activity per branch
+        int[] splitNodes = converter.getCompactNodes(currentSplit);
+        assertEquals(7, splitNodes.length);
+        for (int t : splitNodes) {
+            assertFalse(compactNet.isPlace(t));
+            assertEquals(1, compactNet.getPreset(t).length);
+        }
+
+        assertEquals(compactNet.getPlaceCount(), converter.getPetriNet().getPlaces().size());
+        assertEquals(compactNet.getTransitionCount(), converter.getPetriNet().getTransitions().size());
+        assertEquals(compactNet.getArcCount(), converter.getPetriNet().getEdges().size());
+        assertEquals(compactNet.getInitialMarking().length, converter.getMarking().size());
+        assertEquals(compactNet.getFinalPlaces().length, converter.getFinalPlaces().size());
+    }
+
+    @Test
+    public void convert_withListener_expectedPhaseTimesAndElementCounts() {
+        final List<String> phases = new ArrayList<String>();
+        final List<ConversionMetrics> finished = new ArrayList<ConversionMetrics>();
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(3), config);
+        converter.addConversionListener(new ConversionListener() {
+            public void phaseFinished(String phase, long nanos) {
+                phases.add(phase);
+            }
+
+            public void conversionFinished(ConversionMetrics metrics) {
+                finished.add(metrics);
+            }
+        });
+        assertTrue(converter.convert());
+
+        ConversionMetrics metrics = converter.getMetrics();
+        assertEquals(Arrays.asList(BPMN2PetriNetConverter.PHASE_INDEX_BOUNDARY_EVENTS,
+                BPMN2PetriNetConverter.PHASE_EDGES, BPMN2PetriNetConverter.PHASE_EVENTS,
+                BPMN2PetriNetConverter.PHASE_ACTIVITIES, BPMN2PetriNetConverter.PHASE_SUBPROCESSES,
+                BPMN2PetriNetConverter.PHASE_GATEWAYS), phases);
+        assertEquals(phases, new ArrayList<String>(metrics.getPhaseTimes().keySet()));
+        assertEquals(Collections.singletonList(metrics), finished);
+
+        // split and join with 2^3 - 1 transitions each
+        assertEquals(2, metrics.getElementCounts("Gateway(INCLUSIVE)").getElements());
+        assertEquals(14, metrics.getElementCounts("Gateway(INCLUSIVE)").getTransitions());
+        assertEquals(3, metrics.getMaxORGatewayBranches());
+        assertEquals(3, metrics.getElementCounts("Activity").getTransitions());
+        assertEquals(8, metrics.getElementCounts("Flow").getElements());
+        assertEquals(8, metrics.getElementCounts("Flow").getPlaces());
+        assertEquals(7, metrics.getPeakNodeMapSize());
+        assertEquals(8, metrics.getPeakFlowMapSize());
+
+        int arcs = 0;
+        for (ConversionMetrics.ElementCounts counts : metrics.getElementCounts().values()) {
+            arcs += counts.getArcs();
+        }
+        assertEquals(converter.getCompactNet().getArcCount(), arcs);
+    }
+
+    @Test
+    public void convert_withNetFactory_expectedNetBuiltDirectly() {
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(3), config);
+        converter.setNetFactory(new BPMN2PetriNetConverter.NetFactory() {
+            public PetrinetGraph createNet(String label) {
+                return PetrinetFactory.newResetInhibitorNet(label);
+            }
+        });
+        assertTrue(converter.convert());
+
+        PetrinetGraph net = converter.getNet();
+        assertTrue(net instanceof ResetInhibitorNet);
+        assertEquals(converter.getCompactNet().getPlaceCount(), net.getPlaces().size());
+        assertEquals(converter.getCompactNet().getTransitionCount(), net.getTransitions().size());
+        for (PetrinetNode node : converter.getNodeMap().get(currentSplit)) {
+            assertTrue(net.getTransitions().contains(node));
+        }
+        for (Place place : converter.getMarking()) {
+            assertTrue(net.getPlaces().contains(place));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getPetriNet_withNetFactoryCreatingOtherNets_expectedException() {
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(3), config);
+        converter.setNetFactory(new BPMN2PetriNetConverter.NetFactory() {
+            public PetrinetGraph createNet(String label) {
+                return PetrinetFactory.newResetInhibitorNet(label);
+            }
+        });
+        assertTrue(converter.convert());
+
+        converter.getPetriNet();
+    }
+
+    @Test
+    public void convert_withSharedLabelTable_expectedPrefixedAndInternedLabels() {
+        config.orGatewayEncoding = ORGatewayEncoding.LINEAR;
+        config.labelNodesWith = LabelValue.PREFIX_ALL_BY_PN_BPMN_TYPE;
+        LabelTable labelTable = new LabelTable();
+
+        BPMN2PetriNetConverter first = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(2), config);
+        first.setLabelTable(labelTable);
+        assertTrue(first.convert());
+        Gateway firstSplit = currentSplit;
+        BPMN2PetriNetConverter second = new BPMN2PetriNetConverter(createDiagramWithInclusiveGateways(2), config);
+        second.setLabelTable(labelTable);
+        assertTrue(second.convert());
+
+        String firstLabel = findPlaceLabel(first.getNodeMap().get(firstSplit), "p_ior_split_split_0_none");
+        String secondLabel = findPlaceLabel(second.getNodeMap().get(currentSplit), "p_ior_split_split_0_none");
+        assertSame(firstLabel, secondLabel);
+        assertSame(first.getCompactNet().getLabel(first.getCompactNodes(firstSplit)[0]),
+                second.getCompactNet().getLabel(second.getCompactNodes(currentSplit)[0]));
+    }
+
+    @Test
+    public void update_withAddedAndRemovedBranch_expectedSameNetAsFullConversion() {
+        config.linkSubProcessToActivity = false;
+        config.labelFlowPlaces = true;
+        BPMNDiagramImpl diagram = (BPMNDiagramImpl) createDiagramWithInclusiveGateways(3);
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(converter.convert());
+
+        // add a fourth branch
+        BPMNDiagramChange change = new BPMNDiagramChange();
+        Activity added = diagram.addActivity("a3", false, false, false, false, false);
+        change.addNode(added);
+        change.addFlow(diagram.addFlow(currentSplit, added, ""));
+        change.addFlow(diagram.addFlow(added, currentJoin, ""));
+        assertTrue(converter.update(change));
+        assertEquals(describe(fullConversion(diagram)), describe(converter.getCompactNet()));
+        assertEquals(15, countTransitions(converter.getNodeMap().get(currentSplit)));
+
+        // remove the first branch again
+        change = new BPMNDiagramChange();
+        Activity removed = diagram.getActivities().iterator().next();
+        for (BPMNEdge<?, ?> flow : diagram.getInEdges(removed)) {
+            change.removeFlow((Flow) flow);
+        }
+        for (BPMNEdge<?, ?> flow : diagram.getOutEdges(removed)) {
+            change.removeFlow((Flow) flow);
+        }
+        diagram.removeActivity(removed);
+        change.removeNode(removed);
+        assertTrue(converter.update(change));
+        assertEquals(describe(fullConversion(diagram)), describe(converter.getCompactNet()));
+        assertEquals(converter.getCompactNet().getPlaceCount(), converter.getPetriNet().getPlaces().size());
+        assertEquals(converter.getCompactNet().getArcCount(), converter.getPetriNet().getEdges().size());
+    }
+
+    @Test
+    public void update_withMaterializedNet_expectedNetPatchedInPlace() {
+        config.linkSubProcessToActivity = false;
+        config.labelFlowPlaces = true;
+        BPMNDiagramImpl diagram = (BPMNDiagramImpl) createDiagramWithInclusiveGateways(3);
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(converter.convert());
+        PetrinetGraph net = converter.getPetriNet();
+        Event startEvent = null;
+        for (Event event : diagram.getEvents()) {
+            if (event.getEventType() == Event.EventType.START) {
+                startEvent = event;
+            }
+        }
+        Set<PetrinetNode> startNodes = converter.getNodeMap().get(startEvent);
+
+        int nodeCount = -1;
+        for (int i = 0; i < 3; i++) {
+            // add a fourth branch and remove it again
+            BPMNDiagramChange change = new BPMNDiagramChange();
+            Activity added = diagram.addActivity("b" + i, false, false, false, false, false);
+            change.addNode(added);
+            Flow in = diagram.addFlow(currentSplit, added, "");
+            Flow out = diagram.addFlow(added, currentJoin, "");
+            change.addFlow(in);
+            change.addFlow(out);
+            assertTrue(converter.update(change));
+            assertSame(net, converter.getPetriNet());
+            assertEquals(describe(fullyConverted(diagram)), describe(converter));
+
+            change = new BPMNDiagramChange();
+            change.removeFlow(in);
+            change.removeFlow(out);
+            diagram.removeActivity(added);
+            change.removeNode(added);
+            assertTrue(converter.update(change));
+            assertSame(net, converter.getPetriNet());
+            assertEquals(describe(fullyConverted(diagram)), describe(converter));
+            assertEquals(startNodes, converter.getNodeMap().get(startEvent));
+            assertTrue(net.getNodes().containsAll(startNodes));
+
+            // indices of removed nodes are reused
+            if (nodeCount < 0) {
+                nodeCount = converter.getCompactNet().getNodeCount();
+            }
+            assertEquals(nodeCount, converter.getCompactNet().getNodeCount());
+        }
+    }
+
+    @Test
+    public void convert_hierarchicallyWithIdenticalSubProcesses_expectedSameNetAsByPhases() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("BPMNDiagram with nested subprocesses");
+        Event startEvent = diagram.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE,
+                Event.EventUse.CATCH, true, null);
+        SubProcess first = diagram.addSubProcess("first", false, false, false, false, false);
+        SubProcess second = diagram.addSubProcess("second", false, false, false, false, false);
+        Event endEvent = diagram.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW,
+                true, null);
+        diagram.addFlow(startEvent, first, "");
+        diagram.addFlow(first, second, "");
+        diagram.addFlow(second, endEvent, "");
+        Activity firstTask = addSubProcessBody(diagram, first);
+        Activity secondTask = addSubProcessBody(diagram, second);
+
+        BPMN2PetriNetConverter byPhases = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(byPhases.convert());
+
+        config.translateSubProcessesHierarchically = true;
+        config.translateInParallel = true;
+        config.parallelism = 4;
+        BPMN2PetriNetConverter hierarchical = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(hierarchical.convert());
+
+        assertEquals(describe(byPhases.getCompactNet()), describe(hierarchical.getCompactNet()));
+        assertEquals(byPhases.getNodeMap().size(), hierarchical.getNodeMap().size());
+        assertEquals(byPhases.getFlowMap().size(), hierarchical.getFlowMap().size());
+        // the reused translation is mapped to the elements of the second subprocess
+        assertEquals(1, hierarchical.getCompactNodes(secondTask).length);
+        assertNotEquals(hierarchical.getCompactNodes(firstTask)[0], hierarchical.getCompactNodes(secondTask)[0]);
+        for (BPMNEdge<?, ?> flow : diagram.getInEdges(secondTask)) {
+            assertEquals(hierarchical.getCompactPlace((Flow) flow), hierarchical.getCompactNet().getPreset(
+                    hierarchical.getCompactNodes(secondTask)[0])[0]);
+        }
+    }
+
+    /**
+     * Add start -> parallel split -> (task, nested subprocess) -> parallel join -> end to the subprocess.
+     *
+     * @return the task
+     */
+    private Activity addSubProcessBody(BPMNDiagram diagram, SubProcess subProcess) {
+        Event start = diagram.addEvent("sub start", Event.EventType.START, Event.EventTrigger.NONE,
+                Event.EventUse.CATCH, subProcess, true, null);
+        Gateway split = diagram.addGateway("fork", Gateway.GatewayType.PARALLEL, subProcess);
+        Activity task = diagram.addActivity("task", false, false, false, false, false, subProcess);
+        SubProcess nested = diagram.addSubProcess("nested", false, false, false, false, false, subProcess);
+        Gateway join = diagram.addGateway("sync", Gateway.GatewayType.PARALLEL, subProcess);
+        Event end = diagram.addEvent("sub end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW,
+                subProcess, true, null);
+        diagram.addFlow(start, split, "");
+        diagram.addFlow(split, task, "");
+        diagram.addFlow(split, nested, "");
+        diagram.addFlow(task, join, "");
+        diagram.addFlow(nested, join, "");
+        diagram.addFlow(join, end, "");
+
+        Event nestedStart = diagram.addEvent("nested start", Event.EventType.START, Event.EventTrigger.NONE,
+                Event.EventUse.CATCH, nested, true, null);
+        Activity nestedTask = diagram.addActivity("nested task", false, false, false, false, false, nested);
+        Event nestedEnd = diagram.addEvent("nested end", Event.EventType.END, Event.EventTrigger.NONE,
+                Event.EventUse.THROW, nested, true, null);
+        diagram.addFlow(nestedStart, nestedTask, "");
+        diagram.addFlow(nestedTask, nestedEnd, "");
+        return task;
+    }
+
+    private CompactPetriNet fullConversion(BPMNDiagram diagram) {
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(converter.convert());
+        return converter.getCompactNet();
+    }
+
+    private BPMN2PetriNetConverter fullyConverted(BPMNDiagram diagram) {
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(converter.convert());
+        return converter;
+    }
+
+    /**
+     * @return all nodes, arcs and marked places of the net by their labels, sorted
+     */
+    private List<String> describe(CompactPetriNet net) {
+        List<String> result = new ArrayList<String>();
+        for (int n = 0; n < net.getNodeCount(); n++) {
+            if (net.isRemoved(n)) {
+                continue;
+            }
+            result.add((net.isPlace(n) ? "place " : "transition ") + net.getLabel(n));
+            for (int succ : net.getPostset(n)) {
+                result.add("arc " + net.getLabel(n) + " -> " + net.getLabel(succ));
+            }
+        }
+        for (int p : net.getInitialMarking()) {
+            result.add("initial " + net.getLabel(p));
+        }
+        for (int p : net.getFinalPlaces()) {
+            result.add("final " + net.getLabel(p));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * @return all nodes, arcs and marked places of the Petri net built by the converter by their labels, sorted
+     */
+    private List<String> describe(BPMN2PetriNetConverter converter) {
+        PetrinetGraph net = converter.getPetriNet();
+        List<String> result = describe(new HashSet<PetrinetNode>(net.getNodes()));
+        for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> arc : net.getEdges()) {
+            result.add("arc " + arc.getSource().getLabel() + " -> " + arc.getTarget().getLabel());
+        }
+        for (Place place : converter.getMarking()) {
+            result.add("initial " + place.getLabel());
+        }
+        for (Place place : converter.getFinalPlaces()) {
+            result.add("final " + place.getLabel());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * @return the nodes by their labels, sorted
+     */
+    private List<String> describe(Set<PetrinetNode> nodes) {
+        List<String> result = new ArrayList<String>();
+        for (PetrinetNode node : nodes) {
+            if (node instanceof Place) {
+                result.add("place " + node.getLabel());
+            } else {
+                result.add("transition " + node.getLabel() + (((Transition) node).isInvisible() ? " (invisible)" : ""));
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private String findPlaceLabel(Set<PetrinetNode> nodes, String label) {
+        for (PetrinetNode node : nodes) {
+            if (node instanceof Place && node.getLabel().equals(label)) {
+                return node.getLabel();
+            }
+        }
+        throw new AssertionError("No place labelled " + label);
+    }
+
+    private BPMNDiagram createDiagramWithInclusiveGateways(int branches) {
+        BPMNDiagram result = new BPMNDiagramImpl("BPMNDiagram with inclusive split and join");
+
+        Event startEvent = result.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE,
+                Event.EventUse.CATCH, true, null);
+        Event endEvent = result.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW,
+                true, null);
+
+        currentSplit = result.addGateway("split", Gateway.GatewayType.INCLUSIVE);
+        currentJoin = result.addGateway("join", Gateway.GatewayType.INCLUSIVE);
+
+        result.addFlow(startEvent, currentSplit, "");
+        for (int i = 0; i < branches; i++) {
+            Activity activity = result.addActivity("a" + i, false, false, false, false, false);
+            result.addFlow(currentSplit, activity, "");
+            result.addFlow(activity, currentJoin, "");
+        }
+        result.addFlow(currentJoin, endEvent, "");
+
+        return result;
+    }
+
+    /**
+     * Assert that each transition translating the gateway can be enabled: all places of its preset are marked by
+     * the incoming flows of the gateway or by other transitions of the translation that can be enabled.
+     */
+    private void assertAllTransitionsCanBeEnabled(BPMN2PetriNetConverter converter, BPMNDiagram diagram,
+            Gateway gateway) {
+        CompactPetriNet net = converter.getCompactNet();
+        Set<Integer> marked = new HashSet<Integer>();
+        for (BPMNEdge<?, ?> flow : diagram.getInEdges(gateway)) {
+            marked.add(converter.getCompactPlace((Flow) flow));
+        }
+        Set<Integer> enabled = new HashSet<Integer>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int t : converter.getCompactNodes(gateway)) {
+                if (net.isPlace(t) || enabled.contains(t)) {
+                    continue;
+                }
+                boolean canBeEnabled = false;
+                for (int p : net.getPreset(t)) {
+                    if (marked.contains(p)) {
+                        canBeEnabled = true;
+                    } else {
+                        canBeEnabled = false;
+                        break;
+                    }
+                }
+                if (canBeEnabled) {
+                    enabled.add(t);
+                    for (int p : net.getPostset(t)) {
+                        marked.add(p);
+                    }
+                    changed = true;
+                }
+            }
+        }
+        for (int n : converter.getCompactNodes(gateway)) {
+            if (net.isPlace(n)) {
+                assertTrue("place " + net.getLabel(n) + " is never marked", marked.contains(n));
+            } else {
+                assertTrue("transition " + net.getLabel(n) + " is never enabled", enabled.contains(n));
+            }
+        }
+    }
+
+    private int countTransitions(Set<PetrinetNode> nodes) {
+        int count = 0;
+        for (PetrinetNode node : nodes) {
+            if (node instanceof Transition) count++;
+        }
+        return count;
+    }
+
+    private int countPlaces(Set<PetrinetNode> nodes) {
+        int count = 0;
+        for (PetrinetNode node : nodes) {
+            if (node instanceof Place) count++;
+        }
+        return count;
+    }
+}
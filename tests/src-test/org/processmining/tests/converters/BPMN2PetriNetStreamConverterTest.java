@@ -0,0 +1,321 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNEdge;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
+import org.processmining.models.graphbased.directed.bpmn.elements.Gateway;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetConverter_Configuration.ORGatewayEncoding;
+import org.processmining.plugins.converters.bpmn2pn.BPMN2PetriNetStreamConverter;
+import org.processmining.plugins.converters.bpmn2pn.CompactPetriNet;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class BPMN2PetriNetStreamConverterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BPMN2PetriNetConverter_Configuration config;
+
+    @Before
+    public void setUp()
+            throws Exception {
+        config = new BPMN2PetriNetConverter_Configuration();
+        config.labelFlowPlaces = true;
+    }
+
+    @Test
+    public void convert_withDeclaredFlows_expectedSameNetAsConverter()
+            throws Exception {
+        BPMNDiagram diagram = createDiagram();
+
+        assertEquals(convertDiagram(diagram), convertStream(writeBPMN(diagram, true)));
+    }
+
+    @Test
+    public void convert_withUndeclaredFlowsAndUniqueStartPlace_expectedSameNetAsConverter()
+            throws Exception {
+        config.linkSubProcessToActivity = false;
+        config.orGatewayEncoding = ORGatewayEncoding.LINEAR;
+        BPMNDiagram diagram = createDiagram();
+
+        assertEquals(convertDiagram(diagram), convertStream(writeBPMN(diagram, false)));
+    }
+
+    @Test
+    public void convert_withInclusiveSplitWithoutIncomingFlow_expectedSameErrorsAsConverter()
+            throws Exception {
+        config.orGatewayEncoding = ORGatewayEncoding.LINEAR;
+        BPMNDiagram diagram = new BPMNDiagramImpl("inclusive gateway without incoming flow");
+        Gateway split = diagram.addGateway("split", Gateway.GatewayType.INCLUSIVE);
+        diagram.addFlow(split, diagram.addActivity("a", false, false, false, false, false), "");
+
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+        assertFalse(converter.convert());
+        BPMN2PetriNetStreamConverter streamConverter = new BPMN2PetriNetStreamConverter(config);
+        assertFalse(streamConverter.convert(writeBPMN(diagram, true), new ByteArrayOutputStream()));
+        assertEquals(converter.getErrors().size(), streamConverter.getErrors().size());
+        assertEquals(converter.getWarnings().size(), streamConverter.getWarnings().size());
+    }
+
+    @Test
+    public void convert_longSequence_expectedFewUnresolvedElements()
+            throws Exception {
+        File file = folder.newFile("sequence.bpmn");
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write("<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\"><process id=\"p\">");
+        out.write("<startEvent id=\"n0\"><outgoing>f0</outgoing></startEvent>");
+        for (int i = 1; i <= 5000; i++) {
+            out.write("<sequenceFlow id=\"f" + (i - 1) + "\" sourceRef=\"n" + (i - 1) + "\" targetRef=\"n" + i + "\"/>");
+            out.write("<task id=\"n" + i + "\" name=\"a" + i + "\"><incoming>f" + (i - 1) + "</incoming><outgoing>f" + i
+                    + "</outgoing></task>");
+        }
+        out.write("<sequenceFlow id=\"f5000\" sourceRef=\"n5000\" targetRef=\"end\"/>");
+        out.write("<endEvent id=\"end\"><incoming>f5000</incoming></endEvent>");
+        out.write("</process></definitions>");
+        out.close();
+
+        BPMN2PetriNetStreamConverter converter = new BPMN2PetriNetStreamConverter(config);
+        assertTrue(converter.convert(file, new ByteArrayOutputStream()));
+        assertTrue(converter.getPeakUnresolved() < 10);
+    }
+
+    private List<String> convertDiagram(BPMNDiagram diagram) {
+        BPMN2PetriNetConverter converter = new BPMN2PetriNetConverter(diagram, config);
+        assertTrue(converter.convert());
+
+        CompactPetriNet net = converter.getCompactNet();
+        List<String> result = new ArrayList<String>();
+        for (int n = 0; n < net.getNodeCount(); n++) {
+            result.add(describeNode(net.isPlace(n), net.getLabel(n), net.isInvisible(n)));
+            for (int succ : net.getPostset(n)) {
+                result.add("arc " + net.getLabel(n) + " -> " + net.getLabel(succ));
+            }
+        }
+        for (int p : net.getInitialMarking()) {
+            result.add("initial " + net.getLabel(p));
+        }
+        for (int p : net.getFinalPlaces()) {
+            result.add("final " + net.getLabel(p));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private List<String> convertStream(File file)
+            throws Exception {
+        BPMN2PetriNetStreamConverter converter = new BPMN2PetriNetStreamConverter(config);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(converter.convert(file, out));
+
+        Document pnml = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(out.toByteArray()));
+        Map<String, String> labels = new HashMap<String, String>();
+        List<String> result = new ArrayList<String>();
+        NodeList places = pnml.getElementsByTagName("place");
+        for (int i = 0; i < places.getLength(); i++) {
+            Element place = (Element) places.item(i);
+            if (place.hasAttribute("idref")) {
+                continue;
+            }
+            labels.put(place.getAttribute("id"), getName(place));
+            result.add(describeNode(true, getName(place), false));
+            if (place.getElementsByTagName("initialMarking").getLength() > 0) {
+                result.add("initial " + getName(place));
+            }
+        }
+        NodeList transitions = pnml.getElementsByTagName("transition");
+        for (int i = 0; i < transitions.getLength(); i++) {
+            Element transition = (Element) transitions.item(i);
+            labels.put(transition.getAttribute("id"), getName(transition));
+            boolean invisible = transition.getElementsByTagName("toolspecific").getLength() > 0;
+            result.add(describeNode(false, getName(transition), invisible));
+        }
+        NodeList arcs = pnml.getElementsByTagName("arc");
+        for (int i = 0; i < arcs.getLength(); i++) {
+            Element arc = (Element) arcs.item(i);
+            result.add("arc " + labels.get(arc.getAttribute("source")) + " -> "
+                    + labels.get(arc.getAttribute("target")));
+        }
+        NodeList finalPlaces = ((Element) pnml.getElementsByTagName("finalmarkings").item(0))
+                .getElementsByTagName("place");
+        for (int i = 0; i < finalPlaces.getLength(); i++) {
+            result.add("final " + labels.get(((Element) finalPlaces.item(i)).getAttribute("idref")));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private String describeNode(boolean isPlace, String label, boolean invisible) {
+        if (isPlace) {
+            return "place " + label;
+        }
+        return "transition " + label + (invisible ? " (invisible)" : "");
+    }
+
+    private String getName(Element node) {
+        Element name = (Element) node.getElementsByTagName("name").item(0);
+        return name.getElementsByTagName("text").item(0).getTextContent();
+    }
+
+    private BPMNDiagram createDiagram() {
+        BPMNDiagram result = new BPMNDiagramImpl("BPMNDiagram with all gateway types");
+
+        Event start = result.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE, Event.EventUse.CATCH,
+                true, null);
+        Activity a = result.addActivity("a", true, false, false, false, false);
+        Gateway xorSplit = result.addGateway("x1", Gateway.GatewayType.DATABASED);
+        Activity b = result.addActivity("b", false, false, false, false, false);
+        Event timeout = result.addEvent("timeout", Event.EventType.INTERMEDIATE, Event.EventTrigger.TIMER,
+                Event.EventUse.CATCH, true, b);
+        Activity c = result.addActivity("c", false, false, false, false, false);
+        Activity d = result.addActivity("d", false, false, false, false, false);
+        Gateway xorJoin = result.addGateway("x2", Gateway.GatewayType.DATABASED);
+        Gateway orSplit = result.addGateway("o1", Gateway.GatewayType.INCLUSIVE);
+        Gateway orJoin = result.addGateway("o2", Gateway.GatewayType.INCLUSIVE);
+        Gateway andSplit = result.addGateway("p1", Gateway.GatewayType.PARALLEL);
+        Gateway andJoin = result.addGateway("p2", Gateway.GatewayType.PARALLEL);
+        Event end = result.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW, true,
+                null);
+
+        result.addFlow(start, a, "");
+        result.addFlow(a, xorSplit, "");
+        result.addFlow(xorSplit, b, "");
+        result.addFlow(xorSplit, d, "retry");
+        result.addFlow(b, xorJoin, "");
+        result.addFlow(timeout, c, "");
+        result.addFlow(c, xorJoin, "");
+        result.addFlow(d, xorJoin, "");
+        result.addFlow(xorJoin, orSplit, "");
+        for (String label : new String[] { "e", "f", "g" }) {
+            Activity branch = result.addActivity(label, false, false, false, false, false);
+            result.addFlow(orSplit, branch, "");
+            result.addFlow(branch, orJoin, "");
+        }
+        result.addFlow(orJoin, andSplit, "");
+        for (String label : new String[] { "h", "i" }) {
+            Activity branch = result.addActivity(label, false, false, false, false, false);
+            result.addFlow(andSplit, branch, "");
+            result.addFlow(branch, andJoin, "");
+        }
+        result.addFlow(andJoin, end, "");
+
+        return result;
+    }
+
+    /**
+     * Write the diagram as BPMN 2.0 XML, with all flows after the nodes.
+     *
+     * @param declareFlows
+     *            whether nodes list their incoming and outgoing flows
+     */
+    private File writeBPMN(BPMNDiagram diagram, boolean declareFlows)
+            throws Exception {
+        Map<Object, String> ids = new HashMap<Object, String>();
+        Set<BPMNNode> boundaryEvents = new HashSet<BPMNNode>();
+        for (BPMNNode n : diagram.getNodes()) {
+            ids.put(n, "node" + ids.size());
+        }
+        for (Flow f : diagram.getFlows()) {
+            ids.put(f, "flow" + ids.size());
+        }
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        xml.append("<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\">");
+        xml.append("<process id=\"process\">");
+        for (BPMNNode n : diagram.getNodes()) {
+            String element;
+            String details = "";
+            String attributes = "";
+            if (n instanceof Event) {
+                Event e = (Event) n;
+                if (e.getEventType() == Event.EventType.START) {
+                    element = "startEvent";
+                } else if (e.getEventType() == Event.EventType.END) {
+                    element = "endEvent";
+                } else if (e.getBoundingNode() != null) {
+                    element = "boundaryEvent";
+                    attributes = " attachedToRef=\"" + ids.get(e.getBoundingNode()) + "\"";
+                    boundaryEvents.add(e);
+                } else {
+                    element = "intermediateCatchEvent";
+                }
+                if (e.getEventTrigger() == Event.EventTrigger.TIMER) {
+                    details = "<timerEventDefinition/>";
+                }
+            } else if (n instanceof Gateway) {
+                switch (((Gateway) n).getGatewayType()) {
+                    case PARALLEL:
+                        element = "parallelGateway";
+                        break;
+                    case INCLUSIVE:
+                        element = "inclusiveGateway";
+                        break;
+                    default:
+                        element = "exclusiveGateway";
+                        break;
+                }
+            } else {
+                element = "task";
+                if (((Activity) n).isBLooped()) {
+                    details = "<standardLoopCharacteristics/>";
+                }
+            }
+
+            xml.append("<" + element + " id=\"" + ids.get(n) + "\" name=\"" + n.getLabel() + "\"" + attributes + ">");
+            if (declareFlows) {
+                for (BPMNEdge<?, ?> f : diagram.getInEdges(n)) {
+                    xml.append("<incoming>" + ids.get(f) + "</incoming>");
+                }
+                for (BPMNEdge<?, ?> f : diagram.getOutEdges(n)) {
+                    xml.append("<outgoing>" + ids.get(f) + "</outgoing>");
+                }
+            }
+            xml.append(details);
+            xml.append("</" + element + ">");
+        }
+        for (Flow f : diagram.getFlows()) {
+            xml.append("<sequenceFlow id=\"" + ids.get(f) + "\" name=\"" + f.getLabel() + "\" sourceRef=\""
+                    + ids.get(f.getSource()) + "\" targetRef=\"" + ids.get(f.getTarget()) + "\"/>");
+        }
+        xml.append("</process></definitions>");
+
+        File file = folder.newFile(diagram.getLabel() + (declareFlows ? ".bpmn" : "_undeclared.bpmn"));
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write(xml.toString());
+        out.close();
+        return file;
+    }
+}
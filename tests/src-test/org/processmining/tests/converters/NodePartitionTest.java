@@ -0,0 +1,103 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.AbstractDirectedGraphNode;
+import org.processmining.models.graphbased.directed.ContainingDirectedGraphNode;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.SubProcess;
+import org.processmining.plugins.graphalgorithms.NodePartition;
+import org.processmining.plugins.graphalgorithms.SubprocessDiscovery;
+
+public class NodePartitionTest {
+
+    private static final int NODES = 200;
+    private static final int MOVES = 100;
+
+    @Test
+    public void moveNodes_withNewSubProcesses_expectedSameAsScanningTheLevels() {
+        Random random = new Random(1);
+        BPMNDiagram diagram = new BPMNDiagramImpl("diagram");
+        List<Activity> activities = new ArrayList<Activity>();
+        for (int i = 0; i < NODES; i++) {
+            activities.add(diagram.addActivity("a" + i, false, false, false, false, false));
+        }
+        NodePartition<AbstractDirectedGraphNode> partition = new NodePartition<AbstractDirectedGraphNode>(diagram);
+        List<SubProcess> subProcesses = new ArrayList<SubProcess>();
+        assertLevels(diagram, partition, subProcesses);
+
+        for (int i = 0; i < MOVES; i++) {
+            SubProcess container;
+            if (subProcesses.isEmpty() || random.nextInt(3) == 0) {
+                container = diagram.addSubProcess("s" + i, false, false, false, false, false);
+                partition.addNode(container);
+                subProcesses.add(container);
+            } else {
+                container = subProcesses.get(random.nextInt(subProcesses.size()));
+            }
+            List<AbstractDirectedGraphNode> moved = new ArrayList<AbstractDirectedGraphNode>();
+            for (int j = random.nextInt(10); j > 0; j--) {
+                Activity activity = activities.get(random.nextInt(NODES));
+                activity.setParentSubprocess(container);
+                moved.add(activity);
+            }
+            partition.moveNodes(moved, container);
+            assertLevels(diagram, partition, subProcesses);
+        }
+    }
+
+    @Test
+    public void subprocessDiscovery_withSharedPartition_expectedNodesOfTheSubProcessOnly() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("diagram");
+        Activity a = diagram.addActivity("a", false, false, false, false, false);
+        Activity b = diagram.addActivity("b", false, false, false, false, false);
+        Activity c = diagram.addActivity("c", false, false, false, false, false);
+        Activity d = diagram.addActivity("d", false, false, false, false, false);
+        diagram.addFlow(a, b, "");
+        diagram.addFlow(b, c, "");
+        diagram.addFlow(c, d, "");
+        NodePartition<AbstractDirectedGraphNode> partition = new NodePartition<AbstractDirectedGraphNode>(diagram);
+
+        SubProcess subProcess = diagram.addSubProcess("s", false, false, false, false, false);
+        partition.addNode(subProcess);
+        b.setParentSubprocess(subProcess);
+        c.setParentSubprocess(subProcess);
+        List<AbstractDirectedGraphNode> moved = new ArrayList<AbstractDirectedGraphNode>();
+        moved.add(b);
+        moved.add(c);
+        partition.moveNodes(moved, subProcess);
+
+        SubprocessDiscovery discovery = new SubprocessDiscovery(diagram, b, c, subProcess, partition);
+        assertEquals(2, discovery.getDominatorTree().getNodes().size());
+        assertTrue(discovery.getDominatorTree().dominates(b, c));
+        assertEquals(c, discovery.getSubProcessBorders().get(b));
+    }
+
+    private void assertLevels(BPMNDiagram diagram, NodePartition<AbstractDirectedGraphNode> partition,
+            List<SubProcess> subProcesses) {
+        List<ContainingDirectedGraphNode> containers = new ArrayList<ContainingDirectedGraphNode>(subProcesses);
+        containers.add(null);
+        for (ContainingDirectedGraphNode container : containers) {
+            Set<AbstractDirectedGraphNode> expected = new HashSet<AbstractDirectedGraphNode>();
+            for (BPMNNode node : diagram.getNodes()) {
+                if (node.getParentSubProcess() == container) {
+                    expected.add(node);
+                }
+            }
+            List<AbstractDirectedGraphNode> nodes = partition.getNodes(container);
+            assertEquals(expected.size(), nodes.size());
+            assertEquals(expected, new HashSet<AbstractDirectedGraphNode>(nodes));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.ResetInhibitorNet;
+import org.processmining.models.graphbased.directed.petrinet.elements.Arc;
+import org.processmining.models.graphbased.directed.petrinet.elements.ExpandableSubNet;
+import org.processmining.models.graphbased.directed.petrinet.elements.InhibitorArc;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.ResetArc;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.graphbased.directed.petrinet.impl.PetrinetImpl;
+import org.processmining.models.graphbased.directed.petrinet.impl.ResetInhibitorNetImpl;
+import org.processmining.plugins.converters.PetriNetOverlay;
+import org.processmining.plugins.converters.PetriNetUtils;
+
+public class PetriNetOverlayTest {
+
+    @Test
+    public void changeOverlay_withAddedAndRemovedElements_expectedBaseNetUnchanged() {
+        PetrinetGraph base = new PetrinetImpl("label");
+        Place p0 = base.addPlace("p0");
+        Place p1 = base.addPlace("p1");
+        Transition a = base.addTransition("a");
+        Transition b = base.addTransition("b");
+        Arc p0a = base.addArc(p0, a);
+        base.addArc(a, p1);
+        base.addArc(p1, b);
+
+        PetriNetOverlay overlay = new PetriNetOverlay(base);
+        Place p2 = overlay.addPlace("p2");
+        Arc bp2 = overlay.addArc(b, p2);
+        overlay.removeTransition(a);
+        Arc p0b = overlay.addArc(p0, b);
+        Arc p1b = overlay.addArc(p1, b);
+
+        // overlay
+        assertEquals(3, overlay.getPlaces().size());
+        assertEquals(1, overlay.getTransitions().size());
+        assertTrue(overlay.getOutEdges(p0).contains(p0b));
+        assertFalse(overlay.getOutEdges(p0).contains(p0a));
+        assertTrue(overlay.getInEdges(p1).isEmpty());
+        assertEquals(2, p1b.getWeight());
+        assertEquals(3, overlay.getInEdges(b).size() + overlay.getOutEdges(b).size());
+        assertSame(p1b, overlay.getArc(p1, b));
+        assertEquals(3, overlay.getEdges().size());
+
+        overlay.removeEdge(bp2);
+        assertTrue(overlay.getInEdges(p2).isEmpty());
+        assertNull(overlay.getArc(b, p2));
+
+        // base net
+        assertEquals(2, base.getPlaces().size());
+        assertEquals(2, base.getTransitions().size());
+        assertEquals(3, base.getEdges().size());
+        assertEquals(1, base.getArc(p1, b).getWeight());
+        assertTrue(base.getOutEdges(p0).contains(p0a));
+    }
+
+    @Test
+    public void changeOverlay_withResetAndInhibitorArcs_expectedBaseNetUnchanged() {
+        ResetInhibitorNet base = new ResetInhibitorNetImpl("label");
+        Place p0 = base.addPlace("p0");
+        Place p1 = base.addPlace("p1");
+        Transition a = base.addTransition("a");
+        base.addArc(p0, a);
+        ResetArc p1a = base.addResetArc(p1, a);
+
+        PetriNetOverlay overlay = new PetriNetOverlay(base);
+        assertSame(p1a, overlay.getResetArc(p1, a));
+        assertSame(p1a, overlay.addResetArc(p1, a));
+        InhibitorArc p0a = overlay.addInhibitorArc(p0, a);
+        assertSame(p0a, overlay.getInhibitorArc(p0, a));
+        assertNull(overlay.getArc(p1, a));
+        assertSame(p1a, overlay.removeResetArc(p1, a));
+
+        // overlay
+        assertNull(overlay.getResetArc(p1, a));
+        assertTrue(overlay.getOutEdges(p1).isEmpty());
+        assertEquals(2, overlay.getInEdges(a).size());
+        assertEquals(2, overlay.getEdges().size());
+
+        // base net
+        assertSame(p1a, base.getResetArc(p1, a));
+        assertNull(base.getInhibitorArc(p0, a));
+        assertEquals(2, base.getEdges().size());
+    }
+
+    @Test
+    public void changeOverlay_withParentGroupOverloads_expectedElementsInView() {
+        ResetInhibitorNet base = new ResetInhibitorNetImpl("label");
+        Place p0 = base.addPlace("p0");
+        ExpandableSubNet parent = null;
+
+        PetriNetOverlay overlay = new PetriNetOverlay(base);
+        Place p1 = overlay.addPlace("p1", parent);
+        Transition a = overlay.addTransition("a", parent);
+        Arc p0a = overlay.addArc(p0, a, 2, parent);
+        Arc ap1 = overlay.addArc(a, p1, parent);
+        ResetArc p1a = overlay.addResetArc(p1, a, "reset", parent);
+        InhibitorArc p0aInhibitor = overlay.addInhibitorArc(p0, a, parent);
+
+        assertEquals(2, overlay.getPlaces().size());
+        assertEquals(1, overlay.getTransitions().size());
+        assertSame(p0a, overlay.getArc(p0, a));
+        assertEquals(2, p0a.getWeight());
+        assertSame(ap1, overlay.getArc(a, p1));
+        assertSame(p1a, overlay.getResetArc(p1, a));
+        assertSame(p0aInhibitor, overlay.getInhibitorArc(p0, a));
+        assertEquals(4, overlay.getEdges().size());
+
+        assertEquals(1, base.getPlaces().size());
+        assertTrue(base.getTransitions().isEmpty());
+        assertTrue(base.getEdges().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void addGroup_toOverlay_expectedException() {
+        new PetriNetOverlay(new PetrinetImpl("label")).addGroup("group");
+    }
+
+    @Test
+    public void convertToResemblingFreeChoice_withOverlay_expectedSameStructureAsOnCopy() {
+        PetrinetGraph base = createNonFreeChoiceNet();
+        int baseEdges = base.getEdges().size();
+
+        PetriNetOverlay overlay = new PetriNetOverlay(base);
+        PetriNetUtils.convertToResemblingFreeChoice(overlay);
+
+        assertTrue(PetriNetUtils.isFreeChoice(overlay));
+        assertFalse(PetriNetUtils.isFreeChoice(base));
+        assertEquals(baseEdges, base.getEdges().size());
+
+        PetrinetGraph copy = createNonFreeChoiceNet();
+        PetriNetUtils.convertToResemblingFreeChoice(copy);
+        assertEquals(copy.getPlaces().size(), overlay.getPlaces().size());
+        assertEquals(copy.getTransitions().size(), overlay.getTransitions().size());
+        assertEquals(copy.getEdges().size(), overlay.getEdges().size());
+    }
+
+    /**
+     * a and b share p0, b also needs p1
+     */
+    private PetrinetGraph createNonFreeChoiceNet() {
+        PetrinetGraph result = new PetrinetImpl("label");
+        Place p0 = result.addPlace("p0");
+        Place p1 = result.addPlace("p1");
+        Place p2 = result.addPlace("p2");
+        Transition a = result.addTransition("a");
+        Transition b = result.addTransition("b");
+        result.addArc(p0, a);
+        result.addArc(p0, b);
+        result.addArc(p1, b);
+        result.addArc(a, p2);
+        result.addArc(b, p2);
+        return result;
+    }
+}
@@ -0,0 +1,209 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.ResetInhibitorNet;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.graphbased.directed.petrinet.impl.PetrinetImpl;
+import org.processmining.models.graphbased.directed.petrinet.impl.ResetInhibitorNetImpl;
+import org.processmining.models.semantics.petrinet.Marking;
+import org.processmining.plugins.converters.PetriNetToBPMNPipeline;
+
+public class PetriNetToBPMNPipelineTest {
+
+    private static final int JOBS = 16;
+    private static final int DEAD_CHAIN = 5000;
+
+    @Test
+    public void convert_withJobsInThreadPool_expectedActivityForEachTransition() throws Exception {
+        final List<PetrinetGraph> petriNets = new ArrayList<PetrinetGraph>();
+        final List<Marking> initialMarkings = new ArrayList<Marking>();
+        final List<Marking> finalMarkings = new ArrayList<Marking>();
+        for (int i = 0; i < JOBS; i++) {
+            Marking initialMarking = new Marking();
+            Marking finalMarking = new Marking();
+            petriNets.add(createPetriNet(i, initialMarking, finalMarking));
+            initialMarkings.add(initialMarking);
+            finalMarkings.add(finalMarking);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<PetriNetToBPMNPipeline>> results = new ArrayList<Future<PetriNetToBPMNPipeline>>();
+        try {
+            for (int i = 0; i < JOBS; i++) {
+                final int job = i;
+                results.add(pool.submit(new Callable<PetriNetToBPMNPipeline>() {
+                    public PetriNetToBPMNPipeline call() {
+                        PetriNetToBPMNPipeline pipeline = new PetriNetToBPMNPipeline(petriNets.get(job),
+                                initialMarkings.get(job), finalMarkings.get(job));
+                        pipeline.convert();
+                        return pipeline;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < JOBS; i++) {
+                PetriNetToBPMNPipeline pipeline = results.get(i).get();
+                PetrinetGraph petriNet = petriNets.get(i);
+                BPMNDiagram diagram = pipeline.getBPMNDiagram();
+
+                assertTrue(pipeline.isFreeChoice());
+                int startEvents = 0;
+                for (Event event : diagram.getEvents()) {
+                    if (event.getEventType() == Event.EventType.START) {
+                        startEvents++;
+                    }
+                }
+                assertEquals(1, startEvents);
+                Set<String> labels = new HashSet<String>();
+                for (Activity activity : diagram.getActivities()) {
+                    labels.add(activity.getLabel());
+                }
+                assertEquals(3, labels.size());
+                for (Transition transition : petriNet.getTransitions()) {
+                    Activity activity = pipeline.getTransitionConversionMap().get(transition.getId().toString());
+                    assertNotNull(activity);
+                    assertEquals(transition.getLabel(), activity.getLabel());
+                }
+                // the given net is not changed
+                assertEquals(3, petriNet.getPlaces().size());
+                assertEquals(3, petriNet.getTransitions().size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void convert_withNonFreeChoiceNet_expectedRepairReported() {
+        PetrinetGraph petriNet = new PetrinetImpl("label");
+        Place p0 = petriNet.addPlace("p0");
+        Place p1 = petriNet.addPlace("p1");
+        Place p2 = petriNet.addPlace("p2");
+        Transition a = petriNet.addTransition("a");
+        Transition b = petriNet.addTransition("b");
+        petriNet.addArc(p0, a);
+        petriNet.addArc(p0, b);
+        petriNet.addArc(p1, b);
+        petriNet.addArc(a, p2);
+        petriNet.addArc(b, p2);
+        Marking initialMarking = new Marking();
+        initialMarking.add(p0);
+        initialMarking.add(p1);
+
+        PetriNetToBPMNPipeline pipeline = new PetriNetToBPMNPipeline(petriNet, initialMarking, null);
+
+        assertNotNull(pipeline.convert());
+        assertFalse(pipeline.isFreeChoice());
+        assertEquals(2, petriNet.getInEdges(b).size());
+    }
+
+    @Test
+    public void removeDeadPlaces_withLongDeadChain_expectedChainRemovedAndCounted() {
+        Marking initialMarking = new Marking();
+        Marking finalMarking = new Marking();
+        PetrinetGraph petriNet = createPetriNet(0, initialMarking, finalMarking);
+        // chain of places and transitions which can never be enabled, merging into p1
+        Place last = petriNet.addPlace("dead0");
+        for (int i = 0; i < DEAD_CHAIN; i++) {
+            Transition transition = petriNet.addTransition("dead" + i);
+            petriNet.addArc(last, transition);
+            last = petriNet.addPlace("dead" + (i + 1));
+            petriNet.addArc(transition, last);
+        }
+        // the last dead transition also marks a live place
+        Transition merge = petriNet.addTransition("merge");
+        petriNet.addArc(last, merge);
+        petriNet.addArc(merge, petriNet.getPlaces().iterator().next());
+
+        PetriNetToBPMNPipeline pipeline = new PetriNetToBPMNPipeline(petriNet, initialMarking, finalMarking);
+        pipeline.convert();
+
+        assertEquals(DEAD_CHAIN + 1, pipeline.getRemovedPlaces());
+        assertEquals(DEAD_CHAIN + 1, pipeline.getRemovedTransitions());
+        for (Activity activity : pipeline.getBPMNDiagram().getActivities()) {
+            assertFalse(activity.getLabel().startsWith("dead"));
+            assertFalse(activity.getLabel().equals("merge"));
+        }
+        assertEquals(3, pipeline.getBPMNDiagram().getActivities().size());
+    }
+
+    @Test
+    public void convert_withResetAndInhibitorArcs_expectedBaseNetUnchanged() {
+        ResetInhibitorNet petriNet = new ResetInhibitorNetImpl("label");
+        Place p0 = petriNet.addPlace("p0");
+        Place p1 = petriNet.addPlace("p1");
+        Place p2 = petriNet.addPlace("p2");
+        Transition a = petriNet.addTransition("a");
+        Transition b = petriNet.addTransition("b");
+        petriNet.addArc(p0, a);
+        petriNet.addArc(a, p1);
+        petriNet.addArc(p1, b);
+        petriNet.addArc(b, p2);
+        petriNet.addResetArc(p2, a);
+        petriNet.addInhibitorArc(p2, b);
+        Marking initialMarking = new Marking();
+        initialMarking.add(p0);
+        Marking finalMarking = new Marking();
+        finalMarking.add(p2);
+
+        PetriNetToBPMNPipeline pipeline = new PetriNetToBPMNPipeline(petriNet, initialMarking, finalMarking);
+
+        assertNotNull(pipeline.convert());
+        for (Transition transition : petriNet.getTransitions()) {
+            Activity activity = pipeline.getTransitionConversionMap().get(transition.getId().toString());
+            assertNotNull(activity);
+            assertEquals(transition.getLabel(), activity.getLabel());
+        }
+        // the given net is not changed
+        assertEquals(3, petriNet.getPlaces().size());
+        assertEquals(2, petriNet.getTransitions().size());
+        assertEquals(6, petriNet.getEdges().size());
+        assertNotNull(petriNet.getResetArc(p2, a));
+        assertNotNull(petriNet.getInhibitorArc(p2, b));
+    }
+
+    /**
+     * Sequence of a choice between two activities and a third activity
+     */
+    private PetrinetGraph createPetriNet(int job, Marking initialMarking, Marking finalMarking) {
+        PetrinetGraph result = new PetrinetImpl("net " + job);
+
+        Place p0 = result.addPlace("p0");
+        Place p1 = result.addPlace("p1");
+        Place p2 = result.addPlace("p2");
+
+        Transition a = result.addTransition("a" + job);
+        Transition b = result.addTransition("b" + job);
+        Transition c = result.addTransition("c" + job);
+
+        result.addArc(p0, a);
+        result.addArc(p0, b);
+        result.addArc(a, p1);
+        result.addArc(b, p1);
+        result.addArc(p1, c);
+        result.addArc(c, p2);
+
+        initialMarking.add(p0);
+        finalMarking.add(p2);
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.ResetInhibitorNet;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.graphbased.directed.petrinet.impl.ResetInhibitorNetImpl;
+import org.processmining.plugins.converters.PetriNetUtils;
+
+public class PetriNetUtilsTest {
+
+    private static final int SMALL_TRANSITIONS = 1000;
+    private static final int LARGE_TRANSITIONS = 20000;
+
+    @Test
+    public void collectFreeChoiceViolations_withResetArcs_expectedResetArcsIgnoredAndNetUnchanged() {
+        ResetInhibitorNet petriNet = new ResetInhibitorNetImpl("label");
+        Place p0 = petriNet.addPlace("p0");
+        Place p1 = petriNet.addPlace("p1");
+        Place p2 = petriNet.addPlace("p2");
+        Transition a = petriNet.addTransition("a");
+        Transition b = petriNet.addTransition("b");
+        Transition c = petriNet.addTransition("c");
+        petriNet.addArc(p0, a);
+        petriNet.addArc(p0, b);
+        petriNet.addArc(a, p1);
+        petriNet.addArc(b, p2);
+        petriNet.addArc(p1, c);
+        // with reset arcs b would need p0 and p1, while a needs only p0
+        petriNet.addResetArc(p1, b);
+        petriNet.addResetArc(p2, c);
+        int edges = petriNet.getEdges().size();
+
+        assertTrue(PetriNetUtils.isFreeChoice(petriNet));
+        assertEquals(edges, petriNet.getEdges().size());
+
+        // c synchronizes p1 and p2
+        petriNet.addArc(p2, c);
+
+        assertTrue(PetriNetUtils.isFreeChoice(petriNet));
+
+        // p0 chooses between a and b, while b also needs p2, which also enables c
+        petriNet.addArc(p2, b);
+
+        assertFalse(PetriNetUtils.isFreeChoice(petriNet));
+        assertEquals(new HashSet<Place>(Arrays.asList(p0, p2)), PetriNetUtils.collectFreeChoiceViolations(petriNet));
+    }
+
+    @Test
+    public void collectNonFreePlaces_withRandomNet_expectedSamePlacesAsPairwiseComparison() {
+        PetrinetGraph petriNet = createRandomNet(SMALL_TRANSITIONS, 1);
+
+        Set<Place> nonFreePlaces = PetriNetUtils.collectNonFreePlaces(petriNet);
+
+        assertFalse(nonFreePlaces.isEmpty());
+        assertTrue(nonFreePlaces.size() < petriNet.getPlaces().size());
+        assertEquals(collectNonFreePlacesPairwise(petriNet), nonFreePlaces);
+    }
+
+    @Test
+    public void convertToResemblingFreeChoice_withLargeNet_expectedFreeChoice() {
+        PetrinetGraph largeNet = createRandomNet(LARGE_TRANSITIONS, 3);
+
+        PetriNetUtils.convertToResemblingFreeChoice(largeNet);
+
+        for (Place place : largeNet.getPlaces()) {
+            Set<PetrinetNode> outTransitions = new HashSet<PetrinetNode>();
+            for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : largeNet.getOutEdges(place)) {
+                outTransitions.add(edge.getTarget());
+            }
+            if (outTransitions.size() > 1) {
+                for (PetrinetNode transition : outTransitions) {
+                    assertEquals(1, collectInPlaces((Transition) transition, largeNet).size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Random net where each transition has one to three in places (one of
+     * them possibly by a reset arc) and one out place.
+     */
+    private PetrinetGraph createRandomNet(int transitions, long seed) {
+        Random random = new Random(seed);
+        ResetInhibitorNet result = new ResetInhibitorNetImpl("random net");
+        List<Place> places = new ArrayList<Place>();
+        for (int i = 0; i < transitions; i++) {
+            places.add(result.addPlace("p" + i));
+        }
+        for (int i = 0; i < transitions; i++) {
+            Transition transition = result.addTransition("t" + i);
+            int inPlaces = (random.nextInt(4) == 0) ? 2 + random.nextInt(2) : 1;
+            for (int j = 0; j < inPlaces; j++) {
+                Place place = places.get(random.nextInt(places.size()));
+                if (j > 0 && random.nextInt(5) == 0) {
+                    result.addResetArc(place, transition);
+                } else {
+                    result.addArc(place, transition);
+                }
+            }
+            result.addArc(transition, places.get(random.nextInt(places.size())));
+        }
+        return result;
+    }
+
+    /**
+     * Previous detection of non-free places, comparing the in places of each
+     * pair of transitions.
+     */
+    private Set<Place> collectNonFreePlacesPairwise(PetrinetGraph petrinetGraph) {
+        Set<Place> nonFreePlaces = new HashSet<Place>();
+        for (Transition t1 : petrinetGraph.getTransitions()) {
+            for (Transition t2 : petrinetGraph.getTransitions()) {
+                Set<Place> inPlaces1 = collectInPlaces(t1, petrinetGraph);
+                Set<Place> inPlaces2 = collectInPlaces(t2, petrinetGraph);
+                Set<Place> commonPlaces = new HashSet<Place>();
+                boolean hasCommonPlace = false;
+                boolean hasDiffPlaces = false;
+                for (Place p1 : inPlaces1) {
+                    for (Place p2 : inPlaces2) {
+                        if (p1.equals(p2)) {
+                            hasCommonPlace = true;
+                            commonPlaces.add(p1);
+                        } else {
+                            hasDiffPlaces = true;
+                        }
+                    }
+                }
+                if (hasCommonPlace && hasDiffPlaces) {
+                    nonFreePlaces.addAll(commonPlaces);
+                }
+            }
+        }
+        return nonFreePlaces;
+    }
+
+    private Set<Place> collectInPlaces(Transition transition, PetrinetGraph petrinetGraph) {
+        Set<Place> inPlaces = new HashSet<Place>();
+        for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> inEdge : petrinetGraph
+                .getInEdges(transition)) {
+            inPlaces.add((Place) inEdge.getSource());
+        }
+        return inPlaces;
+    }
+}
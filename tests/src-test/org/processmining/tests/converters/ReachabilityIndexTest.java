@@ -0,0 +1,96 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.DirectedGraphNode;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNEdge;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.plugins.graphalgorithms.DFS;
+import org.processmining.plugins.graphalgorithms.ReachabilityIndex;
+
+public class ReachabilityIndexTest {
+
+    private static final int NODES = 300;
+    private static final int LARGE_NODES = 20000;
+
+    @Test
+    public void reaches_withRandomCyclicGraph_expectedSameAsBreadthFirstSearch() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("random diagram");
+        List<Activity> activities = new ArrayList<Activity>();
+        for (int i = 0; i < NODES; i++) {
+            activities.add(diagram.addActivity("a" + i, false, false, false, false, false));
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < NODES * 3 / 2; i++) {
+            diagram.addFlow(activities.get(random.nextInt(NODES)), activities.get(random.nextInt(NODES)), "");
+        }
+
+        ReachabilityIndex index = new ReachabilityIndex(diagram);
+        DFS dfs = new DFS(diagram, activities.get(0));
+
+        assertTrue(index.getComponentCount() < NODES);
+        Set<DirectedGraphNode> reachableFromStart = search(diagram, activities.get(0));
+        for (Activity source : activities) {
+            Set<DirectedGraphNode> descendants = search(diagram, source);
+            assertEquals(descendants, index.getDescendants(source));
+            for (Activity target : activities) {
+                assertEquals(descendants.contains(target), index.reaches(source, target));
+            }
+            if (source == activities.get(0) || reachableFromStart.contains(source)) {
+                assertEquals(descendants, dfs.findDescendants(source));
+            } else {
+                assertTrue(dfs.findDescendants(source).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void isDescendant_withLongCycleAndChain_expectedIndexWithoutDeepRecursion() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("large diagram");
+        List<Activity> activities = new ArrayList<Activity>();
+        for (int i = 0; i < LARGE_NODES; i++) {
+            activities.add(diagram.addActivity("a" + i, false, false, false, false, false));
+            if (i > 0) {
+                diagram.addFlow(activities.get(i - 1), activities.get(i), "");
+            }
+        }
+        // first half is a cycle, second half a chain
+        diagram.addFlow(activities.get(LARGE_NODES / 2 - 1), activities.get(0), "");
+
+        DFS dfs = new DFS(diagram, activities.get(0));
+
+        assertTrue(dfs.isDescendant(activities.get(0), activities.get(0)));
+        assertTrue(dfs.isDescendant(activities.get(LARGE_NODES / 2 - 1), activities.get(1)));
+        assertTrue(dfs.isDescendant(activities.get(LARGE_NODES / 2), activities.get(LARGE_NODES - 1)));
+        assertFalse(dfs.isDescendant(activities.get(LARGE_NODES / 2), activities.get(LARGE_NODES / 2)));
+        assertFalse(dfs.isDescendant(activities.get(LARGE_NODES - 1), activities.get(0)));
+    }
+
+    private Set<DirectedGraphNode> search(BPMNDiagram diagram, BPMNNode source) {
+        Set<DirectedGraphNode> visited = new HashSet<DirectedGraphNode>();
+        Deque<BPMNNode> queue = new ArrayDeque<BPMNNode>();
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            for (BPMNEdge<? extends BPMNNode, ? extends BPMNNode> edge : diagram.getOutEdges(queue.poll())) {
+                if (visited.add(edge.getTarget())) {
+                    queue.add(edge.getTarget());
+                }
+            }
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,381 @@
+package org.processmining.tests.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.AbstractDirectedGraphNode;
+import org.processmining.models.graphbased.directed.ContainableDirectedGraphElement;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNEdge;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.DataAssociation;
+import org.processmining.plugins.graphalgorithms.DominatorTree;
+import org.processmining.plugins.graphalgorithms.SESERegionTree;
+import org.processmining.plugins.graphalgorithms.SubprocessDiscovery;
+
+public class SubprocessDiscoveryTest {
+
+    private static final int NODES = 60;
+    private static final int DIAGRAMS = 20;
+    private static final int LARGE_NODES = 20000;
+
+    @Test
+    public void dominators_withRandomDiagrams_expectedSameAsSetIntersection() {
+        Random random = new Random(1);
+        for (int d = 0; d < DIAGRAMS; d++) {
+            BPMNDiagram diagram = new BPMNDiagramImpl("random diagram " + d);
+            List<Activity> activities = new ArrayList<Activity>();
+            for (int i = 0; i < NODES; i++) {
+                activities.add(diagram.addActivity("a" + i, false, false, false, false, false));
+            }
+            // a path from the start to the end and random flows, some nodes stay unreachable
+            for (int i = 1; i < NODES / 2; i++) {
+                diagram.addFlow(activities.get(i - 1), activities.get(i), "");
+            }
+            diagram.addFlow(activities.get(NODES / 2 - 1), activities.get(NODES - 1), "");
+            for (int i = 0; i < NODES; i++) {
+                diagram.addFlow(activities.get(random.nextInt(NODES)), activities.get(random.nextInt(NODES)), "");
+            }
+            diagram.addDataAssociation(activities.get(0), activities.get(NODES - 2), "");
+
+            SubprocessDiscovery discovery = new SubprocessDiscovery(diagram, activities.get(0),
+                    activities.get(NODES - 1));
+
+            assertEquals(intersectDominators(diagram, activities.get(0), false), discovery.getDominators());
+            assertEquals(intersectDominators(diagram, activities.get(NODES - 1), true),
+                    discovery.getPostDominators());
+        }
+    }
+
+    @Test
+    public void dominates_withRandomDiagram_expectedSameAsDominatorSets() {
+        Random random = new Random(2);
+        BPMNDiagram diagram = new BPMNDiagramImpl("random diagram");
+        List<Activity> activities = new ArrayList<Activity>();
+        for (int i = 0; i < NODES; i++) {
+            activities.add(diagram.addActivity("a" + i, false, false, false, false, false));
+            if (i > 0) {
+                diagram.addFlow(activities.get(random.nextInt(i)), activities.get(i), "");
+            }
+        }
+        for (int i = 0; i < NODES / 2; i++) {
+            diagram.addFlow(activities.get(random.nextInt(NODES)), activities.get(random.nextInt(NODES)), "");
+        }
+        Activity isolated = diagram.addActivity("isolated", false, false, false, false, false);
+
+        SubprocessDiscovery discovery = new SubprocessDiscovery(diagram, activities.get(0), activities.get(NODES - 1));
+        DominatorTree<AbstractDirectedGraphNode> tree = discovery.getDominatorTree();
+        Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> dominators = intersectDominators(diagram,
+                activities.get(0), false);
+
+        for (Activity node : activities) {
+            Set<AbstractDirectedGraphNode> children = new HashSet<AbstractDirectedGraphNode>();
+            for (AbstractDirectedGraphNode child : tree.getChildren(node)) {
+                children.add(child);
+                assertSame(node, tree.getImmediateDominator(child));
+            }
+            Set<AbstractDirectedGraphNode> descendants = new HashSet<AbstractDirectedGraphNode>();
+            for (AbstractDirectedGraphNode descendant : tree.getDescendants(node)) {
+                descendants.add(descendant);
+            }
+            assertEquals(descendants.size(), tree.getDescendantCount(node));
+            for (Activity other : activities) {
+                boolean dominates = dominators.get(other).contains(node);
+                assertEquals(dominates, tree.dominates(node, other));
+                assertEquals(dominates && other != node, descendants.contains(other));
+                if (other != node && tree.getImmediateDominator(other) == node) {
+                    assertTrue(children.contains(other));
+                }
+            }
+            assertFalse(tree.dominates(node, isolated));
+        }
+
+        Set<AbstractDirectedGraphNode> considered = new HashSet<AbstractDirectedGraphNode>();
+        considered.add(activities.get(0));
+        AbstractDirectedGraphNode last = activities.get(NODES - 1);
+        assertSame(activities.get(0), discovery.determineMinimalDominator(last, considered, false));
+        considered.add(tree.getImmediateDominator(last));
+        assertSame(tree.getImmediateDominator(last), discovery.determineMinimalDominator(last, considered, false));
+        assertNull(discovery.determineMinimalDominator(isolated, considered, false));
+
+        List<AbstractDirectedGraphNode> innerNodes = new ArrayList<AbstractDirectedGraphNode>();
+        innerNodes.add(last);
+        innerNodes.add(activities.get(NODES - 2));
+        AbstractDirectedGraphNode common = discovery.determineImmediateCommonDominator(innerNodes, false);
+        assertTrue(tree.dominates(common, last) && tree.dominates(common, activities.get(NODES - 2)));
+        for (AbstractDirectedGraphNode child : tree.getChildren(common)) {
+            assertFalse(tree.dominates(child, last) && tree.dominates(child, activities.get(NODES - 2)));
+        }
+    }
+
+    @Test
+    public void immediateDominator_withLongLoop_expectedTreeWithoutDeepRecursion() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("large diagram");
+        List<Activity> activities = new ArrayList<Activity>();
+        for (int i = 0; i < LARGE_NODES; i++) {
+            activities.add(diagram.addActivity("a" + i, false, false, false, false, false));
+            if (i > 0) {
+                diagram.addFlow(activities.get(i - 1), activities.get(i), "");
+            }
+        }
+        // loop back from the end of the chain and a shortcut over its middle
+        diagram.addFlow(activities.get(LARGE_NODES - 1), activities.get(1), "");
+        diagram.addFlow(activities.get(1), activities.get(LARGE_NODES / 2), "");
+
+        DominatorTree<BPMNNode> dominators = new DominatorTree<BPMNNode>(diagram, activities.get(0),
+                diagram.getNodes(), false);
+        DominatorTree<BPMNNode> postDominators = new DominatorTree<BPMNNode>(diagram,
+                activities.get(LARGE_NODES - 1), diagram.getNodes(), true);
+
+        assertNull(dominators.getImmediateDominator(activities.get(0)));
+        assertSame(activities.get(0), dominators.getImmediateDominator(activities.get(1)));
+        assertSame(activities.get(1), dominators.getImmediateDominator(activities.get(LARGE_NODES / 2)));
+        assertSame(activities.get(LARGE_NODES - 2), dominators.getImmediateDominator(activities.get(LARGE_NODES - 1)));
+        assertSame(activities.get(LARGE_NODES / 2), postDominators.getImmediateDominator(activities.get(1)));
+        assertSame(activities.get(1), postDominators.getImmediateDominator(activities.get(0)));
+        assertEquals(LARGE_NODES / 2 + 2, dominators.getDominators(activities.get(LARGE_NODES - 1)).size());
+        assertTrue(postDominators.isReachable(activities.get(2)));
+
+        Activity isolated = diagram.addActivity("isolated", false, false, false, false, false);
+        assertFalse(dominators.isReachable(isolated));
+        assertTrue(dominators.getDominators(isolated).isEmpty());
+    }
+
+    @Test
+    public void subProcessBorders_withRandomStructuredDiagrams_expectedSameAsPairwiseComparison() {
+        Random random = new Random(3);
+        int innerRegions = 0;
+        for (int d = 0; d < DIAGRAMS; d++) {
+            BPMNDiagram diagram = createStructuredDiagram(random, NODES);
+            Activity start = (Activity) findByLabel(diagram, "start");
+            Activity end = (Activity) findByLabel(diagram, "end");
+            if (d % 2 == 1) {
+                // a dead end and a node which is not reachable
+                Activity deadEnd = diagram.addActivity("dead end", false, false, false, false, false);
+                diagram.addFlow(start, deadEnd, "");
+                Activity notReachable = diagram.addActivity("not reachable", false, false, false, false, false);
+                diagram.addFlow(notReachable, end, "");
+            }
+
+            SubprocessDiscovery discovery = new SubprocessDiscovery(diagram, start, end);
+            Map<AbstractDirectedGraphNode, AbstractDirectedGraphNode> expected = compareTrees(discovery);
+
+            assertEquals(expected, discovery.getSubProcessBorders());
+            if (d % 2 == 0) {
+                assertEquals(end, discovery.getSubProcessBorders().get(start));
+            }
+            SESERegionTree<AbstractDirectedGraphNode> regions = discovery.getRegionTree();
+            DominatorTree<AbstractDirectedGraphNode> tree = discovery.getDominatorTree();
+            Set<AbstractDirectedGraphNode> visited = new HashSet<AbstractDirectedGraphNode>();
+            for (AbstractDirectedGraphNode entry : regions.getEntries()) {
+                AbstractDirectedGraphNode enclosing = regions.getEnclosingEntry(entry);
+                if (enclosing != null) {
+                    assertTrue(visited.contains(enclosing));
+                    assertTrue(regions.getNestedEntries(enclosing).contains(entry));
+                }
+                if (enclosing != null && regions.getExit(entry) != entry) {
+                    innerRegions++;
+                }
+                for (AbstractDirectedGraphNode other : regions.getEntries()) {
+                    if (other != entry && tree.dominates(other, entry)) {
+                        assertTrue(tree.dominates(other, enclosing));
+                    }
+                }
+                visited.add(entry);
+            }
+        }
+        assertTrue(innerRegions > DIAGRAMS);
+    }
+
+    @Test
+    public void subProcessBorders_withLongSequenceOfChoices_expectedRegionForEachBranch() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("large diagram");
+        Activity last = diagram.addActivity("start", false, false, false, false, false);
+        Activity start = last;
+        for (int i = 0; i < LARGE_NODES / 3; i++) {
+            Activity a = diagram.addActivity("a" + i, false, false, false, false, false);
+            Activity b = diagram.addActivity("b" + i, false, false, false, false, false);
+            Activity join = diagram.addActivity("join" + i, false, false, false, false, false);
+            diagram.addFlow(last, a, "");
+            diagram.addFlow(last, b, "");
+            diagram.addFlow(a, join, "");
+            diagram.addFlow(b, join, "");
+            last = join;
+        }
+
+        SubprocessDiscovery discovery = new SubprocessDiscovery(diagram, start, last);
+
+        SESERegionTree<AbstractDirectedGraphNode> regions = discovery.getRegionTree();
+        assertSame(last, regions.getExit(start));
+        assertNull(regions.getEnclosingEntry(start));
+        // the whole diagram and each branch activity, the branches are nested into the whole diagram
+        assertEquals(2 * (LARGE_NODES / 3) + 1, regions.getEntries().size());
+        assertEquals(2 * (LARGE_NODES / 3), regions.getNestedEntries(start).size());
+        for (AbstractDirectedGraphNode entry : regions.getNestedEntries(start)) {
+            assertSame(entry, regions.getExit(entry));
+            assertSame(start, regions.getEnclosingEntry(entry));
+        }
+    }
+
+    @Test
+    public void determineSubprocessElements_withLongSequence_expectedElementsWithoutDeepRecursion() {
+        BPMNDiagram diagram = new BPMNDiagramImpl("large diagram");
+        List<Activity> activities = new ArrayList<Activity>();
+        for (int i = 0; i < 3 * LARGE_NODES; i++) {
+            activities.add(diagram.addActivity("a" + i, false, false, false, false, false));
+            if (i > 0) {
+                diagram.addFlow(activities.get(i - 1), activities.get(i), "");
+            }
+        }
+        // a loop inside the subprocess and a data association leaving it
+        diagram.addFlow(activities.get(LARGE_NODES), activities.get(1), "");
+        diagram.addDataAssociation(activities.get(1), activities.get(2 * LARGE_NODES + 2), "");
+
+        SubprocessDiscovery discovery = new SubprocessDiscovery(diagram, activities.get(0),
+                activities.get(3 * LARGE_NODES - 1));
+        Set<ContainableDirectedGraphElement> elements = discovery.determineSubprocessElements(activities.get(0),
+                activities.get(2 * LARGE_NODES));
+
+        // nodes up to the end node and the flows between them, with the flow back
+        assertEquals(2 * LARGE_NODES + 1 + 2 * LARGE_NODES + 1, elements.size());
+        assertTrue(elements.contains(activities.get(2 * LARGE_NODES)));
+        assertFalse(elements.contains(activities.get(2 * LARGE_NODES + 1)));
+        assertFalse(elements.contains(activities.get(2 * LARGE_NODES + 2)));
+    }
+
+    /**
+     * Regions by comparing the tree of dominators and the tree of
+     * post-dominators of each pair of nodes, for entries which are reachable
+     * and reach the end
+     */
+    private Map<AbstractDirectedGraphNode, AbstractDirectedGraphNode> compareTrees(SubprocessDiscovery discovery) {
+        Map<AbstractDirectedGraphNode, AbstractDirectedGraphNode> borders = new HashMap<AbstractDirectedGraphNode, AbstractDirectedGraphNode>();
+        Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> treeOfDominators = discovery
+                .getTreeOfDominators();
+        Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> treeOfPostDominators = discovery
+                .getTreeOfPostDominators();
+        for (AbstractDirectedGraphNode dominator : treeOfDominators.keySet()) {
+            if (!discovery.getDominatorTree().isReachable(dominator)
+                    || !discovery.getPostDominatorTree().isReachable(dominator)) {
+                continue;
+            }
+            for (AbstractDirectedGraphNode postDominator : treeOfPostDominators.keySet()) {
+                Set<AbstractDirectedGraphNode> dominatorsChildren = new HashSet<AbstractDirectedGraphNode>(
+                        treeOfDominators.get(dominator));
+                dominatorsChildren.add(dominator);
+                Set<AbstractDirectedGraphNode> postDominatorsChildren = new HashSet<AbstractDirectedGraphNode>(
+                        treeOfPostDominators.get(postDominator));
+                postDominatorsChildren.add(postDominator);
+                if (dominatorsChildren.equals(postDominatorsChildren)) {
+                    assertNull(borders.put(dominator, postDominator));
+                }
+            }
+        }
+        return borders;
+    }
+
+    /**
+     * Refine flows into sequences, choices and loops, and add a few
+     * unstructured flows
+     */
+    private BPMNDiagram createStructuredDiagram(Random random, int nodes) {
+        BPMNDiagram diagram = new BPMNDiagramImpl("structured diagram");
+        List<BPMNNode[]> flows = new ArrayList<BPMNNode[]>();
+        flows.add(new BPMNNode[] { diagram.addActivity("start", false, false, false, false, false),
+                diagram.addActivity("end", false, false, false, false, false) });
+        int count = 0;
+        while (count < nodes) {
+            BPMNNode[] flow = flows.remove(random.nextInt(flows.size()));
+            Activity first = diagram.addActivity("n" + count++, false, false, false, false, false);
+            Activity second = diagram.addActivity("n" + count++, false, false, false, false, false);
+            flows.add(new BPMNNode[] { flow[0], first });
+            flows.add(new BPMNNode[] { second, flow[1] });
+            switch (random.nextInt(4)) {
+                case 0 :
+                    flows.add(new BPMNNode[] { first, second });
+                    break;
+                case 1 :
+                    flows.add(new BPMNNode[] { first, second });
+                    flows.add(new BPMNNode[] { second, first });
+                    break;
+                default :
+                    Activity branch = diagram.addActivity("n" + count++, false, false, false, false, false);
+                    flows.add(new BPMNNode[] { first, second });
+                    flows.add(new BPMNNode[] { first, branch });
+                    flows.add(new BPMNNode[] { branch, second });
+            }
+        }
+        for (BPMNNode[] flow : flows) {
+            diagram.addFlow(flow[0], flow[1], "");
+        }
+        List<BPMNNode> all = new ArrayList<BPMNNode>(diagram.getNodes());
+        for (int i = 0; i < 2; i++) {
+            diagram.addFlow(all.get(2 + random.nextInt(all.size() - 2)), all.get(2 + random.nextInt(all.size() - 2)), "");
+        }
+        return diagram;
+    }
+
+    private BPMNNode findByLabel(BPMNDiagram diagram, String label) {
+        for (BPMNNode node : diagram.getNodes()) {
+            if (node.getLabel().equals(label)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Iterative set intersection, nodes which are not reachable keep all
+     * nodes as dominators
+     */
+    private Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> intersectDominators(BPMNDiagram diagram,
+            BPMNNode root, boolean inversive) {
+        Map<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>> dominators = new HashMap<AbstractDirectedGraphNode, Set<AbstractDirectedGraphNode>>();
+        for (BPMNNode node : diagram.getNodes()) {
+            Set<AbstractDirectedGraphNode> initial = new HashSet<AbstractDirectedGraphNode>();
+            if (node == root) {
+                initial.add(node);
+            } else {
+                initial.addAll(diagram.getNodes());
+            }
+            dominators.put(node, initial);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BPMNNode node : diagram.getNodes()) {
+                for (BPMNEdge<? extends BPMNNode, ? extends BPMNNode> edge : inversive ? diagram.getOutEdges(node)
+                        : diagram.getInEdges(node)) {
+                    if (edge instanceof DataAssociation) {
+                        continue;
+                    }
+                    Set<AbstractDirectedGraphNode> predecessorDominators = dominators
+                            .get(inversive ? edge.getTarget() : edge.getSource());
+                    Set<AbstractDirectedGraphNode> nodeDominators = new HashSet<AbstractDirectedGraphNode>(
+                            dominators.get(node));
+                    nodeDominators.retainAll(predecessorDominators);
+                    nodeDominators.add(node);
+                    if (!nodeDominators.equals(dominators.get(node))) {
+                        dominators.put(node, nodeDominators);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return dominators;
+    }
+}